@@ -0,0 +1,170 @@
+package com.jbion.utils.io;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Guesses the charset of text without BOM (Byte Order Mark), from a prefix of its
+ * bytes.
+ * <p>
+ * The prefix is recognized, in this order, as:
+ * <ul>
+ * <li>UTF-16, if one byte of most pairs is NUL, always at the same position in the
+ * pair, which is the case of text mostly made of Latin characters,</li>
+ * <li>US-ASCII, if all bytes are below {@code 0x80},</li>
+ * <li>UTF-8, if it is a valid UTF-8 sequence, allowing the last character to be
+ * truncated by the end of the prefix.</li>
+ * </ul>
+ * Otherwise, the charset is unknown, it may for instance be a single byte charset
+ * like ISO-8859-1.
+ * </p>
+ */
+public class CharsetDetector {
+
+    /**
+     * The number of bytes tested at once when looking for non-ASCII bytes.
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * Guesses the charset of the specified bytes.
+     *
+     * @param bytes
+     *            the array containing the bytes
+     * @param off
+     *            the index of the first byte
+     * @param len
+     *            the number of bytes
+     * @param complete
+     *            {@code true} if the bytes are the whole text, {@code false} if
+     *            they are only a prefix of it, which may end in the middle of a
+     *            character
+     * @return the guessed charset, one of {@link StandardCharsets#UTF_16LE},
+     *         {@link StandardCharsets#UTF_16BE}, {@link StandardCharsets#US_ASCII}
+     *         or {@link StandardCharsets#UTF_8}, or {@code null} if it is unknown
+     */
+    public static Charset detect(byte[] bytes, int off, int len, boolean complete) {
+        Charset utf16 = detectUtf16(bytes, off, len);
+        if (utf16 != null) {
+            return utf16;
+        }
+        int end = off + len;
+        int firstNonAscii = skipAscii(bytes, off, end);
+        if (firstNonAscii == end) {
+            return StandardCharsets.US_ASCII;
+        }
+        if (isUtf8(bytes, firstNonAscii, end, complete)) {
+            return StandardCharsets.UTF_8;
+        }
+        return null;
+    }
+
+    /**
+     * Looks for the NUL bytes of UTF-16 text: at least 40% of the pairs of bytes
+     * have a NUL on one side, and ten times less on the other.
+     *
+     * @return {@link StandardCharsets#UTF_16LE}, {@link StandardCharsets#UTF_16BE}
+     *         or {@code null}
+     */
+    private static Charset detectUtf16(byte[] bytes, int off, int len) {
+        final int pairs = len / 2;
+        if (pairs < 2) {
+            return null;
+        }
+        int evenNuls = 0;
+        int oddNuls = 0;
+        for (int i = off, end = off + 2 * pairs; i < end; i += 2) {
+            evenNuls += bytes[i] == 0 ? 1 : 0;
+            oddNuls += bytes[i + 1] == 0 ? 1 : 0;
+        }
+        if (oddNuls * 10 >= pairs * 4 && evenNuls * 10 < oddNuls) {
+            // the high byte comes second
+            return StandardCharsets.UTF_16LE;
+        }
+        if (evenNuls * 10 >= pairs * 4 && oddNuls * 10 < evenNuls) {
+            return StandardCharsets.UTF_16BE;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the first byte that is not ASCII.
+     *
+     * @return the index of the first byte greater than {@code 0x7F}, or
+     *         {@code end} if there is none
+     */
+    static int skipAscii(byte[] bytes, int from, int end) {
+        int i = from;
+        // OR the blocks together, the sign of the result tells if a byte is not
+        // ASCII: a simple reduction loop that the JIT vectorizes
+        while (i + BLOCK_SIZE <= end) {
+            int acc = 0;
+            for (int k = i; k < i + BLOCK_SIZE; k++) {
+                acc |= bytes[k];
+            }
+            if (acc < 0) {
+                break;
+            }
+            i += BLOCK_SIZE;
+        }
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns whether the specified bytes are valid UTF-8. Overlong encodings,
+     * surrogates and code points above {@code U+10FFFF} are invalid.
+     *
+     * @param complete
+     *            {@code false} to accept a valid but incomplete sequence at the
+     *            end
+     */
+    static boolean isUtf8(byte[] bytes, int from, int end, boolean complete) {
+        int i = from;
+        while (i < end) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                i = skipAscii(bytes, i + 1, end);
+                continue;
+            }
+            int length;
+            // the allowed range of the second byte, narrower than the usual
+            // continuation bytes for some leading bytes
+            int min = 0x80;
+            int max = 0xBF;
+            if (b >= 0xC2 && b <= 0xDF) {
+                length = 2;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                length = 3;
+                if (b == 0xE0) {
+                    min = 0xA0;
+                } else if (b == 0xED) {
+                    max = 0x9F;
+                }
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                length = 4;
+                if (b == 0xF0) {
+                    min = 0x90;
+                } else if (b == 0xF4) {
+                    max = 0x8F;
+                }
+            } else {
+                return false;
+            }
+            int available = Math.min(length, end - i);
+            for (int k = 1; k < available; k++) {
+                int c = bytes[i + k] & 0xFF;
+                if (k == 1 ? c < min || c > max : (c & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            if (available < length) {
+                return !complete;
+            }
+            i += length;
+        }
+        return true;
+    }
+}
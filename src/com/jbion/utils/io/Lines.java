@@ -0,0 +1,222 @@
+package com.jbion.utils.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A class providing methods to process the lines of a stream or a file one at a
+ * time, without loading the whole content in memory.
+ * <p>
+ * Lines end with {@code '\n'}, an optional {@code '\r'} before it is not part of
+ * the line. The last line may not end with a line feed.
+ * </p>
+ */
+public class Lines {
+
+    /**
+     * The size of the buffer to use when reading an {@link InputStream}, in
+     * characters.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Performs the specified action on each line of the specified
+     * {@link InputStream}. The same {@link CharSequence} instance is given for
+     * every line, it is only valid during the call to the action. The stream is
+     * not closed.
+     *
+     * @param in
+     *            the stream to read
+     * @param charset
+     *            the charset of the stream
+     * @param action
+     *            the action to perform on each line
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void forEach(InputStream in, Charset charset, Consumer<? super CharSequence> action)
+            throws IOException {
+        LineSplitter splitter = new LineSplitter(new InputStreamReader(in, charset));
+        StringBuilder line = new StringBuilder();
+        while (splitter.next(line)) {
+            action.accept(line);
+        }
+    }
+
+    /**
+     * Performs the specified action on each line of the specified file, which is
+     * mapped in memory. The same {@link CharSequence} instance is given for every
+     * line, it is only valid during the call to the action, and the line is only
+     * decoded if its characters are accessed.
+     *
+     * @param path
+     *            the file to read
+     * @param charset
+     *            the charset of the file, in which line feeds must be single
+     *            {@code 0x0A} bytes
+     * @param action
+     *            the action to perform on each line
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see MappedLineReader
+     */
+    public static void forEach(Path path, Charset charset, Consumer<? super CharSequence> action)
+            throws IOException {
+        try (MappedLineReader reader = new MappedLineReader(path, charset)) {
+            reader.forEach(action);
+        }
+    }
+
+    /**
+     * Returns a lazy {@link Stream} of the lines of the specified
+     * {@link InputStream}. The lines are read as the stream is consumed. Closing
+     * the returned {@link Stream} closes the {@link InputStream}.
+     * <p>
+     * The I/O errors are thrown as {@link UncheckedIOException}s by the terminal
+     * operation.
+     * </p>
+     *
+     * @param in
+     *            the stream to read
+     * @param charset
+     *            the charset of the stream
+     * @return the lines of the stream
+     */
+    public static Stream<String> stream(InputStream in, Charset charset) {
+        final LineSplitter splitter = new LineSplitter(new InputStreamReader(in, charset));
+        final StringBuilder line = new StringBuilder();
+        Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super String> action) {
+                try {
+                    if (!splitter.next(line)) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                action.accept(line.toString());
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(closer(in));
+    }
+
+    /**
+     * Returns a lazy {@link Stream} of the lines of the specified file, which is
+     * mapped in memory. Each line is only decoded if its characters are accessed,
+     * and keeps a reference to the mapped window it was found in until then. The
+     * returned {@link Stream} should be closed to close the file.
+     * <p>
+     * The I/O errors are thrown as {@link UncheckedIOException}s by the terminal
+     * operation.
+     * </p>
+     *
+     * @param path
+     *            the file to read
+     * @param charset
+     *            the charset of the file, in which line feeds must be single
+     *            {@code 0x0A} bytes
+     * @return the lines of the file
+     * @throws IOException
+     *             if the file cannot be opened
+     * @see MappedLineReader
+     */
+    public static Stream<CharSequence> mapped(Path path, Charset charset) throws IOException {
+        final MappedLineReader reader = new MappedLineReader(path, charset);
+        Spliterator<CharSequence> spliterator = new Spliterators.AbstractSpliterator<CharSequence>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super CharSequence> action) {
+                CharSequence line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                action.accept(line);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(closer(reader));
+    }
+
+    private static Runnable closer(final Closeable closeable) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Splits the characters of a {@link Reader} into lines, through a single
+     * buffer.
+     */
+    private static final class LineSplitter {
+
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int pos = 0;
+        private int limit = 0;
+
+        LineSplitter(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next line into the specified {@link StringBuilder}, replacing its
+         * content.
+         *
+         * @return {@code false} if the end of stream is reached
+         */
+        boolean next(StringBuilder line) throws IOException {
+            line.setLength(0);
+            boolean started = false;
+            while (true) {
+                if (pos == limit) {
+                    int numRead = reader.read(buffer, 0, buffer.length);
+                    if (numRead < 0)
+                        return started;
+                    pos = 0;
+                    limit = numRead;
+                }
+                started = true;
+                int i = pos;
+                while (i < limit && buffer[i] != '\n') {
+                    i++;
+                }
+                line.append(buffer, pos, i - pos);
+                if (i < limit) {
+                    pos = i + 1;
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return true;
+                }
+                pos = limit;
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.jbion.utils.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads the lines of a file by mapping it in memory, one window at a time.
+ * <p>
+ * The line feeds are searched directly in the mapped bytes, and a line is only
+ * decoded when its characters are accessed: the lines returned by
+ * {@link #readLine()} are {@link CharSequence}s backed by the mapped window. Lines
+ * end with {@code '\n'}, an optional {@code '\r'} before it is not part of the
+ * line. The memory used does not depend on the size of the file, but on the
+ * size of the windows and of the longest line.
+ * </p>
+ * <p>
+ * Only charsets in which the byte {@code 0x0A} always is a line feed are
+ * supported, such as UTF-8, ISO-8859-1 and the other single byte charsets.
+ * </p>
+ * <p>
+ * A {@link MappedLineReader} is not thread-safe.
+ * </p>
+ */
+public class MappedLineReader implements Closeable {
+
+    /**
+     * The default size of the mapped windows is 64MB.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    /**
+     * The position of the end of the lines to read, the size of the file unless
+     * only a range is read.
+     */
+    private final long end;
+    private final int windowSize;
+
+    /**
+     * The current window, in little-endian order for the line feed search.
+     */
+    private ByteBuffer window = null;
+    /**
+     * The position of the current window in the file.
+     */
+    private long windowStart = 0;
+    /**
+     * The position of the next line in the file.
+     */
+    private long position = 0;
+
+    /**
+     * Creates a new {@link MappedLineReader} on the specified file, mapping windows
+     * of {@link #DEFAULT_WINDOW_SIZE} bytes.
+     *
+     * @param path
+     *            the path of the file to read
+     * @param charset
+     *            the charset of the file
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public MappedLineReader(Path path, Charset charset) throws IOException {
+        this(path, charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new {@link MappedLineReader} on the specified file.
+     *
+     * @param path
+     *            the path of the file to read
+     * @param charset
+     *            the charset of the file
+     * @param windowSize
+     *            the number of bytes to map at once, windows are enlarged for the
+     *            lines that do not fit
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public MappedLineReader(Path path, Charset charset, int windowSize) throws IOException {
+        checkCharset(charset);
+        if (windowSize < Long.BYTES) {
+            throw new IllegalArgumentException("window size must be at least " + Long.BYTES);
+        }
+        this.charset = charset;
+        this.windowSize = windowSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.end = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new {@link MappedLineReader} on a range of the specified channel.
+     * The range must start at the beginning of a line, and end after a line feed
+     * or at the end of the file.
+     *
+     * @param channel
+     *            the channel of the file to read, which is not closed by this
+     *            reader when it is only used through this range
+     * @param charset
+     *            the charset of the file, already checked
+     * @param start
+     *            the position of the first line of the range
+     * @param end
+     *            the position of the end of the range
+     * @param windowSize
+     *            the number of bytes to map at once
+     */
+    MappedLineReader(FileChannel channel, Charset charset, long start, long end, int windowSize) {
+        this.channel = channel;
+        this.charset = charset;
+        this.position = start;
+        this.end = end;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Checks that the byte {@code 0x0A} can only be a line feed in the specified
+     * charset.
+     *
+     * @throws IllegalArgumentException
+     *             if the charset is not supported
+     */
+    static void checkCharset(Charset charset) {
+        if (!isLineFeedByte(charset)) {
+            throw new IllegalArgumentException("line feeds are not single 0x0A bytes in " + charset);
+        }
+    }
+
+    /**
+     * Returns whether the byte {@code 0x0A} can only be a line feed in the
+     * specified charset.
+     */
+    private static boolean isLineFeedByte(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            // 0x0A is never part of a multibyte sequence
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+            return false;
+        }
+        ByteBuffer lineFeed = charset.encode(CharBuffer.wrap("\n"));
+        return lineFeed.remaining() == 1 && lineFeed.get(0) == '\n';
+    }
+
+    /**
+     * Returns the position of the next line to read.
+     *
+     * @return the offset of the next line in the file, in bytes
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Reads the next line of the file. The returned line keeps a reference to the
+     * mapped window it was found in, {@link CharSequence#toString()} should be
+     * used to keep it longer than needed to process it.
+     *
+     * @return the next line, or {@code null} if the end of the file is reached
+     * @throws IOException
+     *             if a window cannot be mapped
+     */
+    public CharSequence readLine() throws IOException {
+        MappedLine line = new MappedLine(charset);
+        return nextLine(line) ? line : null;
+    }
+
+    /**
+     * Performs the specified action on each remaining line of the file. The same
+     * {@link CharSequence} instance is given for every line, it is only valid
+     * during the call to the action.
+     *
+     * @param action
+     *            the action to perform on each line
+     * @throws IOException
+     *             if a window cannot be mapped
+     */
+    public void forEach(Consumer<? super CharSequence> action) throws IOException {
+        MappedLine line = new MappedLine(charset);
+        while (nextLine(line)) {
+            action.accept(line);
+        }
+    }
+
+    /**
+     * Points the specified line to the next line of the file.
+     *
+     * @return {@code false} if the end of the file is reached
+     */
+    private boolean nextLine(MappedLine line) throws IOException {
+        if (position >= end) {
+            return false;
+        }
+        if (window == null || position >= windowStart + window.limit()) {
+            map(position, windowSize);
+        }
+        int start = (int) (position - windowStart);
+        int scanFrom = start;
+        int lineEnd;
+        while ((lineEnd = indexOfLineFeed(window, scanFrom, window.limit())) < 0) {
+            if (windowStart + window.limit() == end) {
+                // last line, without line feed
+                lineEnd = window.limit();
+                break;
+            }
+            // the line does not fit in the window, map it entirely
+            int scanned = window.limit() - start;
+            if (scanned == Integer.MAX_VALUE) {
+                throw new IOException("line at offset " + position + " is longer than 2GB");
+            }
+            map(position, (int) Math.min(Integer.MAX_VALUE, Math.max(2L * scanned, windowSize)));
+            start = 0;
+            scanFrom = scanned;
+        }
+        position = Math.min(end, windowStart + lineEnd + 1);
+        if (lineEnd > start && window.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        line.reset(window, start, lineEnd);
+        return true;
+    }
+
+    /**
+     * Maps a window of at most {@code length} bytes, starting at the specified
+     * position.
+     */
+    private void map(long start, int length) throws IOException {
+        window = channel.map(MapMode.READ_ONLY, start, Math.min(length, end - start))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = start;
+    }
+
+    /**
+     * Returns the index of the first line feed between {@code from} (inclusive)
+     * and {@code to} (exclusive), testing 8 bytes at a time.
+     *
+     * @return the index of the line feed, or -1 if there is none
+     */
+    static int indexOfLineFeed(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            // the bytes equal to '\n' become zeros, the lowest one is exactly flagged
+            long x = buffer.getLong(i) ^ NEWLINES;
+            long found = (x - LOW_BITS) & ~x & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the underlying file channel. The mapped memory is released when the
+     * windows are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        window = null;
+    }
+
+    /**
+     * A line, decoded from the mapped bytes the first time its characters are
+     * accessed.
+     */
+    private static final class MappedLine implements CharSequence {
+
+        private final Charset charset;
+        private ByteBuffer buffer;
+        private int start;
+        private int end;
+        private String decoded;
+
+        MappedLine(Charset charset) {
+            this.charset = charset;
+        }
+
+        void reset(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.decoded = null;
+        }
+
+        @Override
+        public String toString() {
+            if (decoded == null) {
+                byte[] bytes = new byte[end - start];
+                ByteBuffer slice = buffer.duplicate();
+                slice.position(start);
+                slice.get(bytes);
+                decoded = new String(bytes, charset);
+            }
+            return decoded;
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+    }
+}
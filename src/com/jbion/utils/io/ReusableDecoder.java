@@ -0,0 +1,213 @@
+package com.jbion.utils.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes bytes into a caller-supplied {@link StringBuilder}, reusing the same
+ * {@link CharsetDecoder}, byte buffer and char buffer for every call.
+ * <p>
+ * Creating an {@link java.io.InputStreamReader} allocates a decoder and its
+ * buffers, which costs more than decoding a small payload. A
+ * {@link ReusableDecoder} is reset at the beginning of each call instead, and
+ * does not allocate anything once the builder is large enough. The instances
+ * returned by {@link #forCurrentThread(Charset)} are kept per thread and per
+ * charset.
+ * </p>
+ * <p>
+ * Malformed input is replaced, as by an {@link java.io.InputStreamReader}. A
+ * {@link ReusableDecoder} is not thread-safe, and cannot be used again by the
+ * stream it is decoding.
+ * </p>
+ */
+public class ReusableDecoder {
+
+    /**
+     * The size of the byte and char buffers.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<Map<Charset, ReusableDecoder>> DECODERS =
+            new ThreadLocal<Map<Charset, ReusableDecoder>>() {
+                @Override
+                protected Map<Charset, ReusableDecoder> initialValue() {
+                    return new HashMap<>();
+                }
+            };
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean inUse = false;
+
+    /**
+     * Creates a new {@link ReusableDecoder} for the specified charset.
+     *
+     * @param charset
+     *            the charset of the bytes to decode
+     */
+    public ReusableDecoder(Charset charset) {
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Returns the {@link ReusableDecoder} of the current thread for the specified
+     * charset, creating it on the first call.
+     *
+     * @param charset
+     *            the charset of the bytes to decode
+     * @return the decoder of the current thread
+     */
+    public static ReusableDecoder forCurrentThread(Charset charset) {
+        Map<Charset, ReusableDecoder> decoders = DECODERS.get();
+        ReusableDecoder decoder = decoders.get(charset);
+        if (decoder == null) {
+            decoder = new ReusableDecoder(charset);
+            decoders.put(charset, decoder);
+        }
+        return decoder;
+    }
+
+    /**
+     * Returns the charset of this decoder.
+     *
+     * @return the charset of the decoded bytes
+     */
+    public Charset charset() {
+        return decoder.charset();
+    }
+
+    /**
+     * Decodes the specified bytes, and appends the characters to the specified
+     * {@link StringBuilder}.
+     *
+     * @param src
+     *            the bytes to decode
+     * @param dst
+     *            the builder to append the characters to
+     * @return the number of characters appended
+     */
+    public int decode(byte[] src, StringBuilder dst) {
+        return decode(src, 0, src.length, dst);
+    }
+
+    /**
+     * Decodes the specified bytes, and appends the characters to the specified
+     * {@link StringBuilder}.
+     *
+     * @param src
+     *            the array containing the bytes to decode
+     * @param off
+     *            the index of the first byte to decode
+     * @param len
+     *            the number of bytes to decode
+     * @param dst
+     *            the builder to append the characters to
+     * @return the number of characters appended
+     */
+    public int decode(byte[] src, int off, int len, StringBuilder dst) {
+        if ((off | len | (src.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        begin();
+        try {
+            final int start = dst.length();
+            final int end = off + len;
+            int pos = off;
+            while (pos < end) {
+                int n = Math.min(bytes.remaining(), end - pos);
+                bytes.put(src, pos, n);
+                pos += n;
+                bytes.flip();
+                decodeBuffer(dst, false);
+                bytes.compact();
+            }
+            bytes.flip();
+            decodeBuffer(dst, true);
+            return dst.length() - start;
+        } finally {
+            inUse = false;
+        }
+    }
+
+    /**
+     * Reads the specified {@link InputStream} to the end, and appends its decoded
+     * characters to the specified {@link StringBuilder}. The stream is not closed.
+     *
+     * @param in
+     *            the stream to read
+     * @param dst
+     *            the builder to append the characters to
+     * @return the number of characters appended
+     * @throws IOException
+     *             if an I/O error occurs while reading the stream
+     */
+    public int decode(InputStream in, StringBuilder dst) throws IOException {
+        begin();
+        try {
+            final int start = dst.length();
+            final byte[] array = bytes.array();
+            while (true) {
+                int numRead = in.read(array, bytes.position(), bytes.remaining());
+                if (numRead < 0)
+                    break;
+                bytes.position(bytes.position() + numRead);
+                bytes.flip();
+                decodeBuffer(dst, false);
+                bytes.compact();
+            }
+            bytes.flip();
+            decodeBuffer(dst, true);
+            return dst.length() - start;
+        } finally {
+            inUse = false;
+        }
+    }
+
+    /**
+     * Resets the decoder and the buffers for a new input.
+     */
+    private void begin() {
+        if (inUse) {
+            throw new IllegalStateException("the decoder is already decoding another input");
+        }
+        inUse = true;
+        decoder.reset();
+        bytes.clear();
+        chars.clear();
+    }
+
+    /**
+     * Decodes the bytes of the buffer, which is ready to be read. The bytes of an
+     * incomplete character are left in the buffer, unless it is the end of the
+     * input.
+     */
+    private void decodeBuffer(StringBuilder dst, boolean endOfInput) {
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            drainChars(dst);
+            if (result.isUnderflow())
+                break;
+        }
+        if (endOfInput) {
+            while (decoder.flush(chars).isOverflow()) {
+                drainChars(dst);
+            }
+            drainChars(dst);
+        }
+    }
+
+    private void drainChars(StringBuilder dst) {
+        dst.append(chars.array(), 0, chars.position());
+        chars.clear();
+    }
+}
@@ -0,0 +1,261 @@
+package com.jbion.utils.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the lines of a large file in parallel, by splitting it into byte ranges
+ * aligned to line boundaries.
+ * <p>
+ * The {@link Spliterator} returned by {@link #spliterator()} splits its range in
+ * two halves at the first line feed after the middle, so that each range can be
+ * read independently by a {@link MappedLineReader}. The lines are thus processed
+ * on as many cores as the fork-join pool of a {@link #lines() parallel stream}
+ * provides. Since the byte {@code 0x0A} can only be a line feed in UTF-8, the
+ * split positions are always character boundaries.
+ * </p>
+ * <p>
+ * The lines are decoded only when their characters are accessed, and keep a
+ * reference to the mapped window they were found in until then, like the lines
+ * of a {@link MappedLineReader}. The file stays open until this reader is closed.
+ * </p>
+ */
+public class SplittableLineReader implements Closeable {
+
+    /**
+     * The default minimum number of bytes of a range that can be split.
+     */
+    private static final long DEFAULT_MIN_SPLIT_SIZE = 1024 * 1024;
+
+    /**
+     * The number of bytes read at once when looking for a split position.
+     */
+    private static final int SEARCH_BUFFER_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final long size;
+    private final long minSplitSize;
+    private final int windowSize;
+
+    /**
+     * Creates a new {@link SplittableLineReader} on the specified file.
+     *
+     * @param path
+     *            the path of the file to read
+     * @param charset
+     *            the charset of the file, in which line feeds must be single
+     *            {@code 0x0A} bytes
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public SplittableLineReader(Path path, Charset charset) throws IOException {
+        this(path, charset, DEFAULT_MIN_SPLIT_SIZE, MappedLineReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new {@link SplittableLineReader} on the specified file.
+     *
+     * @param path
+     *            the path of the file to read
+     * @param charset
+     *            the charset of the file, in which line feeds must be single
+     *            {@code 0x0A} bytes
+     * @param minSplitSize
+     *            the size under which ranges are not split anymore, in bytes
+     * @param windowSize
+     *            the number of bytes each range maps at once
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    SplittableLineReader(Path path, Charset charset, long minSplitSize, int windowSize) throws IOException {
+        MappedLineReader.checkCharset(charset);
+        if (minSplitSize < 2) {
+            throw new IllegalArgumentException("the minimum split size must be at least 2");
+        }
+        this.charset = charset;
+        this.minSplitSize = minSplitSize;
+        this.windowSize = windowSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the file.
+     *
+     * @return the size of the file, in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns a {@link Spliterator} over all the lines of the file. The
+     * {@link Spliterator} can be split as long as the traversal has not started.
+     * Its estimated size is the number of bytes of its range.
+     *
+     * @return a {@link Spliterator} over the lines of the file
+     */
+    public Spliterator<CharSequence> spliterator() {
+        return new LineSpliterator(0, size);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of the lines of the file. Closing the
+     * returned {@link Stream} closes this reader.
+     * <p>
+     * The I/O errors are thrown as {@link UncheckedIOException}s by the terminal
+     * operation.
+     * </p>
+     *
+     * @return the lines of the file
+     */
+    public Stream<CharSequence> lines() {
+        return StreamSupport.stream(spliterator(), true).onClose(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the position of the first line starting at or after the specified
+     * position, looking no further than {@code limit}.
+     *
+     * @return the position of the line, or -1 if no line starts before
+     *         {@code limit}
+     */
+    long nextLineStart(long from, long limit) throws IOException {
+        if (from == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        // the line starting at 'from' is preceded by a line feed
+        long pos = from - 1;
+        while (pos < limit) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - pos));
+            int numRead = channel.read(buffer, pos);
+            if (numRead < 0)
+                break;
+            int i = MappedLineReader.indexOfLineFeed(buffer, 0, numRead);
+            if (i >= 0) {
+                return pos + i + 1 < limit ? pos + i + 1 : -1;
+            }
+            pos += numRead;
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the underlying file channel.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A {@link Spliterator} over the lines of a range of the file.
+     */
+    private final class LineSpliterator implements Spliterator<CharSequence> {
+
+        /**
+         * The position of the first line of the range.
+         */
+        private long start;
+        private final long end;
+        private MappedLineReader reader = null;
+
+        LineSpliterator(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private MappedLineReader reader() {
+            if (reader == null) {
+                reader = new MappedLineReader(channel, charset, start, end, windowSize);
+            }
+            return reader;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super CharSequence> action) {
+            CharSequence line;
+            try {
+                line = reader().readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (line == null) {
+                return false;
+            }
+            action.accept(line);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super CharSequence> action) {
+            MappedLineReader reader = reader();
+            try {
+                CharSequence line;
+                while ((line = reader.readLine()) != null) {
+                    action.accept(line);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            if (reader != null || end - start < minSplitSize) {
+                return null;
+            }
+            long middle;
+            try {
+                middle = nextLineStart(start + (end - start) / 2, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (middle <= start) {
+                // a single line
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(start, middle);
+            start = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return reader == null ? end - start : end - reader.getPosition();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
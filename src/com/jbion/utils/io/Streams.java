@@ -1,10 +1,23 @@
 package com.jbion.utils.io;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * A class providing helpful methods to handle streams.
@@ -17,6 +30,43 @@ public class Streams {
      */
     private static final int BUFFER_SIZE = 8192;
 
+    /**
+     * The maximum size of an array, some VMs reserve a few header words.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The largest initial allocation made from an expected length that the stream
+     * does not confirm as available, so that a bogus hint cannot allocate
+     * gigabytes before anything is read.
+     */
+    private static final int MAX_UNCONFIRMED_PRESIZE = 1024 * 1024;
+
+    /**
+     * The size of the buffers used to copy streams and channels, in bytes.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The buffers used to copy streams, one per thread.
+     */
+    private static final ThreadLocal<byte[]> TRANSFER_ARRAYS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[TRANSFER_BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * The direct buffers used to copy channels, one per thread.
+     */
+    private static final ThreadLocal<ByteBuffer> TRANSFER_BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        }
+    };
+
     /**
      * Reads the specified {@link InputStream} to the end, and returns it as a
      * {@code String}.
@@ -51,4 +101,245 @@ public class Streams {
         }
         return sb.toString();
     }
+
+    /**
+     * Reads the specified {@link InputStream} to the end, and returns it as a
+     * {@code String}. The stream is closed.
+     * 
+     * @param inputStream
+     *            the {@code InputStream} to read
+     * @param charset
+     *            the charset to use to decode the given stream
+     * @return the built {@code String}, or an empty one
+     * @throws IOException
+     *             if an I/O error occurs while reading the stream
+     */
+    public static String toString(InputStream inputStream, Charset charset) throws IOException {
+        return toString(inputStream, charset, -1);
+    }
+
+    /**
+     * Reads the specified {@link InputStream} to the end, and returns it as a
+     * {@code String}. The stream is closed.
+     * <p>
+     * For UTF-8, ISO-8859-1 and US-ASCII, all the bytes are read into a single
+     * array, sized after {@code expectedLength}, and decoded at once. The other
+     * charsets are decoded as they are read by the {@link ReusableDecoder} of the
+     * current thread, into a builder sized after {@code expectedLength}.
+     * </p>
+     * <p>
+     * The hint is not trusted beyond 1 MiB, unless {@link InputStream#available()}
+     * confirms it. Once the first 1 MiB is filled, the array grows straight to
+     * {@code expectedLength}, so that a correct hint costs a single copy.
+     * </p>
+     * 
+     * @param inputStream
+     *            the {@code InputStream} to read
+     * @param charset
+     *            the charset to use to decode the given stream
+     * @param expectedLength
+     *            the expected number of bytes of the stream, for instance from a
+     *            {@code Content-Length} header, or -1 if unknown. A wrong value
+     *            only costs extra copies.
+     * @return the built {@code String}, or an empty one
+     * @throws IOException
+     *             if an I/O error occurs while reading the stream
+     */
+    public static String toString(InputStream inputStream, Charset charset, int expectedLength)
+            throws IOException {
+        try (InputStream in = inputStream) {
+            if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.ISO_8859_1)
+                    || charset.equals(StandardCharsets.US_ASCII)) {
+                return decodeAllBytes(in, charset, expectedLength);
+            }
+            // there are at most as many chars as bytes in the supported charsets
+            final StringBuilder sb = new StringBuilder(presize(in, expectedLength));
+            ReusableDecoder.forCurrentThread(charset).decode(in, sb);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Returns the initial size of a buffer for the specified expected length,
+     * capped to {@link #MAX_UNCONFIRMED_PRESIZE} unless the stream says that more
+     * bytes are available.
+     */
+    private static int presize(InputStream in, int expectedLength) throws IOException {
+        if (expectedLength <= 0) {
+            return BUFFER_SIZE;
+        }
+        int bound = Math.max(MAX_UNCONFIRMED_PRESIZE, in.available());
+        return Math.min(Math.min(expectedLength, bound), MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * Reads all the bytes of the specified stream into a single array, and decodes
+     * them with a single {@code String} constructor call.
+     */
+    private static String decodeAllBytes(InputStream in, Charset charset, int expectedLength) throws IOException {
+        ByteBuffer bytes = readAllBytes(in, expectedLength);
+        return new String(bytes.array(), 0, bytes.limit(), charset);
+    }
+
+    /**
+     * Reads all the bytes of the specified stream into a single array. The first
+     * time the array is full, it grows to {@code expectedLength} if it is larger,
+     * and doubles afterwards.
+     *
+     * @return the array, wrapped with the number of bytes read as limit
+     */
+    static ByteBuffer readAllBytes(InputStream in, int expectedLength) throws IOException {
+        byte[] bytes = new byte[presize(in, expectedLength)];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                // the expected length may be exact, check for the end before growing
+                int next = in.read();
+                if (next < 0)
+                    break;
+                if (bytes.length == MAX_ARRAY_SIZE) {
+                    throw new OutOfMemoryError("stream too large to fit in a String");
+                }
+                // the data has confirmed the hint so far, trust it for the rest
+                long newLength = expectedLength > bytes.length ? expectedLength : 2L * bytes.length;
+                bytes = Arrays.copyOf(bytes, (int) Math.min(newLength, MAX_ARRAY_SIZE));
+                bytes[length++] = (byte) next;
+            }
+            int numRead = in.read(bytes, length, bytes.length - length);
+            if (numRead < 0)
+                break;
+            length += numRead;
+        }
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Copies the specified {@link InputStream} to the end into the specified
+     * {@link OutputStream}. None of the streams is closed.
+     * <p>
+     * When both streams are file streams, the copy is delegated to the kernel
+     * through their channels. Otherwise, it goes through a buffer reused by the
+     * current thread.
+     * </p>
+     * 
+     * @param in
+     *            the stream to read
+     * @param out
+     *            the stream to write to
+     * @return the number of bytes copied and the duration of the copy
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static TransferStats copy(InputStream in, OutputStream out) throws IOException {
+        if (in instanceof FileInputStream && out instanceof FileOutputStream) {
+            return transfer(((FileInputStream) in).getChannel(), ((FileOutputStream) out).getChannel());
+        }
+        final long start = System.nanoTime();
+        final byte[] buffer = TRANSFER_ARRAYS.get();
+        long total = 0;
+        while (true) {
+            int numRead = in.read(buffer, 0, buffer.length);
+            if (numRead < 0)
+                break;
+            out.write(buffer, 0, numRead);
+            total += numRead;
+        }
+        return new TransferStats(total, System.nanoTime() - start, false);
+    }
+
+    /**
+     * Copies the content of the specified file into the specified file, which is
+     * created or truncated. The copy is delegated to the kernel.
+     * 
+     * @param source
+     *            the file to read
+     * @param target
+     *            the file to write
+     * @return the number of bytes copied and the duration of the copy
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static TransferStats copy(Path source, Path target) throws IOException {
+        try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transfer(src, dst);
+        }
+    }
+
+    /**
+     * Transfers the specified channel to the end into the specified channel. None
+     * of the channels is closed.
+     * <p>
+     * When one of the channels is a {@link FileChannel}, the copy is delegated to
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)} or
+     * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}. The
+     * positions of file channels are updated as if they were read or written.
+     * Otherwise, the copy goes through a direct buffer reused by the current
+     * thread.
+     * </p>
+     * <p>
+     * The JDK only avoids copying the bytes through a buffer (with
+     * {@code sendfile} on Linux for instance) from a file to a file or a socket.
+     * {@link TransferStats#isZeroCopy()} tells whether it was the case for the
+     * whole copy.
+     * </p>
+     * 
+     * @param src
+     *            the channel to read, in blocking mode
+     * @param dst
+     *            the channel to write to, in blocking mode
+     * @return the number of bytes copied and the duration of the copy
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static TransferStats transfer(ReadableByteChannel src, WritableByteChannel dst) throws IOException {
+        final long start = System.nanoTime();
+        long total = 0;
+        boolean zeroCopy = false;
+        if (src instanceof FileChannel) {
+            FileChannel file = (FileChannel) src;
+            long position = file.position();
+            final long size = file.size();
+            while (position < size) {
+                long n = file.transferTo(position, size - position, dst);
+                if (n <= 0)
+                    break;
+                position += n;
+                total += n;
+            }
+            file.position(position);
+            // the JDK only avoids copying through a buffer towards files and sockets
+            zeroCopy = dst instanceof FileChannel || dst instanceof SocketChannel;
+        } else if (dst instanceof FileChannel) {
+            FileChannel file = (FileChannel) dst;
+            long position = file.position();
+            while (true) {
+                // a blocking source only transfers nothing at its end
+                long n = file.transferFrom(src, position, TRANSFER_BUFFER_SIZE * 16L);
+                if (n <= 0)
+                    break;
+                position += n;
+                total += n;
+            }
+            file.position(position);
+            // the JDK reads a source that is not a file through a buffer
+            return new TransferStats(total, System.nanoTime() - start, false);
+        }
+        // remaining bytes, if the source was not a file or transferTo stopped early
+        final ByteBuffer buffer = TRANSFER_BUFFERS.get();
+        buffer.clear();
+        while (src.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                int n = dst.write(buffer);
+                total += n;
+                if (n > 0) {
+                    zeroCopy = false;
+                }
+            }
+            buffer.clear();
+        }
+        return new TransferStats(total, System.nanoTime() - start, zeroCopy);
+    }
 }
@@ -0,0 +1,66 @@
+package com.jbion.utils.io;
+
+import java.util.Locale;
+
+/**
+ * The result of a copy made by the {@link Streams} copy and transfer methods: the
+ * number of bytes copied and the time it took.
+ */
+public class TransferStats {
+
+    private final long bytes;
+    private final long nanos;
+    private final boolean zeroCopy;
+
+    TransferStats(long bytes, long nanos, boolean zeroCopy) {
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.zeroCopy = zeroCopy;
+    }
+
+    /**
+     * Returns the number of bytes copied.
+     *
+     * @return the number of bytes copied
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the duration of the copy.
+     *
+     * @return the duration of the copy, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns the throughput of the copy.
+     *
+     * @return the number of bytes copied per second
+     */
+    public double getBytesPerSecond() {
+        return nanos == 0 ? Double.POSITIVE_INFINITY : bytes * 1e9 / nanos;
+    }
+
+    /**
+     * Returns whether the copy was delegated to the kernel without going through
+     * a buffer. It is only the case when all the bytes were transferred with
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)
+     * transferTo} from a file to a file or a socket: the other transfers are
+     * copied through a buffer by the JDK.
+     *
+     * @return {@code true} if no byte was copied through a buffer
+     */
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d bytes in %.3f ms (%.1f MB/s%s)", bytes, nanos / 1e6,
+                getBytesPerSecond() / 1e6, zeroCopy ? ", zero-copy" : "");
+    }
+}
@@ -1,21 +1,81 @@
 package com.jbion.utils.io;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PushbackInputStream;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A reader that reads and skips the BOM (Byte Order Mark), using it to determine the
  * encoding of the file.
+ * <p>
+ * The bytes are read into a single buffer, in which the BOM is looked for, and
+ * decoded by a single {@link CharsetDecoder} directly into the arrays given to
+ * {@link #read(char[], int, int)}. Malformed input is replaced, as by an
+ * {@link java.io.InputStreamReader}.
+ * </p>
+ * <p>
+ * In detection mode, when there is no BOM, the charset is guessed from the first
+ * buffer of bytes by a {@link CharsetDetector}, and the default charset is only
+ * used if the guess fails. ASCII and ISO-8859-1 input is turned into characters
+ * directly, without going through the decoder.
+ * </p>
  */
 public class UnicodeReader extends Reader {
 
     private static final int BOM_SIZE = 4;
-    private final BufferedReader reader;
-    private String encoding;
+
+    /**
+     * The size of the byte buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final ReadableByteChannel channel;
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+
+    /**
+     * Whether the bytes below {@code 0x80} are ASCII characters in the charset.
+     */
+    private final boolean asciiCompatible;
+    /**
+     * Whether each byte is a character in the charset.
+     */
+    private final boolean latin1;
+
+    /**
+     * The bytes read and not decoded yet, ready to be read.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * The characters decoded for a single char read, when they do not fit in the
+     * caller's array, ready to be read.
+     */
+    private final CharBuffer pending = CharBuffer.allocate(2);
+
+    /**
+     * The last array given to {@link #read(char[], int, int)}, and its wrapper.
+     */
+    private char[] lastArray = null;
+    private CharBuffer lastWrapper = null;
+
+    private boolean endOfInput = false;
+    private boolean flushed = false;
+    private boolean closed = false;
 
     /**
      * Creates a {@code UnicodeReader} for the specified file. Uses system default
@@ -42,46 +102,278 @@ public class UnicodeReader extends Reader {
      *             If an I/O error occurs.
      */
     public UnicodeReader(String filename, String defaultEncoding) throws IOException {
-        // Read ahead BOM_SIZE bytes to fetch any possible BOM
-        final byte bom[] = new byte[BOM_SIZE];
-        final PushbackInputStream pbis = new PushbackInputStream(new FileInputStream(filename), BOM_SIZE);
-        final int n = pbis.read(bom, 0, bom.length);
-        int unread;
+        this(Paths.get(filename), forName(defaultEncoding));
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified file. Uses system default
+     * encoding if BOM is not found.
+     *
+     * @param path
+     *            Input file.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    public UnicodeReader(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified file.
+     *
+     * @param path
+     *            Input file.
+     * @param defaultCharset
+     *            Default charset to be used if BOM is not found, or
+     *            <code>null</code> to use system default charset.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    public UnicodeReader(Path path, Charset defaultCharset) throws IOException {
+        this(path, defaultCharset, false);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified file.
+     *
+     * @param path
+     *            Input file.
+     * @param defaultCharset
+     *            Default charset to be used if BOM is not found and the charset
+     *            cannot be detected, or <code>null</code> to use system default
+     *            charset.
+     * @param detect
+     *            Whether to guess the charset when BOM is not found.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    public UnicodeReader(Path path, Charset defaultCharset, boolean detect) throws IOException {
+        this(null, openChannel(path), defaultCharset, detect);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified stream. Uses system
+     * default encoding if BOM is not found.
+     *
+     * @param in
+     *            Input stream, closed when this reader is closed.
+     * @throws IOException
+     *             If an I/O error occurs while reading the BOM.
+     */
+    public UnicodeReader(InputStream in) throws IOException {
+        this(in, null);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified stream.
+     *
+     * @param in
+     *            Input stream, closed when this reader is closed.
+     * @param defaultCharset
+     *            Default charset to be used if BOM is not found, or
+     *            <code>null</code> to use system default charset.
+     * @throws IOException
+     *             If an I/O error occurs while reading the BOM.
+     */
+    public UnicodeReader(InputStream in, Charset defaultCharset) throws IOException {
+        this(in, defaultCharset, false);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified stream.
+     *
+     * @param in
+     *            Input stream, closed when this reader is closed.
+     * @param defaultCharset
+     *            Default charset to be used if BOM is not found and the charset
+     *            cannot be detected, or <code>null</code> to use system default
+     *            charset.
+     * @param detect
+     *            Whether to guess the charset when BOM is not found.
+     * @throws IOException
+     *             If an I/O error occurs while reading the BOM.
+     */
+    public UnicodeReader(InputStream in, Charset defaultCharset, boolean detect) throws IOException {
+        this(in, null, defaultCharset, detect);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified channel. Uses system
+     * default encoding if BOM is not found.
+     *
+     * @param channel
+     *            Input channel, in blocking mode, closed when this reader is
+     *            closed.
+     * @throws IOException
+     *             If an I/O error occurs while reading the BOM.
+     */
+    public UnicodeReader(ReadableByteChannel channel) throws IOException {
+        this(channel, null);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified channel.
+     *
+     * @param channel
+     *            Input channel, in blocking mode, closed when this reader is
+     *            closed.
+     * @param defaultCharset
+     *            Default charset to be used if BOM is not found, or
+     *            <code>null</code> to use system default charset.
+     * @throws IOException
+     *             If an I/O error occurs while reading the BOM.
+     */
+    public UnicodeReader(ReadableByteChannel channel, Charset defaultCharset) throws IOException {
+        this(channel, defaultCharset, false);
+    }
+
+    /**
+     * Creates a {@code UnicodeReader} for the specified channel.
+     *
+     * @param channel
+     *            Input channel, in blocking mode, closed when this reader is
+     *            closed.
+     * @param defaultCharset
+     *            Default charset to be used if BOM is not found and the charset
+     *            cannot be detected, or <code>null</code> to use system default
+     *            charset.
+     * @param detect
+     *            Whether to guess the charset when BOM is not found.
+     * @throws IOException
+     *             If an I/O error occurs while reading the BOM.
+     */
+    public UnicodeReader(ReadableByteChannel channel, Charset defaultCharset, boolean detect) throws IOException {
+        this(null, channel, defaultCharset, detect);
+    }
+
+    private UnicodeReader(InputStream in, ReadableByteChannel channel, Charset defaultCharset, boolean detect)
+            throws IOException {
+        this.in = in;
+        this.channel = channel;
+        try {
+            // Read ahead BOM_SIZE bytes to fetch any possible BOM
+            bytes.flip();
+            while (bytes.remaining() < BOM_SIZE && !endOfInput) {
+                fill();
+            }
+            Charset bomCharset = readBom();
+            if (defaultCharset == null) {
+                defaultCharset = Charset.defaultCharset();
+            }
+            if (bomCharset != null) {
+                charset = bomCharset;
+            } else if (detect) {
+                charset = detectCharset(defaultCharset);
+            } else {
+                charset = defaultCharset;
+            }
+        } catch (IOException | RuntimeException e) {
+            closeSource();
+            throw e;
+        }
+        decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        asciiCompatible = isAsciiCompatible(charset);
+        pending.flip();
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    private static Charset forName(String encoding) throws UnsupportedEncodingException {
+        if (encoding == null) {
+            return null;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+    }
+
+    /**
+     * Skips the BOM at the beginning of the buffer, if any.
+     *
+     * @return the charset given by the BOM, or {@code null} if there is no BOM
+     */
+    private Charset readBom() {
+        final int n = bytes.remaining();
+        final byte[] bom = new byte[BOM_SIZE];
+        bytes.duplicate().get(bom, 0, Math.min(n, BOM_SIZE));
         // Check for BOM
-        if (bom[0] == (byte) 0xEF && bom[1] == (byte) 0xBB && bom[2] == (byte) 0xBF) {
-            encoding = "UTF-8";
-            unread = n - 3;
-        } else if (bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF) {
-            encoding = "UTF-16BE";
-            unread = n - 2;
-        } else if (bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE) {
-            encoding = "UTF-16LE";
-            unread = n - 2;
-        } else if (bom[0] == (byte) 0x00 && bom[1] == (byte) 0x00 && bom[2] == (byte) 0xFE && bom[3] == (byte) 0xFF) {
-            encoding = "UTF-32BE";
-            unread = n - 4;
-        } else if (bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE && bom[2] == (byte) 0x00 && bom[3] == (byte) 0x00) {
-            encoding = "UTF-32LE";
-            unread = n - 4;
-        } else {
-            encoding = defaultEncoding;
-            unread = n;
+        if (n >= 3 && bom[0] == (byte) 0xEF && bom[1] == (byte) 0xBB && bom[2] == (byte) 0xBF) {
+            bytes.position(3);
+            return StandardCharsets.UTF_8;
+        } else if (n >= 4 && bom[0] == (byte) 0x00 && bom[1] == (byte) 0x00 && bom[2] == (byte) 0xFE
+                && bom[3] == (byte) 0xFF) {
+            bytes.position(4);
+            return Charset.forName("UTF-32BE");
+        } else if (n >= 4 && bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE && bom[2] == (byte) 0x00
+                && bom[3] == (byte) 0x00) {
+            bytes.position(4);
+            return Charset.forName("UTF-32LE");
+        } else if (n >= 2 && bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF) {
+            bytes.position(2);
+            return StandardCharsets.UTF_16BE;
+        } else if (n >= 2 && bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE) {
+            bytes.position(2);
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    /**
+     * Guesses the charset from a full buffer of bytes, which are kept to be
+     * decoded.
+     */
+    private Charset detectCharset(Charset defaultCharset) throws IOException {
+        while (bytes.remaining() < bytes.capacity() && !endOfInput) {
+            fill();
         }
-        // Unread bytes if necessary and skip BOM
-        if (unread > 0) {
-            pbis.unread(bom, n - unread, unread);
-        } else if (unread < -1) {
-            pbis.unread(bom, 0, 0);
+        Charset detected = CharsetDetector.detect(bytes.array(), bytes.arrayOffset() + bytes.position(),
+                bytes.remaining(), endOfInput);
+        if (detected == null) {
+            return defaultCharset;
         }
-        // Use given encoding.
-        if (encoding == null) {
-            final InputStreamReader isr = new InputStreamReader(pbis);
-            reader = new BufferedReader(isr);
-            encoding = isr.getEncoding();
-        } else {
-            reader = new BufferedReader(new InputStreamReader(pbis, encoding));
+        if (detected.equals(StandardCharsets.US_ASCII)) {
+            // the rest of the input may not be ASCII
+            if (defaultCharset.equals(StandardCharsets.ISO_8859_1)) {
+                return defaultCharset;
+            }
+            return StandardCharsets.UTF_8;
+        }
+        return detected;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads more bytes at the end of the buffer, which is ready to be read before
+     * and after this call.
+     */
+    private void fill() throws IOException {
+        bytes.compact();
+        try {
+            int numRead;
+            if (in != null) {
+                numRead = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                if (numRead > 0) {
+                    bytes.position(bytes.position() + numRead);
+                }
+            } else {
+                numRead = channel.read(bytes);
+            }
+            if (numRead < 0) {
+                endOfInput = true;
+            }
+        } finally {
+            bytes.flip();
         }
-        System.out.println("Reader encoding " + encoding);
     }
 
     /**
@@ -93,16 +385,133 @@ public class UnicodeReader extends Reader {
      * @return The encoding used to read the file.
      */
     public String getEncoding() {
-        return encoding;
+        return charset.name();
+    }
+
+    /**
+     * Returns the charset used to read the file. It was determined by the BOM if
+     * any, otherwise it is the given default charset or system default.
+     *
+     * @return The charset used to read the file.
+     */
+    public Charset getCharset() {
+        return charset;
     }
 
     @Override
     public int read(char[] cbuf, int off, int len) throws IOException {
-        return reader.read(cbuf, off, len);
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if ((off | len | (cbuf.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (pending.hasRemaining()) {
+            cbuf[off] = pending.get();
+            return 1;
+        }
+        if (len == 1) {
+            // a surrogate pair would not fit in the caller's array
+            pending.clear();
+            int n = decode(pending);
+            pending.flip();
+            if (n < 0) {
+                return -1;
+            }
+            cbuf[off] = pending.get();
+            return 1;
+        }
+        if (cbuf != lastArray) {
+            lastWrapper = CharBuffer.wrap(cbuf);
+            lastArray = cbuf;
+        }
+        lastWrapper.limit(off + len).position(off);
+        return decode(lastWrapper);
+    }
+
+    /**
+     * Decodes characters into the specified buffer, which has room for at least 2
+     * characters, reading bytes if necessary.
+     *
+     * @return the number of characters decoded, or -1 if the end of the input is
+     *         reached
+     */
+    private int decode(CharBuffer dst) throws IOException {
+        final int start = dst.position();
+        while (!flushed) {
+            if (latin1 || asciiCompatible) {
+                copyDirectly(dst);
+            }
+            CoderResult result = decoder.decode(bytes, dst, endOfInput);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (endOfInput) {
+                if (decoder.flush(dst).isOverflow()) {
+                    break;
+                }
+                flushed = true;
+            } else if (dst.position() > start) {
+                // do not block for more input
+                break;
+            } else {
+                fill();
+            }
+        }
+        int n = dst.position() - start;
+        return n == 0 && flushed ? -1 : n;
+    }
+
+    /**
+     * Turns the leading bytes of the buffer into characters without the decoder:
+     * all the bytes in ISO-8859-1, or the bytes up to the first non-ASCII byte in
+     * the other ASCII compatible charsets. The decoder is stateless for these
+     * charsets, and keeps no bytes between calls.
+     */
+    private void copyDirectly(CharBuffer dst) {
+        final byte[] src = bytes.array();
+        final char[] chars = dst.array();
+        int s = bytes.arrayOffset() + bytes.position();
+        int d = dst.arrayOffset() + dst.position();
+        final int n = Math.min(bytes.remaining(), dst.remaining());
+        final int end = s + n;
+        if (latin1) {
+            for (; s < end; s++, d++) {
+                chars[d] = (char) (src[s] & 0xFF);
+            }
+        } else {
+            for (byte b; s < end && (b = src[s]) >= 0; s++, d++) {
+                chars[d] = (char) b;
+            }
+        }
+        bytes.position(s - bytes.arrayOffset());
+        dst.position(d - dst.arrayOffset());
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return pending.hasRemaining() || bytes.hasRemaining() || (in != null && in.available() > 0);
+    }
+
+    private void closeSource() throws IOException {
+        if (in != null) {
+            in.close();
+        } else {
+            channel.close();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        reader.close();
+        if (!closed) {
+            closed = true;
+            closeSource();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link BitOutputStream} writing its full buffers to the wrapped stream from a
+ * background thread, so that the encoding thread does not wait for slow sinks.
+ * <p>
+ * It uses a fixed number of buffers: while one is filled by the bit packer, the
+ * others are written by the flusher thread. When all of them are waiting to be
+ * written, the encoding thread blocks until one is available, which bounds the
+ * memory used and applies backpressure.
+ * </p>
+ * <p>
+ * An {@link IOException} thrown by the wrapped stream in the flusher thread is
+ * rethrown by the next operation that hands a buffer over, and at the latest by
+ * {@link #flush()} or {@link #close()}. Writing to a closed stream throws an
+ * {@link IOException}.
+ * </p>
+ * <p>
+ * The flusher thread is only stopped by {@link #close()}: a stream that is not
+ * closed keeps its thread, and its buffers, alive until the JVM exits.
+ * </p>
+ */
+public class AsyncBitOutputStream extends BitOutputStream {
+
+    /**
+     * The default number of buffers.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 2;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadFactory FLUSHER_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "bit-stream-flusher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(FLUSHER_THREADS);
+    private final BlockingQueue<byte[]> freeBuffers;
+    private Future<?> lastWrite = null;
+    private volatile IOException failure = null;
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@link AsyncBitOutputStream} with {@link #DEFAULT_BUFFER_COUNT}
+     * buffers of 64 KiB.
+     *
+     * @param out
+     *            the {@link OutputStream} to wrap
+     */
+    public AsyncBitOutputStream(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Creates a new {@link AsyncBitOutputStream}.
+     *
+     * @param out
+     *            the {@link OutputStream} to wrap
+     * @param size
+     *            the size of each buffer
+     * @param bufferCount
+     *            the number of buffers, at least 2
+     */
+    public AsyncBitOutputStream(OutputStream out, int size, int bufferCount) {
+        super(out, size);
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("at least 2 buffers are needed");
+        }
+        // room for every buffer: a written one may come back before a free one is taken
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 1; i < bufferCount; i++) {
+            freeBuffers.add(new byte[size]);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("failed to write to the wrapped stream", e);
+        }
+    }
+
+    /**
+     * Hands the current buffer over to the flusher thread, and replaces it with a
+     * free buffer, waiting if none is available.
+     */
+    @Override
+    void drainBuffer() throws IOException {
+        checkFailure();
+        if (count == 0) {
+            return;
+        }
+        final byte[] full = buf;
+        final int length = count;
+        lastWrite = flusher.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (failure == null) {
+                        out.write(full, 0, length);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e);
+                } finally {
+                    freeBuffers.add(full);
+                }
+            }
+        });
+        try {
+            buf = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a free buffer");
+        }
+        count = 0;
+    }
+
+    /**
+     * Waits for the flusher thread to write all the buffers handed over, then
+     * flushes the wrapped stream.
+     */
+    @Override
+    void flushWrapped() throws IOException {
+        if (lastWrite != null) {
+            try {
+                lastWrite.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the flusher");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+        checkFailure();
+        out.flush();
+    }
+
+    /**
+     * Writes the specified byte, ignoring the bits that are not written yet, as
+     * {@link BitOutputStream} does.
+     */
+    @Override
+    public synchronized void write(int b) throws IOException {
+        checkFailure();
+        if (count == buf.length) {
+            drainBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    /**
+     * Writes the specified bytes, ignoring the bits that are not written yet, as
+     * {@link BitOutputStream} does.
+     */
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        checkFailure();
+        while (len > 0) {
+            if (count == buf.length) {
+                drainBuffer();
+            }
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Flushes the remaining bits, waits for all the buffers to be written, stops
+     * the flusher thread and closes the wrapped stream.
+     *
+     * @throws IOException
+     *             if an I/O error occurred while writing any buffer, or while
+     *             closing the wrapped stream
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            flusher.shutdown();
+            out.close();
+        }
+    }
+}
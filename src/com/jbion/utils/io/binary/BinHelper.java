@@ -14,7 +14,7 @@ public class BinHelper {
      *         {@code str} and starting with zeros.
      */
     public static String addLeadingZeros(String str, int length) {
-        final StringBuilder sb = new StringBuilder();
+        final StringBuilder sb = new StringBuilder(Math.max(length, str.length()));
         for (int i = 0; i < length - str.length(); i++) {
             sb.append("0");
         }
@@ -22,4 +22,99 @@ public class BinHelper {
         return sb.toString();
     }
 
+    /**
+     * Appends the {@code length} least significant bits of {@code value} to the
+     * specified {@link StringBuilder}, as '0' and '1' characters, the most
+     * significant bit first. Leading zeros are included, and no intermediate
+     * object is created.
+     *
+     * @param sb
+     *            the {@link StringBuilder} to append to
+     * @param value
+     *            the value containing the bits
+     * @param length
+     *            the number of bits to append, at most {@link Long#SIZE}
+     * @return {@code sb}
+     */
+    public static StringBuilder appendBits(StringBuilder sb, long value, int length) {
+        for (int shift = length - 1; shift >= 0; shift--) {
+            sb.append((char) ('0' + ((value >>> shift) & 1)));
+        }
+        return sb;
+    }
+
+    /**
+     * Writes the {@code length} least significant bits of {@code value} into the
+     * specified array, as '0' and '1' characters, the most significant bit first.
+     * Leading zeros are included.
+     *
+     * @param value
+     *            the value containing the bits
+     * @param length
+     *            the number of bits to write, at most {@link Long#SIZE}
+     * @param dst
+     *            the array to write the characters into
+     * @param off
+     *            the index of the first character to write in {@code dst}
+     * @return the index in {@code dst} following the last written character
+     */
+    public static int toBinaryChars(long value, int length, char[] dst, int off) {
+        for (int shift = length - 1; shift >= 0; shift--) {
+            dst[off++] = (char) ('0' + ((value >>> shift) & 1));
+        }
+        return off;
+    }
+
+    /**
+     * Parses a sequence of up to {@link Long#SIZE} '0' and '1' characters, and
+     * checks their validity at the same time.
+     *
+     * @param chars
+     *            the characters to parse
+     * @param start
+     *            the index of the first character to parse
+     * @param end
+     *            the index following the last character to parse. There must be
+     *            at most {@link Long#SIZE} characters between {@code start} and
+     *            {@code end}.
+     * @return the value represented by the characters, the last character being
+     *         the least significant bit
+     * @throws IllegalArgumentException
+     *             if a character is neither '0' nor '1'
+     */
+    public static long parseBits(CharSequence chars, int start, int end) {
+        long value = 0;
+        int invalid = 0;
+        for (int i = start; i < end; i++) {
+            int bit = chars.charAt(i) - '0';
+            // any bit above the first one means it was not '0' or '1'
+            invalid |= bit;
+            value = (value << 1) | (bit & 1);
+        }
+        if ((invalid & ~1) != 0) {
+            throw new IllegalArgumentException("The input string '" + chars + "' must contain only 0s and 1s.");
+        }
+        return value;
+    }
+
+    /**
+     * Parses a sequence of '0' and '1' characters into chunks of {@link Long#SIZE}
+     * bits, and checks the validity of all of them before returning.
+     *
+     * @param chars
+     *            the characters to parse
+     * @return the values of the successive chunks of {@link Long#SIZE}
+     *         characters, the last one holding the remaining characters
+     * @throws IllegalArgumentException
+     *             if a character is neither '0' nor '1'
+     */
+    public static long[] parseBitChunks(CharSequence chars) {
+        final int length = chars.length();
+        final long[] chunks = new long[(length + Long.SIZE - 1) / Long.SIZE];
+        for (int c = 0; c < chunks.length; c++) {
+            int start = c * Long.SIZE;
+            chunks[c] = parseBits(chars, start, Math.min(length, start + Long.SIZE));
+        }
+        return chunks;
+    }
 }
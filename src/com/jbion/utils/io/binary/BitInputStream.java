@@ -15,6 +15,10 @@ import java.io.InputStream;
 public class BitInputStream extends BufferedInputStream {
 
     private static final int BITS_PER_BYTE = 8;
+    /**
+     * The maximum number of bits that can be peeked with {@link #peekBits(int)}.
+     */
+    public static final int MAX_PEEK_BITS = Long.SIZE - BITS_PER_BYTE + 1;
     /**
      * The buffer of bits. Only the right-most bits (least significant) are used.
      */
@@ -23,6 +27,15 @@ public class BitInputStream extends BufferedInputStream {
      * Indicates how many bits of the buffer are currently used.
      */
     private int bufferLength = 0;
+    /**
+     * The content of {@link #buffer} when {@link #markBits(int)} was last called.
+     */
+    private long markedBuffer = 0;
+    /**
+     * The value of {@link #bufferLength} when {@link #markBits(int)} was last
+     * called.
+     */
+    private int markedBufferLength = 0;
 
     /**
      * Creates a new {@link BitInputStream} reading from the specified file.
@@ -76,7 +89,7 @@ public class BitInputStream extends BufferedInputStream {
 
     @Override
     public synchronized int available() throws IOException {
-        return bufferLength / 8 + super.available();
+        return availableUnlocked();
     }
 
     /**
@@ -87,12 +100,8 @@ public class BitInputStream extends BufferedInputStream {
      */
     @Override
     public synchronized int read() throws IOException {
-        try {
-            return readByte();
-        } catch (IllegalStateException ise) {
-            // end of stream reached
-            return -1;
-        }
+        long octet = readBitsUnlocked(Byte.SIZE, false);
+        return octet == -1 ? -1 : (int) octet;
     }
 
     /**
@@ -103,14 +112,193 @@ public class BitInputStream extends BufferedInputStream {
      *            the number of bits to get
      * @return the long value representing the bits taken from the buffer
      */
-    private synchronized long pollBitsFromBuffer(int length) {
+    private long pollBitsFromBuffer(int length) {
         assert bufferLength >= length : "buffer too short!";
+        if (length == 0) {
+            return 0L;
+        }
         long leftBits = buffer >>> (bufferLength - length);
-        buffer -= leftBits << (bufferLength - length);
         bufferLength -= length;
+        buffer &= ~(-1L << bufferLength);
         return leftBits;
     }
 
+    /**
+     * Takes the next byte of the underlying stream. The bytes that are already in
+     * the array of the underlying {@link BufferedInputStream} are taken directly
+     * from it, without locking, and the synchronized {@link BufferedInputStream#read()}
+     * is only used to refill that array.
+     *
+     * @return the next byte as an int between 0 and 255, or -1 if the end of the
+     *         stream is reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    private int nextByte() throws IOException {
+        final byte[] bytes = buf;
+        if (pos < count && bytes != null) {
+            return bytes[pos++] & 0xFF;
+        }
+        return super.read();
+    }
+
+    /**
+     * Implementation of {@link #readBits(int, boolean)}, without any locking.
+     * Callers are responsible for the synchronization.
+     * <p>
+     * Only the bytes that are needed to complete the requested bits are consumed
+     * from the underlying stream, so that byte-level operations such as
+     * {@link #mark(int)} keep working between bit reads. When these bytes are all
+     * available in the array of the underlying {@link BufferedInputStream}, they
+     * are copied in a single loop into the bit buffer.
+     * </p>
+     */
+    final long readBitsUnlocked(int length, boolean failOnEOF) throws IOException {
+        if (length > Long.SIZE) {
+            throw new IllegalArgumentException("can't read more bits than the size of a long");
+        }
+        if (length <= bufferLength) {
+            return pollBitsFromBuffer(length);
+        }
+        // the last byte may overflow the 64-bit buffer, it is handled separately
+        final int fullBytes = (length - bufferLength - 1) >>> 3;
+        final byte[] bytes = buf;
+        if (count - pos > fullBytes && bytes != null) {
+            // fast path: all the needed bytes are already in the array
+            long acc = buffer;
+            int p = pos;
+            for (int i = 0; i < fullBytes; i++) {
+                acc = (acc << BITS_PER_BYTE) | (bytes[p++] & 0xFF);
+            }
+            buffer = acc;
+            bufferLength += fullBytes * BITS_PER_BYTE;
+            pos = p;
+        } else {
+            for (int i = 0; i < fullBytes; i++) {
+                int octet = nextByte();
+                if (octet == -1) {
+                    return prematureEOF(failOnEOF);
+                }
+                buffer = (buffer << BITS_PER_BYTE) | octet;
+                bufferLength += BITS_PER_BYTE;
+            }
+        }
+        int lastByte = nextByte();
+        if (lastByte == -1) {
+            return prematureEOF(failOnEOF);
+        }
+        final int missingBits = length - bufferLength;
+        final int remainingBits = BITS_PER_BYTE - missingBits;
+        long result = (buffer << missingBits) | (lastByte >>> remainingBits);
+        buffer = lastByte & ((1 << remainingBits) - 1);
+        bufferLength = remainingBits;
+        return result;
+    }
+
+    private static long prematureEOF(boolean failOnEOF) {
+        if (failOnEOF) {
+            throw new IllegalStateException("premature end of input, cannot read the requested number of bits");
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Implementation of {@link #readBit()}, without any locking. Callers are
+     * responsible for the synchronization.
+     */
+    final int readBitUnlocked() throws IOException {
+        assert bufferLength >= 0 : "buffer has negative length";
+        if (bufferLength == 0) {
+            int octet = nextByte();
+            if (octet == -1) {
+                return -1;
+            }
+            buffer = octet;
+            bufferLength = BITS_PER_BYTE;
+        }
+        return (int) pollBitsFromBuffer(1);
+    }
+
+    /**
+     * Implementation of {@link #readBits(int, long[], int, int)}, without any
+     * locking. Callers are responsible for the synchronization.
+     */
+    final void readBitsUnlocked(int width, long[] dst, int off, int len) throws IOException {
+        checkBulkArguments(width, Long.SIZE, dst.length, off, len);
+        final int end = off + len;
+        int i = off;
+        while (i < end) {
+            final byte[] bytes = buf;
+            if (bufferLength == 0 && width > 0 && width % BITS_PER_BYTE == 0 && bytes != null) {
+                // byte-aligned values are assembled straight from the array
+                final int bytesPerValue = width / BITS_PER_BYTE;
+                int p = pos;
+                final int n = Math.min(end - i, (count - p) / bytesPerValue);
+                for (int k = 0; k < n; k++) {
+                    long value = 0;
+                    for (int b = 0; b < bytesPerValue; b++) {
+                        value = (value << BITS_PER_BYTE) | (bytes[p++] & 0xFF);
+                    }
+                    dst[i++] = value;
+                }
+                pos = p;
+            }
+            if (i < end) {
+                // not aligned, or the array needs a refill
+                dst[i++] = readBitsUnlocked(width, true);
+            }
+        }
+    }
+
+    /**
+     * Implementation of {@link #readBits(int, int[], int, int)}, without any
+     * locking. Callers are responsible for the synchronization.
+     */
+    final void readBitsUnlocked(int width, int[] dst, int off, int len) throws IOException {
+        checkBulkArguments(width, Integer.SIZE, dst.length, off, len);
+        final int end = off + len;
+        int i = off;
+        while (i < end) {
+            final byte[] bytes = buf;
+            if (bufferLength == 0 && width > 0 && width % BITS_PER_BYTE == 0 && bytes != null) {
+                // byte-aligned values are assembled straight from the array
+                final int bytesPerValue = width / BITS_PER_BYTE;
+                int p = pos;
+                final int n = Math.min(end - i, (count - p) / bytesPerValue);
+                for (int k = 0; k < n; k++) {
+                    int value = 0;
+                    for (int b = 0; b < bytesPerValue; b++) {
+                        value = (value << BITS_PER_BYTE) | (bytes[p++] & 0xFF);
+                    }
+                    dst[i++] = value;
+                }
+                pos = p;
+            }
+            if (i < end) {
+                // not aligned, or the array needs a refill
+                dst[i++] = (int) readBitsUnlocked(width, true);
+            }
+        }
+    }
+
+    static void checkBulkArguments(int width, int maxWidth, int arrayLength, int off, int len) {
+        if (width < 0 || width > maxWidth) {
+            throw new IllegalArgumentException("width must be between 0 and " + maxWidth);
+        }
+        if (off < 0 || len < 0 || len > arrayLength - off) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Implementation of {@link #available()}, without any locking. Callers are
+     * responsible for the synchronization.
+     */
+    final int availableUnlocked() throws IOException {
+        return bufferLength / 8 + super.available();
+    }
+
     /**
      * Reads up to {@link Long#SIZE} bits as a long value.
      * 
@@ -132,22 +320,7 @@ public class BitInputStream extends BufferedInputStream {
      *             if an I/O error occurs
      */
     public synchronized long readBits(int length, boolean failOnEOF) throws IOException {
-        if (length > Long.SIZE) {
-            throw new IllegalArgumentException("can't read more bits than the size of a long");
-        }
-        while (bufferLength < length) {
-            int octet = super.read();
-            if (octet == -1) {
-                if (failOnEOF) {
-                    throw new IllegalStateException("premature end of input, cannot read the requested number of bits");
-                } else {
-                    return -1;
-                }
-            }
-            buffer = (buffer << BITS_PER_BYTE) + octet;
-            bufferLength += BITS_PER_BYTE;
-        }
-        return pollBitsFromBuffer(length);
+        return readBitsUnlocked(length, failOnEOF);
     }
 
     /**
@@ -164,7 +337,7 @@ public class BitInputStream extends BufferedInputStream {
      *             if an I/O error occurs
      */
     public synchronized long readBits(int length) throws IOException {
-        return readBits(length, true);
+        return readBitsUnlocked(length, true);
     }
 
     /**
@@ -176,16 +349,226 @@ public class BitInputStream extends BufferedInputStream {
      *             if an I/O error occurs
      */
     public synchronized int readBit() throws IOException {
-        assert bufferLength >= 0 : "buffer has negative length";
-        if (bufferLength == 0) {
-            int octet = super.read();
+        return readBitUnlocked();
+    }
+
+    /**
+     * Reads {@code len} consecutive values of {@code width} bits into the
+     * specified array. This is equivalent to calling {@link #readBits(int)}
+     * {@code len} times, but the lock is only taken once, and byte-aligned values
+     * are copied directly from the buffer.
+     * 
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Long#SIZE}.
+     * @param dst
+     *            the array to store the values into
+     * @param off
+     *            the index in {@code dst} of the first value to store
+     * @param len
+     *            the number of values to read
+     * @throws IllegalStateException
+     *             if the end of stream is reached before all the values could be
+     *             read. The values read so far are stored in {@code dst}.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void readBits(int width, long[] dst, int off, int len) throws IOException {
+        readBitsUnlocked(width, dst, off, len);
+    }
+
+    /**
+     * Reads {@code len} consecutive values of {@code width} bits into the
+     * specified array. This is equivalent to calling {@link #readBits(int)}
+     * {@code len} times, but the lock is only taken once, and byte-aligned values
+     * are copied directly from the buffer.
+     * 
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Integer#SIZE}.
+     * @param dst
+     *            the array to store the values into
+     * @param off
+     *            the index in {@code dst} of the first value to store
+     * @param len
+     *            the number of values to read
+     * @throws IllegalStateException
+     *             if the end of stream is reached before all the values could be
+     *             read. The values read so far are stored in {@code dst}.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void readBits(int width, int[] dst, int off, int len) throws IOException {
+        readBitsUnlocked(width, dst, off, len);
+    }
+
+    /**
+     * Implementation of {@link #peekBits(int, boolean)}, without any locking.
+     * Callers are responsible for the synchronization.
+     */
+    final long peekBitsUnlocked(int length, boolean failOnEOF) throws IOException {
+        if (length > MAX_PEEK_BITS) {
+            throw new IllegalArgumentException("can't peek more than " + MAX_PEEK_BITS + " bits");
+        }
+        while (bufferLength < length) {
+            int octet = nextByte();
             if (octet == -1) {
-                return -1;
+                return prematureEOF(failOnEOF);
+            }
+            buffer = (buffer << BITS_PER_BYTE) | octet;
+            bufferLength += BITS_PER_BYTE;
+        }
+        if (length == 0) {
+            return 0L;
+        }
+        return buffer >>> (bufferLength - length);
+    }
+
+    /**
+     * Implementation of {@link #skipBits(long)}, without any locking. Callers are
+     * responsible for the synchronization.
+     */
+    final long skipBitsUnlocked(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (n <= bufferLength) {
+            pollBitsFromBuffer((int) n);
+            return n;
+        }
+        long remaining = n - bufferLength;
+        buffer = 0;
+        bufferLength = 0;
+        long bytesToSkip = remaining / BITS_PER_BYTE;
+        while (bytesToSkip > 0) {
+            // some streams skip beyond their end, only skip what's known to exist
+            long skipped = super.skip(Math.min(bytesToSkip, super.available()));
+            if (skipped <= 0) {
+                // nothing could be skipped without blocking, fall back to a read
+                if (nextByte() == -1) {
+                    return n - remaining;
+                }
+                skipped = 1;
+            }
+            bytesToSkip -= skipped;
+            remaining -= skipped * BITS_PER_BYTE;
+        }
+        int lastBits = (int) remaining;
+        if (lastBits > 0) {
+            int octet = nextByte();
+            if (octet == -1) {
+                return n - remaining;
             }
             buffer = octet;
             bufferLength = BITS_PER_BYTE;
+            pollBitsFromBuffer(lastBits);
         }
-        return (int) pollBitsFromBuffer(1);
+        return n;
+    }
+
+    /**
+     * Returns the next bits of this stream as a long value, without consuming
+     * them. The next read will start with the same bits.
+     * 
+     * @param length
+     *            the number of bits to peek. Must not exceed {@link #MAX_PEEK_BITS}.
+     * @param failOnEOF
+     *            indicates how to behave in case of premature end of input. If
+     *            {@code true}, this method throws {@link IllegalStateException} if
+     *            there's not enough bits left. If {@code false}, this methods
+     *            returns -1 in such a case.
+     * @return the long value of the next {@code length} bits, or -1 if the end of
+     *         input is reached (only if {@code failOnEOF} is {@code false})
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be peeked (only if {@code failOnEOF} is {@code true})
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long peekBits(int length, boolean failOnEOF) throws IOException {
+        return peekBitsUnlocked(length, failOnEOF);
+    }
+
+    /**
+     * Returns the next bits of this stream as a long value, without consuming
+     * them. The next read will start with the same bits.
+     * 
+     * @param length
+     *            the number of bits to peek. Must not exceed {@link #MAX_PEEK_BITS}.
+     * @return the long value of the next {@code length} bits
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be peeked
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long peekBits(int length) throws IOException {
+        return peekBitsUnlocked(length, true);
+    }
+
+    /**
+     * Skips over and discards {@code n} bits from this stream.
+     * 
+     * @param n
+     *            the number of bits to skip
+     * @return the actual number of bits skipped, which is less than {@code n} only
+     *         if the end of stream was reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long skipBits(long n) throws IOException {
+        return skipBitsUnlocked(n);
+    }
+
+    /**
+     * Marks the current bit position in this stream. A subsequent call to
+     * {@link #resetBits()} repositions this stream at the last marked bit, even if
+     * it is in the middle of a byte.
+     * 
+     * @param readLimit
+     *            the maximum number of bytes that can be read before the mark
+     *            position becomes invalid
+     * @see BufferedInputStream#mark(int)
+     */
+    public synchronized void markBits(int readLimit) {
+        super.mark(readLimit);
+        markedBuffer = buffer;
+        markedBufferLength = bufferLength;
+    }
+
+    /**
+     * Repositions this stream at the bit position of the last call to
+     * {@link #markBits(int)}.
+     * 
+     * @throws IOException
+     *             if this stream has not been marked or if the mark has been
+     *             invalidated
+     * @see BufferedInputStream#reset()
+     */
+    public synchronized void resetBits() throws IOException {
+        super.reset();
+        buffer = markedBuffer;
+        bufferLength = markedBufferLength;
+    }
+
+    /**
+     * Marks the current position in this stream, at bit level.
+     * 
+     * @see #markBits(int)
+     */
+    @Override
+    public synchronized void mark(int readLimit) {
+        markBits(readLimit);
+    }
+
+    /**
+     * Repositions this stream at the last marked bit position.
+     * 
+     * @see #resetBits()
+     */
+    @Override
+    public synchronized void reset() throws IOException {
+        resetBits();
     }
 
     /**
@@ -204,15 +587,63 @@ public class BitInputStream extends BufferedInputStream {
      *             if an I/O error occurs
      */
     public String readBitsAsString(int length) throws IOException {
+        return readBitsAsString(length, new StringBuilder(length)).toString();
+    }
+
+    /**
+     * Reads the next {@code length} bits of this stream, and appends them to the
+     * specified {@link StringBuilder} as '0' and '1' characters. No intermediate
+     * object is created.
+     *
+     * @param length
+     *            the number of bits to read
+     * @param dst
+     *            the {@link StringBuilder} to append the bits to
+     * @return {@code dst}
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public StringBuilder readBitsAsString(int length, StringBuilder dst) throws IOException {
+        int remainingLength = length;
+        while (remainingLength > 0) {
+            int toRead = Math.min(remainingLength, Long.SIZE);
+            BinHelper.appendBits(dst, readBits(toRead), toRead);
+            remainingLength -= toRead;
+        }
+        return dst;
+    }
+
+    /**
+     * Reads the next {@code length} bits of this stream, and writes them into the
+     * specified array as '0' and '1' characters.
+     *
+     * @param length
+     *            the number of bits to read
+     * @param dst
+     *            the array to write the characters into
+     * @param off
+     *            the index of the first character to write in {@code dst}
+     * @return the index in {@code dst} following the last written character
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int readBitsAsChars(int length, char[] dst, int off) throws IOException {
+        if (off < 0 || length < 0 || length > dst.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
         int remainingLength = length;
-        final StringBuilder sb = new StringBuilder();
         while (remainingLength > 0) {
             int toRead = Math.min(remainingLength, Long.SIZE);
-            String tempBits = Long.toBinaryString(readBits(toRead));
-            sb.append(BinHelper.addLeadingZeros(tempBits, toRead));
+            off = BinHelper.toBinaryChars(readBits(toRead), toRead, dst, off);
             remainingLength -= toRead;
         }
-        return sb.toString();
+        return off;
     }
 
     /**
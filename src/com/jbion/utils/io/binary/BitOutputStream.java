@@ -39,61 +39,74 @@ public class BitOutputStream extends BufferedOutputStream {
     }
 
     /**
-     * Returns the value of the last n bits. If {@code n > 63}, the initial value is
-     * returned. If {@code n == 0}, 0 is returned (no bit kept).
+     * Writes the content of the array of the underlying {@link BufferedOutputStream}
+     * to the wrapped stream, without flushing the wrapped stream. Subclasses may
+     * hand the array over and replace {@link #buf}, which callers re-read
+     * afterwards.
      * 
-     * @param value
-     *            the value to keep the last n bits from
-     * @param n
-     *            the number of bits to keep
-     * @return the long value represented by the last n bits of the specified value
+     * @throws IOException
+     *             if an I/O error occurs
      */
-    private static long keepLastNBits(long value, int n) {
-        if (n == 0) {
-            // shift of 64 bits won't shift at all, force 0 instead
-            return 0L;
-        } else if (n > 63) {
-            return value;
+    void drainBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
         }
-        int numBitsToDelete = Long.SIZE - n;
-        return (value << numBitsToDelete) >>> numBitsToDelete;
     }
 
     /**
-     * Returns the complete bytes within the specified bits.
+     * Flushes the wrapped stream, once the array of the underlying
+     * {@link BufferedOutputStream} has been drained.
      * 
-     * @param value
-     *            the bits value
-     * @param n
-     *            the number of least significant bits to consider
-     * @return a byte array containing the complete bytes from the most significant
-     *         bits to the least significant ones.
+     * @throws IOException
+     *             if an I/O error occurs
      */
-    private static byte[] getCompleteBytes(long value, int n) {
-        byte[] bytes = new byte[n / 8];
-        long completeBytes = value >>> (n % 8);
-        for (int i = 0; i < bytes.length; i++) {
-            bytes[bytes.length - i - 1] = (byte) (completeBytes & 0xFF);
-            completeBytes >>>= 8;
-        }
-        return bytes;
+    void flushWrapped() throws IOException {
+        out.flush();
     }
 
     /**
-     * Writes the complete bytes of the buffer to the underlying
-     * {@link BufferedOutputStream}.
+     * Appends the specified bits to the bit buffer, and writes the resulting
+     * complete bytes directly into the array of the underlying
+     * {@link BufferedOutputStream}. No object is allocated on this path, and the
+     * caller is responsible for the synchronization.
      * 
+     * @param value
+     *            the value of the bits to write
+     * @param nBits
+     *            the number of least significant bits of {@code value} to write,
+     *            between 0 and {@link Long#SIZE}
      * @throws IOException
      *             if an I/O error occurs
      */
-    private void writeBufferExcess() throws IOException {
-        byte[] bytes = getCompleteBytes(buffer, bufferLength);
-        for (byte b : bytes) {
-            super.write(b);
-            bufferLength -= 8;
+    private void writeBitsUnlocked(long value, int nBits) throws IOException {
+        if (bufferLength + nBits > Long.SIZE) {
+            // the bits would not fit in a long along with the buffered ones
+            writeBitsUnlocked(value >>> Integer.SIZE, nBits - Integer.SIZE);
+            nBits = Integer.SIZE;
         }
-        buffer = keepLastNBits(buffer, bufferLength % 8);
-        assert bufferLength < 8 : "buffer excess not completely removed";
+        long acc;
+        if (nBits == Long.SIZE) {
+            // the buffer is necessarily empty here
+            acc = value;
+        } else {
+            acc = (buffer << nBits) | (value & ~(-1L << nBits));
+        }
+        final int accLength = bufferLength + nBits;
+        byte[] bytes = buf;
+        int c = count;
+        for (int shift = accLength - 8; shift >= 0; shift -= 8) {
+            if (c == bytes.length) {
+                count = c;
+                drainBuffer();
+                bytes = buf;
+                c = 0;
+            }
+            bytes[c++] = (byte) (acc >>> shift);
+        }
+        count = c;
+        bufferLength = accLength & 7;
+        buffer = acc & ~(-1L << bufferLength);
     }
 
     /**
@@ -108,9 +121,7 @@ public class BitOutputStream extends BufferedOutputStream {
         if (bit != 0 && bit != 1) {
             throw new IllegalArgumentException("the specified bit is neither 0 nor 1");
         }
-        buffer = (buffer << 1) + bit;
-        bufferLength += 1;
-        writeBufferExcess();
+        writeBitsUnlocked(bit, 1);
     }
 
     /**
@@ -129,27 +140,109 @@ public class BitOutputStream extends BufferedOutputStream {
         if (nBits > Long.SIZE) {
             throw new IllegalArgumentException("cannot write more bits than the length of a long");
         }
-        if (nBits <= 8) {
-            long cleanBits = keepLastNBits(value, nBits);
-            buffer = (buffer << nBits) + cleanBits;
-            bufferLength += nBits;
-            writeBufferExcess();
-        } else {
-            byte[] bytes = getCompleteBytes(value, nBits);
-            for (byte b : bytes) {
-                writeBits(b, 8);
+        writeBitsUnlocked(value, nBits);
+    }
+
+    /**
+     * Writes {@code len} consecutive values of {@code width} bits from the
+     * specified array. This is equivalent to calling
+     * {@link #writeBits(long, int)} {@code len} times, but the lock is only taken
+     * once, and byte-aligned values are copied directly into the buffer.
+     * 
+     * @param src
+     *            the array containing the values to write
+     * @param off
+     *            the index in {@code src} of the first value to write
+     * @param len
+     *            the number of values to write
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Long#SIZE}. The least significant bits of each value are
+     *            written.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void writeBits(long[] src, int off, int len, int width) throws IOException {
+        BitInputStream.checkBulkArguments(width, Long.SIZE, src.length, off, len);
+        final int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (bufferLength == 0 && width > 0 && width % 8 == 0) {
+                // byte-aligned values are split straight into the array
+                final byte[] bytes = buf;
+                int c = count;
+                final int n = Math.min(end - i, (bytes.length - c) / (width / 8));
+                for (int k = 0; k < n; k++) {
+                    final long value = src[i++];
+                    for (int shift = width - 8; shift >= 0; shift -= 8) {
+                        bytes[c++] = (byte) (value >>> shift);
+                    }
+                }
+                count = c;
+            }
+            if (i < end) {
+                // not aligned, or the array needs to be drained
+                writeBitsUnlocked(src[i++], width);
             }
-            writeBits(value, nBits - 8 * bytes.length);
         }
     }
 
+    /**
+     * Writes {@code len} consecutive values of {@code width} bits from the
+     * specified array. This is equivalent to calling
+     * {@link #writeBits(long, int)} {@code len} times, but the lock is only taken
+     * once, and byte-aligned values are copied directly into the buffer.
+     * 
+     * @param src
+     *            the array containing the values to write
+     * @param off
+     *            the index in {@code src} of the first value to write
+     * @param len
+     *            the number of values to write
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Integer#SIZE}. The least significant bits of each value are
+     *            written.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void writeBits(int[] src, int off, int len, int width) throws IOException {
+        BitInputStream.checkBulkArguments(width, Integer.SIZE, src.length, off, len);
+        final int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (bufferLength == 0 && width > 0 && width % 8 == 0) {
+                // byte-aligned values are split straight into the array
+                final byte[] bytes = buf;
+                int c = count;
+                final int n = Math.min(end - i, (bytes.length - c) / (width / 8));
+                for (int k = 0; k < n; k++) {
+                    final int value = src[i++];
+                    for (int shift = width - 8; shift >= 0; shift -= 8) {
+                        bytes[c++] = (byte) (value >>> shift);
+                    }
+                }
+                count = c;
+            }
+            if (i < end) {
+                // not aligned, or the array needs to be drained
+                writeBitsUnlocked(src[i++], width);
+            }
+        }
+    }
+
+    /**
+     * Flushes this stream. If the written bits do not end on a byte boundary, the
+     * last byte is completed with 0s, and the next bits will be written at the
+     * beginning of a new byte.
+     */
     @Override
     public synchronized void flush() throws IOException {
-        writeBufferExcess();
         if (bufferLength > 0) {
-            super.write((int) (buffer << (8 - bufferLength)));
+            writeBitsUnlocked(0, 8 - bufferLength);
         }
-        super.flush();
+        drainBuffer();
+        flushWrapped();
     }
 
     /**
@@ -222,37 +315,43 @@ public class BitOutputStream extends BufferedOutputStream {
 
     /**
      * Writes the given binary string to a buffer that will be written byte by byte.
+     * The characters are packed 64 at a time, and all of them are validated
+     * before any bit is written.
      *
      * @param binaryString
      *            A binary {@code String}. This {@code String} must contain only the
      *            characters '0' or '1'.
+     * @throws IllegalArgumentException
+     *             if the string contains other characters than '0' or '1'
      * @throws IOException
      *             if an I/O error occurs
      */
     public void writeString(String binaryString) throws IOException {
-        if (!binaryString.matches("[01]*")) {
-            throw new IllegalArgumentException("The input string '" + binaryString + "' must contain only 0s and 1s.");
-        }
-        for (char c : binaryString.toCharArray()) {
-            if (c == '0') {
-                writeBit(0);
-            } else {
-                assert c == '1' : "argument check failed";
-                writeBit(1);
-            }
+        final int length = binaryString.length();
+        if (length <= Long.SIZE) {
+            writeBits(BinHelper.parseBits(binaryString, 0, length), length);
+            return;
         }
+        // the whole string is validated before anything is written
+        final long[] chunks = BinHelper.parseBitChunks(binaryString);
+        final int last = chunks.length - 1;
+        writeBits(chunks, 0, last, Long.SIZE);
+        writeBits(chunks[last], length - last * Long.SIZE);
     }
 
     /**
      * Closes this stream, flushing the buffer.
+     * 
+     * @throws IOException
+     *             if the buffer cannot be flushed or the wrapped stream cannot be
+     *             closed
      */
     @Override
-    public void close() {
+    public void close() throws IOException {
         try {
             flush();
-            super.close();
-        } catch (final IOException e) {
-            e.printStackTrace();
+        } finally {
+            out.close();
         }
     }
 }
@@ -0,0 +1,559 @@
+package com.jbion.utils.io.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads bits from a {@link ByteBuffer}, heap or direct, or from a
+ * {@link ReadableByteChannel} through a direct buffer. It decodes the same
+ * MSB-first layout as a {@link BitInputStream}, and offers the same reading
+ * methods, but reads the bytes directly from the buffer, 8 at a time whenever
+ * possible, without copying them to an intermediate array.
+ * <p>
+ * A {@link ByteBufferBitReader} is not thread-safe.
+ * </p>
+ */
+public class ByteBufferBitReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final ByteBuffer buffer;
+    private final ReadableByteChannel channel;
+
+    /**
+     * The bits read from the buffer and not consumed yet. The next bit to read is
+     * the most significant one.
+     */
+    private long cache = 0;
+    /**
+     * The number of valid bits in the cache.
+     */
+    private int cacheBits = 0;
+
+    /**
+     * Creates a new {@link ByteBufferBitReader} reading the remaining bytes of the
+     * specified buffer. The position of the buffer is moved as bits are read; its
+     * byte order is ignored.
+     *
+     * @param buffer
+     *            the buffer to read from
+     */
+    public ByteBufferBitReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.channel = null;
+    }
+
+    /**
+     * Creates a new {@link ByteBufferBitReader} reading from the specified channel,
+     * through a direct buffer of the default size.
+     *
+     * @param channel
+     *            the channel to read from. Reads on this channel are expected to
+     *            block until at least one byte is available.
+     */
+    public ByteBufferBitReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link ByteBufferBitReader} reading from the specified channel,
+     * through a direct buffer of the specified size.
+     *
+     * @param channel
+     *            the channel to read from. Reads on this channel are expected to
+     *            block until at least one byte is available.
+     * @param bufferSize
+     *            the size of the buffer, in bytes
+     */
+    public ByteBufferBitReader(ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize < Long.BYTES) {
+            throw new IllegalArgumentException("buffer size must be at least " + Long.BYTES);
+        }
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+        this.channel = channel;
+    }
+
+    /**
+     * Makes sure the buffer has remaining bytes, reading from the channel if
+     * necessary.
+     *
+     * @return {@code false} if the end of input has been reached
+     */
+    private boolean ensureRemaining() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        if (channel == null) {
+            return false;
+        }
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        buffer.flip();
+        return n > 0;
+    }
+
+    /**
+     * Fills the cache with as many bytes as possible, up to 64 bits.
+     */
+    private void refill() throws IOException {
+        if (cacheBits == 0 && buffer.remaining() >= Long.BYTES) {
+            long word = buffer.getLong();
+            cache = buffer.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word);
+            cacheBits = Long.SIZE;
+            return;
+        }
+        while (cacheBits <= Long.SIZE - Byte.SIZE && ensureRemaining()) {
+            cache |= (buffer.get() & 0xFFL) << (Long.SIZE - Byte.SIZE - cacheBits);
+            cacheBits += Byte.SIZE;
+        }
+    }
+
+    /**
+     * Removes the first {@code length} bits of the cache, which must contain
+     * enough bits.
+     */
+    private long pollCache(int length) {
+        if (length == 0) {
+            return 0L;
+        }
+        long value = cache >>> (Long.SIZE - length);
+        cache = length == Long.SIZE ? 0L : cache << length;
+        cacheBits -= length;
+        return value;
+    }
+
+    private static long prematureEOF(boolean failOnEOF) {
+        if (failOnEOF) {
+            throw new IllegalStateException("premature end of input, cannot read the requested number of bits");
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits as a long value.
+     *
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @param failOnEOF
+     *            indicates how to behave in case of premature end of input. If
+     *            {@code true}, this method throws {@link IllegalStateException} if
+     *            there's not enough bits to read. If {@code false}, this methods
+     *            returns -1 in such a case.
+     * @return the long value of the read bits, or -1 if the end of input is reached
+     *         (only if {@code failOnEOF} is {@code false})
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be read (only if {@code failOnEOF} is {@code true})
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitInputStream#readBits(int, boolean)
+     */
+    public long readBits(int length, boolean failOnEOF) throws IOException {
+        if (length > Long.SIZE) {
+            throw new IllegalArgumentException("can't read more bits than the size of a long");
+        }
+        if (length <= cacheBits) {
+            return pollCache(length);
+        }
+        refill();
+        if (length <= cacheBits) {
+            return pollCache(length);
+        }
+        if (cacheBits <= Long.SIZE - Byte.SIZE || !ensureRemaining()) {
+            // the refill stopped because of the end of input
+            return prematureEOF(failOnEOF);
+        }
+        // the cache is almost full, but a long is requested
+        int highLength = cacheBits;
+        long high = pollCache(highLength);
+        refill();
+        return (high << (length - highLength)) | pollCache(length - highLength);
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits as a long value.
+     *
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @return the long value of the read bits
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public long readBits(int length) throws IOException {
+        return readBits(length, true);
+    }
+
+    /**
+     * Reads {@code len} consecutive values of {@code width} bits into the
+     * specified array.
+     *
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Long#SIZE}.
+     * @param dst
+     *            the array to store the values into
+     * @param off
+     *            the index in {@code dst} of the first value to store
+     * @param len
+     *            the number of values to read
+     * @throws IllegalStateException
+     *             if the end of input is reached before all the values could be
+     *             read
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitInputStream#readBits(int, long[], int, int)
+     */
+    public void readBits(int width, long[] dst, int off, int len) throws IOException {
+        BitInputStream.checkBulkArguments(width, Long.SIZE, dst.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = readBits(width, true);
+        }
+    }
+
+    /**
+     * Reads {@code len} consecutive values of {@code width} bits into the
+     * specified array.
+     *
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Integer#SIZE}.
+     * @param dst
+     *            the array to store the values into
+     * @param off
+     *            the index in {@code dst} of the first value to store
+     * @param len
+     *            the number of values to read
+     * @throws IllegalStateException
+     *             if the end of input is reached before all the values could be
+     *             read
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitInputStream#readBits(int, int[], int, int)
+     */
+    public void readBits(int width, int[] dst, int off, int len) throws IOException {
+        BitInputStream.checkBulkArguments(width, Integer.SIZE, dst.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = (int) readBits(width, true);
+        }
+    }
+
+    /**
+     * Returns the next bits as a long value, without consuming them.
+     *
+     * @param length
+     *            the number of bits to peek. Must not exceed
+     *            {@link BitInputStream#MAX_PEEK_BITS}.
+     * @param failOnEOF
+     *            indicates how to behave in case of premature end of input. If
+     *            {@code true}, this method throws {@link IllegalStateException} if
+     *            there's not enough bits left. If {@code false}, this methods
+     *            returns -1 in such a case.
+     * @return the long value of the next {@code length} bits, or -1 if the end of
+     *         input is reached (only if {@code failOnEOF} is {@code false})
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be peeked (only if {@code failOnEOF} is {@code true})
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitInputStream#peekBits(int, boolean)
+     */
+    public long peekBits(int length, boolean failOnEOF) throws IOException {
+        if (length > BitInputStream.MAX_PEEK_BITS) {
+            throw new IllegalArgumentException("can't peek more than " + BitInputStream.MAX_PEEK_BITS + " bits");
+        }
+        if (length > cacheBits) {
+            refill();
+            if (length > cacheBits) {
+                return prematureEOF(failOnEOF);
+            }
+        }
+        return length == 0 ? 0L : cache >>> (Long.SIZE - length);
+    }
+
+    /**
+     * Returns the next bits as a long value, without consuming them.
+     *
+     * @param length
+     *            the number of bits to peek. Must not exceed
+     *            {@link BitInputStream#MAX_PEEK_BITS}.
+     * @return the long value of the next {@code length} bits
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be peeked
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public long peekBits(int length) throws IOException {
+        return peekBits(length, true);
+    }
+
+    /**
+     * Skips over and discards {@code n} bits.
+     *
+     * @param n
+     *            the number of bits to skip
+     * @return the actual number of bits skipped, which is less than {@code n} only
+     *         if the end of input was reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public long skipBits(long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            if (cacheBits == 0) {
+                refill();
+                if (cacheBits == 0) {
+                    break;
+                }
+            }
+            int toSkip = (int) Math.min(remaining, cacheBits);
+            pollCache(toSkip);
+            remaining -= toSkip;
+        }
+        return n - Math.max(remaining, 0);
+    }
+
+    /**
+     * Reads the next bit.
+     *
+     * @return 1 or 0 depending on the read bit, or -1 if the end of input was
+     *         reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int readBit() throws IOException {
+        if (cacheBits == 0) {
+            refill();
+            if (cacheBits == 0) {
+                return -1;
+            }
+        }
+        return (int) pollCache(1);
+    }
+
+    /**
+     * Reads a binary String representing the next {@code length} bits.
+     *
+     * @param length
+     *            the number of bits to read
+     * @return a {@code String} representing the bits read with the characters '0'
+     *         and '1'
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitInputStream#readBitsAsString(int)
+     */
+    public String readBitsAsString(int length) throws IOException {
+        return readBitsAsString(length, new StringBuilder(length)).toString();
+    }
+
+    /**
+     * Reads the next {@code length} bits of this reader, and appends them to the
+     * specified {@link StringBuilder} as '0' and '1' characters. No intermediate
+     * object is created.
+     *
+     * @param length
+     *            the number of bits to read
+     * @param dst
+     *            the {@link StringBuilder} to append the bits to
+     * @return {@code dst}
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public StringBuilder readBitsAsString(int length, StringBuilder dst) throws IOException {
+        int remainingLength = length;
+        while (remainingLength > 0) {
+            int toRead = Math.min(remainingLength, Long.SIZE);
+            BinHelper.appendBits(dst, readBits(toRead), toRead);
+            remainingLength -= toRead;
+        }
+        return dst;
+    }
+
+    /**
+     * Reads the next {@code length} bits of this reader, and writes them into the
+     * specified array as '0' and '1' characters.
+     *
+     * @param length
+     *            the number of bits to read
+     * @param dst
+     *            the array to write the characters into
+     * @param off
+     *            the index of the first character to write in {@code dst}
+     * @return the index in {@code dst} following the last written character
+     * @throws IllegalStateException
+     *             if the end of input is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int readBitsAsChars(int length, char[] dst, int off) throws IOException {
+        if (off < 0 || length < 0 || length > dst.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        int remainingLength = length;
+        while (remainingLength > 0) {
+            int toRead = Math.min(remainingLength, Long.SIZE);
+            off = BinHelper.toBinaryChars(readBits(toRead), toRead, dst, off);
+            remainingLength -= toRead;
+        }
+        return off;
+    }
+
+    /**
+     * Reads the next bit as a {@code boolean}.
+     *
+     * @return {@code true} for a 1 and {@code false} for a 0
+     * @throws IllegalStateException
+     *             if the end of input was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public boolean readBoolean() throws IOException {
+        return readBits(1) == 1;
+    }
+
+    /**
+     * Reads the next bit as a {@link Boolean}.
+     *
+     * @return {@code true} for a 1 and {@code false} for a 0, or {@code null} if the
+     *         end of input was reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public Boolean readBooleanOrNull() throws IOException {
+        int bit = readBit();
+        return bit == -1 ? null : bit == 1;
+    }
+
+    /**
+     * Reads the next {@link Byte#SIZE} bits as a {@code byte}.
+     *
+     * @return the read {@code byte}
+     * @throws IllegalStateException
+     *             if the end of input was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public byte readByte() throws IOException {
+        return (byte) readBits(Byte.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Byte#SIZE} bits as a {@link Byte}.
+     *
+     * @return the read {@link Byte}, or {@code null} if the end of input was reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public Byte readByteOrNull() throws IOException {
+        long value = readBits(Byte.SIZE, false);
+        return value == -1 ? null : (byte) value;
+    }
+
+    /**
+     * Reads the next {@link Character#SIZE} bits as a {@code char}.
+     *
+     * @return the read {@code char}
+     * @throws IllegalStateException
+     *             if the end of input was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public char readChar() throws IOException {
+        return (char) readBits(Character.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Character#SIZE} bits as a {@link Character}.
+     *
+     * @return the read {@link Character}, or {@code null} if the end of input was
+     *         reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public Character readCharacter() throws IOException {
+        long value = readBits(Character.SIZE, false);
+        return value == -1 ? null : (char) value;
+    }
+
+    /**
+     * Reads the next {@link Integer#SIZE} bits as an {@code int}.
+     *
+     * @return the read {@code int}
+     * @throws IllegalStateException
+     *             if the end of input was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        return (int) readBits(Integer.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Integer#SIZE} bits as an {@link Integer}.
+     *
+     * @return the read {@link Integer}, or {@code null} if the end of input was
+     *         reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public Integer readInteger() throws IOException {
+        long value = readBits(Integer.SIZE, false);
+        return value == -1 ? null : (int) value;
+    }
+
+    /**
+     * Reads the next {@link Long#SIZE} bits as a {@code long}.
+     *
+     * @return the read {@code long}
+     * @throws IllegalStateException
+     *             if the end of input was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public long readLong() throws IOException {
+        return readBits(Long.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Long#SIZE} bits as a {@link Long}.
+     *
+     * @return the read {@link Long}, or {@code null} if the end of input was reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public Long readLongOrNull() throws IOException {
+        try {
+            return readBits(Long.SIZE);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Closes the underlying channel, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
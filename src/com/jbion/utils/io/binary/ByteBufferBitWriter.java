@@ -0,0 +1,336 @@
+package com.jbion.utils.io.binary;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes bits into a {@link ByteBuffer}, heap or direct, or to a
+ * {@link WritableByteChannel} through a direct buffer. It produces the same
+ * MSB-first layout as a {@link BitOutputStream}, and offers the same writing
+ * methods, but writes the bits directly into the buffer, 8 bytes at a time
+ * whenever possible.
+ * <p>
+ * A {@link ByteBufferBitWriter} is not thread-safe.
+ * </p>
+ */
+public class ByteBufferBitWriter implements Closeable, Flushable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+
+    /**
+     * The bits not written to the buffer yet. The first bit is the most
+     * significant one, and the unused bits are 0s.
+     */
+    private long cache = 0;
+    /**
+     * The number of valid bits in the cache.
+     */
+    private int cacheBits = 0;
+
+    /**
+     * Creates a new {@link ByteBufferBitWriter} writing into the specified buffer,
+     * from its current position. Its byte order is ignored.
+     *
+     * @param buffer
+     *            the buffer to write into
+     */
+    public ByteBufferBitWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.channel = null;
+    }
+
+    /**
+     * Creates a new {@link ByteBufferBitWriter} writing to the specified channel,
+     * through a direct buffer of the default size.
+     *
+     * @param channel
+     *            the channel to write to
+     */
+    public ByteBufferBitWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link ByteBufferBitWriter} writing to the specified channel,
+     * through a direct buffer of the specified size.
+     *
+     * @param channel
+     *            the channel to write to
+     * @param bufferSize
+     *            the size of the buffer, in bytes
+     */
+    public ByteBufferBitWriter(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < Long.BYTES) {
+            throw new IllegalArgumentException("buffer size must be at least " + Long.BYTES);
+        }
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.channel = channel;
+    }
+
+    /**
+     * Makes sure the buffer has room for the specified number of bytes, draining it
+     * to the channel if necessary.
+     *
+     * @throws BufferOverflowException
+     *             if there is no channel and the buffer is full
+     */
+    private void ensureRoom(int nBytes) throws IOException {
+        if (buffer.remaining() >= nBytes) {
+            return;
+        }
+        if (channel == null) {
+            throw new BufferOverflowException();
+        }
+        drainBuffer();
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the full cache to the buffer.
+     */
+    private void writeCache() throws IOException {
+        ensureRoom(Long.BYTES);
+        buffer.putLong(buffer.order() == ByteOrder.BIG_ENDIAN ? cache : Long.reverseBytes(cache));
+        cache = 0;
+        cacheBits = 0;
+    }
+
+    /**
+     * Writes the specified bits.
+     *
+     * @param value
+     *            the value of the bits to write
+     * @param nBits
+     *            the number of bits to write. Must not exceed {@link Long#SIZE}. The
+     *            least significant (right-most) bits are taken from the input value.
+     * @throws BufferOverflowException
+     *             if this writer has no channel and its buffer is full
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitOutputStream#writeBits(long, int)
+     */
+    public void writeBits(long value, int nBits) throws IOException {
+        if (nBits > Long.SIZE) {
+            throw new IllegalArgumentException("cannot write more bits than the length of a long");
+        }
+        if (nBits <= 0) {
+            return;
+        }
+        final int free = Long.SIZE - cacheBits;
+        if (nBits < free) {
+            long bits = value & ~(-1L << nBits);
+            cache |= bits << (free - nBits);
+            cacheBits += nBits;
+        } else {
+            // the cache gets full, the low bits that don't fit start a new one
+            int overflow = nBits - free;
+            cache |= (value << (Long.SIZE - nBits)) >>> cacheBits;
+            writeCache();
+            if (overflow > 0) {
+                cache = value << (Long.SIZE - overflow);
+                cacheBits = overflow;
+            }
+        }
+    }
+
+    /**
+     * Writes {@code len} consecutive values of {@code width} bits from the
+     * specified array.
+     *
+     * @param src
+     *            the array containing the values to write
+     * @param off
+     *            the index in {@code src} of the first value to write
+     * @param len
+     *            the number of values to write
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Long#SIZE}.
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitOutputStream#writeBits(long[], int, int, int)
+     */
+    public void writeBits(long[] src, int off, int len, int width) throws IOException {
+        BitInputStream.checkBulkArguments(width, Long.SIZE, src.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            writeBits(src[i], width);
+        }
+    }
+
+    /**
+     * Writes {@code len} consecutive values of {@code width} bits from the
+     * specified array.
+     *
+     * @param src
+     *            the array containing the values to write
+     * @param off
+     *            the index in {@code src} of the first value to write
+     * @param len
+     *            the number of values to write
+     * @param width
+     *            the number of bits of each value. Must not exceed
+     *            {@link Integer#SIZE}.
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitOutputStream#writeBits(int[], int, int, int)
+     */
+    public void writeBits(int[] src, int off, int len, int width) throws IOException {
+        BitInputStream.checkBulkArguments(width, Integer.SIZE, src.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            writeBits(src[i], width);
+        }
+    }
+
+    /**
+     * Writes the specified bit.
+     *
+     * @param bit
+     *            the bit to write, as an int
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeBit(int bit) throws IOException {
+        if (bit != 0 && bit != 1) {
+            throw new IllegalArgumentException("the specified bit is neither 0 nor 1");
+        }
+        writeBits(bit, 1);
+    }
+
+    /**
+     * Writes the specified bit.
+     *
+     * @param bit
+     *            the bit to write: {@code true} for 1, {@code false} for 0
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeBit(boolean bit) throws IOException {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the given byte, with leading zeros to reach {@link Byte#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeByte(byte value) throws IOException {
+        writeBits(value, Byte.SIZE);
+    }
+
+    /**
+     * Writes the given character's code, with leading zeros to reach
+     * {@link Character#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeChar(char value) throws IOException {
+        writeBits(value, Character.SIZE);
+    }
+
+    /**
+     * Writes the given integer, with leading zeros to reach {@link Integer#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeInt(int value) throws IOException {
+        writeBits(value, Integer.SIZE);
+    }
+
+    /**
+     * Writes the given long, with leading zeros to reach {@link Long#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeLong(long value) throws IOException {
+        writeBits(value, Long.SIZE);
+    }
+
+    /**
+     * Writes the bits represented by the given binary string.
+     * The characters are packed 64 at a time, and all of them are validated
+     * before any bit is written.
+     *
+     * @param binaryString
+     *            A binary {@code String}. This {@code String} must contain only the
+     *            characters '0' or '1'.
+     * @throws IllegalArgumentException
+     *             if the string contains other characters than '0' or '1'
+     * @throws IOException
+     *             if an I/O error occurs
+     * @see BitOutputStream#writeString(String)
+     */
+    public void writeString(String binaryString) throws IOException {
+        final int length = binaryString.length();
+        if (length <= Long.SIZE) {
+            writeBits(BinHelper.parseBits(binaryString, 0, length), length);
+            return;
+        }
+        // the whole string is validated before anything is written
+        final long[] chunks = BinHelper.parseBitChunks(binaryString);
+        final int last = chunks.length - 1;
+        writeBits(chunks, 0, last, Long.SIZE);
+        writeBits(chunks[last], length - last * Long.SIZE);
+    }
+
+    /**
+     * Writes the pending bits to the buffer, completing the last byte with 0s, and
+     * drains the buffer to the channel if there is one. The next bits will be
+     * written at the beginning of a new byte.
+     *
+     * @throws BufferOverflowException
+     *             if this writer has no channel and its buffer is full
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        int nBytes = (cacheBits + Byte.SIZE - 1) / Byte.SIZE;
+        ensureRoom(nBytes);
+        for (int i = 0; i < nBytes; i++) {
+            buffer.put((byte) (cache >>> (Long.SIZE - Byte.SIZE * (i + 1))));
+        }
+        cache = 0;
+        cacheBits = 0;
+        if (channel != null) {
+            drainBuffer();
+        }
+    }
+
+    /**
+     * Flushes this writer and closes the underlying channel, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
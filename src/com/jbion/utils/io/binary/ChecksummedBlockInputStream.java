@@ -0,0 +1,312 @@
+package com.jbion.utils.io.binary;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * An {@link InputStream} reading the blocks written by a
+ * {@link ChecksummedBlockOutputStream}, and returning their payloads. It is meant
+ * to be wrapped by a {@link BitInputStream}:
+ *
+ * <pre>
+ * new BitInputStream(new ChecksummedBlockInputStream(in))
+ * </pre>
+ * <p>
+ * Blocks are validated lazily: the checksum of a block is only computed when its
+ * first byte is read, and the blocks that are entirely skipped with
+ * {@link #skip(long)} are not even loaded.
+ * </p>
+ * <p>
+ * When a block does not match its checksum, it is discarded. By default, a
+ * {@link CorruptBlockException} giving its position is thrown, and reading again
+ * resumes with the next block. If corrupt blocks are to be skipped, they are
+ * silently discarded and counted in {@link #getCorruptBlockCount()}.
+ * </p>
+ */
+public class ChecksummedBlockInputStream extends FilterInputStream {
+
+    private final boolean skipCorruptBlocks;
+    private final byte[] header = new byte[ChecksummedBlockOutputStream.BLOCK_HEADER_SIZE];
+    private final CRC32C crc = new CRC32C();
+
+    private byte[] block;
+    private int blockLength = 0;
+    private int blockPos = 0;
+
+    /**
+     * The index of the next block to read.
+     */
+    private long nextBlockIndex = 0;
+    /**
+     * The offset of the next block to read in the underlying stream.
+     */
+    private long streamOffset = 0;
+    /**
+     * The number of payload bytes before the current block.
+     */
+    private long blockStartPosition = 0;
+    /**
+     * The offset of the header of the last block read in the underlying stream.
+     */
+    private long blockHeaderOffset = 0;
+    private long corruptBlocks = 0;
+
+    /**
+     * Creates a new {@link ChecksummedBlockInputStream} throwing a
+     * {@link CorruptBlockException} on corrupt blocks.
+     *
+     * @param in
+     *            the {@link InputStream} to read the blocks from
+     */
+    public ChecksummedBlockInputStream(InputStream in) {
+        this(in, false);
+    }
+
+    /**
+     * Creates a new {@link ChecksummedBlockInputStream}.
+     *
+     * @param in
+     *            the {@link InputStream} to read the blocks from
+     * @param skipCorruptBlocks
+     *            if {@code true}, the corrupt blocks are silently skipped instead
+     *            of throwing a {@link CorruptBlockException}
+     */
+    public ChecksummedBlockInputStream(InputStream in, boolean skipCorruptBlocks) {
+        super(in);
+        this.skipCorruptBlocks = skipCorruptBlocks;
+    }
+
+    private static int getInt(byte[] src, int off) {
+        return (src[off] & 0xFF) << 24 | (src[off + 1] & 0xFF) << 16 | (src[off + 2] & 0xFF) << 8
+                | (src[off + 3] & 0xFF);
+    }
+
+    /**
+     * Reads exactly {@code len} bytes, or none if the end of stream is reached
+     * first.
+     *
+     * @return {@code false} if the end of stream was reached before any byte
+     */
+    private boolean readFully(byte[] dst, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int read = in.read(dst, n, len - n);
+            if (read < 0) {
+                if (n == 0) {
+                    return false;
+                }
+                throw new EOFException("truncated block " + nextBlockIndex + " at byte offset " + streamOffset);
+            }
+            n += read;
+        }
+        streamOffset += len;
+        return true;
+    }
+
+    private void readStreamHeader() throws IOException {
+        if (!readFully(header, header.length)) {
+            throw new EOFException("missing stream header");
+        }
+        if (getInt(header, 0) != ChecksummedBlockOutputStream.MAGIC) {
+            throw new IOException("not a checksummed block stream");
+        }
+        int blockSize = getInt(header, Integer.BYTES);
+        if (blockSize <= 0) {
+            throw new IOException("invalid block size " + blockSize);
+        }
+        block = new byte[blockSize];
+    }
+
+    /**
+     * Reads the header of the next block.
+     *
+     * @return the length of the next block, or -1 if the end of stream is reached
+     */
+    private int readBlockHeader() throws IOException {
+        if (block == null) {
+            readStreamHeader();
+        }
+        blockHeaderOffset = streamOffset;
+        if (!readFully(header, header.length)) {
+            return -1;
+        }
+        int length = getInt(header, 0);
+        if (length <= 0 || length > block.length) {
+            // the next blocks cannot be located
+            throw new IOException("invalid length " + length + " for block " + nextBlockIndex + " at byte offset "
+                    + blockHeaderOffset);
+        }
+        return length;
+    }
+
+    /**
+     * Loads the next valid block into the array.
+     *
+     * @return {@code false} if the end of stream is reached
+     */
+    private boolean loadBlock() throws IOException {
+        blockStartPosition += blockLength;
+        blockLength = 0;
+        blockPos = 0;
+        while (true) {
+            int length = readBlockHeader();
+            if (length < 0) {
+                return false;
+            }
+            if (loadPayload(length)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads and validates the payload of the block whose header was just read.
+     *
+     * @return {@code true} if the block is valid, {@code false} if it is corrupt
+     *         and must be skipped
+     */
+    private boolean loadPayload(int length) throws IOException {
+        int expectedCrc = getInt(header, Integer.BYTES);
+        if (!readFully(block, length)) {
+            throw new EOFException("truncated block " + nextBlockIndex + " at byte offset " + blockHeaderOffset);
+        }
+        long index = nextBlockIndex++;
+        crc.reset();
+        crc.update(block, 0, length);
+        if ((int) crc.getValue() == expectedCrc) {
+            blockLength = length;
+            return true;
+        }
+        corruptBlocks++;
+        if (!skipCorruptBlocks) {
+            throw new CorruptBlockException(index, blockHeaderOffset);
+        }
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (blockPos == blockLength && !loadBlock()) {
+            return -1;
+        }
+        return block[blockPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (blockPos == blockLength && !loadBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, blockLength - blockPos);
+        System.arraycopy(block, blockPos, b, off, n);
+        blockPos += n;
+        return n;
+    }
+
+    /**
+     * Skips over and discards {@code n} bytes of payload. The blocks that are
+     * entirely skipped are neither loaded nor validated.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            if (blockPos < blockLength) {
+                int skipped = (int) Math.min(remaining, blockLength - blockPos);
+                blockPos += skipped;
+                remaining -= skipped;
+                continue;
+            }
+            blockStartPosition += blockLength;
+            blockLength = 0;
+            blockPos = 0;
+            int length = readBlockHeader();
+            if (length < 0) {
+                break;
+            }
+            if (length <= remaining) {
+                skipFully(length);
+                nextBlockIndex++;
+                blockStartPosition += length;
+                remaining -= length;
+            } else {
+                // partially skipped block, it is loaded and validated
+                loadPayload(length);
+            }
+        }
+        return n - remaining;
+    }
+
+    private void skipFully(int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("truncated block " + nextBlockIndex + " at byte offset " + streamOffset);
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+            streamOffset += skipped;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return blockLength - blockPos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Returns the index of the block containing the next byte to read, or of the
+     * next block if the current one is entirely read.
+     *
+     * @return the index of the current block
+     */
+    public long getBlockIndex() {
+        return blockPos < blockLength ? nextBlockIndex - 1 : nextBlockIndex;
+    }
+
+    /**
+     * Returns the position of the next byte to read in the payload, not counting
+     * the discarded corrupt blocks.
+     *
+     * @return the number of bytes of payload read or skipped so far
+     */
+    public long getPosition() {
+        return blockStartPosition + blockPos;
+    }
+
+    /**
+     * Returns the number of corrupt blocks encountered so far.
+     *
+     * @return the number of corrupt blocks
+     */
+    public long getCorruptBlockCount() {
+        return corruptBlocks;
+    }
+}
@@ -0,0 +1,145 @@
+package com.jbion.utils.io.binary;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * An {@link OutputStream} cutting the written bytes into blocks, each framed with
+ * its length and its CRC32C checksum, so that a
+ * {@link ChecksummedBlockInputStream} can detect and skip corrupt blocks. It is
+ * meant to be wrapped by a {@link BitOutputStream}:
+ *
+ * <pre>
+ * new BitOutputStream(new ChecksummedBlockOutputStream(out))
+ * </pre>
+ * <p>
+ * The stream starts with {@link #MAGIC} and the block size as {@code int}s. Each
+ * block is then written as its payload length and its checksum as {@code int}s,
+ * followed by the payload. Blocks are full except the last one, and the ones
+ * ended by {@link #flush()}: since {@link BitOutputStream#flush()} flushes the
+ * underlying stream, flushing the bit stream at the end of each record makes
+ * the records start on block boundaries, and lets a reader resume decoding after
+ * a corrupt block.
+ * </p>
+ * <p>
+ * The checksum is computed once per block on the whole payload, so that its cost
+ * is amortized.
+ * </p>
+ */
+public class ChecksummedBlockOutputStream extends FilterOutputStream {
+
+    /**
+     * The value written at the beginning of the stream, to recognize the format.
+     */
+    static final int MAGIC = 0x43524342; // "CRCB"
+
+    /**
+     * The default size of the blocks, in bytes.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The size of the header of each block, in bytes.
+     */
+    static final int BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final byte[] block;
+    private int blockLength = 0;
+    private final byte[] header = new byte[BLOCK_HEADER_SIZE];
+    private final CRC32C crc = new CRC32C();
+    private boolean streamHeaderWritten = false;
+
+    /**
+     * Creates a new {@link ChecksummedBlockOutputStream} with blocks of
+     * {@link #DEFAULT_BLOCK_SIZE} bytes.
+     *
+     * @param out
+     *            the {@link OutputStream} to write the blocks to
+     */
+    public ChecksummedBlockOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new {@link ChecksummedBlockOutputStream}.
+     *
+     * @param out
+     *            the {@link OutputStream} to write the blocks to
+     * @param blockSize
+     *            the maximum number of bytes of payload per block
+     */
+    public ChecksummedBlockOutputStream(OutputStream out, int blockSize) {
+        super(out);
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("block size must be positive");
+        }
+        this.block = new byte[blockSize];
+    }
+
+    private static void putInt(byte[] dst, int off, int value) {
+        dst[off] = (byte) (value >>> 24);
+        dst[off + 1] = (byte) (value >>> 16);
+        dst[off + 2] = (byte) (value >>> 8);
+        dst[off + 3] = (byte) value;
+    }
+
+    private void writeStreamHeader() throws IOException {
+        if (!streamHeaderWritten) {
+            putInt(header, 0, MAGIC);
+            putInt(header, Integer.BYTES, block.length);
+            out.write(header, 0, BLOCK_HEADER_SIZE);
+            streamHeaderWritten = true;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        writeStreamHeader();
+        if (blockLength == 0) {
+            return;
+        }
+        crc.reset();
+        crc.update(block, 0, blockLength);
+        putInt(header, 0, blockLength);
+        putInt(header, Integer.BYTES, (int) crc.getValue());
+        out.write(header, 0, BLOCK_HEADER_SIZE);
+        out.write(block, 0, blockLength);
+        blockLength = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (blockLength == block.length) {
+            writeBlock();
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (blockLength == block.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Ends the current block, even if it is not full, and flushes the underlying
+     * stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+}
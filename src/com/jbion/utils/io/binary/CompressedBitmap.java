@@ -0,0 +1,1183 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of {@code int}s, in the manner of Roaring bitmaps. The values
+ * are considered unsigned, and are partitioned by their 16 high bits into
+ * containers holding their 16 low bits, each container being stored in the most
+ * compact of 3 forms:
+ * <ul>
+ * <li>a sorted array of values, for sparse containers of at most
+ * {@value #ARRAY_MAX_SIZE} values,</li>
+ * <li>a bitmap of 2<sup>16</sup> bits, for dense containers,</li>
+ * <li>a list of runs of consecutive values, when {@link #runOptimize()} finds it
+ * smaller.</li>
+ * </ul>
+ * <p>
+ * The set operations {@link #and(CompressedBitmap, CompressedBitmap)},
+ * {@link #or(CompressedBitmap, CompressedBitmap)} and
+ * {@link #andNot(CompressedBitmap, CompressedBitmap)} work container by
+ * container, on whole words for bitmaps, and never modify their operands.
+ * </p>
+ * <p>
+ * A bitmap can be written to a {@link BitOutputStream} or a big-endian
+ * {@link ByteBuffer}, both producing the same bytes when the stream is on a byte
+ * boundary: the number of containers as an {@code int}, followed for each
+ * container by its 16-bit key, its type as a byte, its cardinality (or number of
+ * runs) as an {@code int}, and its content.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public class CompressedBitmap {
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int CONTAINER_VALUES = 1 << 16;
+
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+    private static final byte RUN = 2;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * Creates a new empty {@link CompressedBitmap}.
+     */
+    public CompressedBitmap() {
+        this(4);
+    }
+
+    private CompressedBitmap(int initialCapacity) {
+        this.keys = new char[Math.max(1, initialCapacity)];
+        this.containers = new Container[keys.length];
+    }
+
+    /**
+     * Creates a new {@link CompressedBitmap} containing the specified values.
+     *
+     * @param values
+     *            the values to add, in any order
+     * @return a new {@link CompressedBitmap}
+     */
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private static char highBits(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+
+    private int indexOfKey(char key) {
+        // most insertions are in increasing order
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            containers = Arrays.copyOf(containers, 2 * size);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    /**
+     * Adds the specified value to this set.
+     *
+     * @param value
+     *            the value to add
+     */
+    public void add(int value) {
+        char key = highBits(value);
+        int index = indexOfKey(key);
+        if (index >= 0) {
+            containers[index] = containers[index].add(lowBits(value));
+        } else {
+            insertContainer(-index - 1, key, new ArrayContainer().add(lowBits(value)));
+        }
+    }
+
+    /**
+     * Returns whether this set contains the specified value.
+     *
+     * @param value
+     *            the value to look for
+     * @return {@code true} if this set contains {@code value}
+     */
+    public boolean contains(int value) {
+        int index = indexOfKey(highBits(value));
+        return index >= 0 && containers[index].contains(lowBits(value));
+    }
+
+    /**
+     * Returns the number of values of this set.
+     *
+     * @return the number of values of this set
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns whether this set is empty.
+     *
+     * @return {@code true} if this set does not contain any value
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Converts the containers of this set to runs of consecutive values wherever
+     * it makes them smaller.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    /**
+     * Returns the intersection of the specified sets.
+     *
+     * @param a
+     *            the first set
+     * @param b
+     *            the second set
+     * @return a new set containing the values that are in both {@code a} and
+     *         {@code b}
+     */
+    public static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap(Math.min(a.size, b.size));
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            char keyA = a.keys[i];
+            char keyB = b.keys[j];
+            if (keyA == keyB) {
+                Container c = a.containers[i].and(b.containers[j]);
+                if (c.cardinality() > 0) {
+                    result.appendContainer(keyA, c);
+                }
+                i++;
+                j++;
+            } else if (keyA < keyB) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the union of the specified sets.
+     *
+     * @param a
+     *            the first set
+     * @param b
+     *            the second set
+     * @return a new set containing the values that are in {@code a} or {@code b}
+     */
+    public static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap(a.size + b.size);
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            char keyA = a.keys[i];
+            char keyB = b.keys[j];
+            if (keyA == keyB) {
+                result.appendContainer(keyA, a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            } else if (keyA < keyB) {
+                result.appendContainer(keyA, a.containers[i++].copy());
+            } else {
+                result.appendContainer(keyB, b.containers[j++].copy());
+            }
+        }
+        for (; i < a.size; i++) {
+            result.appendContainer(a.keys[i], a.containers[i].copy());
+        }
+        for (; j < b.size; j++) {
+            result.appendContainer(b.keys[j], b.containers[j].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the difference of the specified sets.
+     *
+     * @param a
+     *            the set to remove values from
+     * @param b
+     *            the values to remove
+     * @return a new set containing the values that are in {@code a} but not in
+     *         {@code b}
+     */
+    public static CompressedBitmap andNot(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap(a.size);
+        int i = 0;
+        int j = 0;
+        while (i < a.size) {
+            char keyA = a.keys[i];
+            while (j < b.size && b.keys[j] < keyA) {
+                j++;
+            }
+            Container c;
+            if (j < b.size && b.keys[j] == keyA) {
+                c = a.containers[i].andNot(b.containers[j]);
+            } else {
+                c = a.containers[i].copy();
+            }
+            if (c.cardinality() > 0) {
+                result.appendContainer(keyA, c);
+            }
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Performs the specified action for each value of this set, in increasing
+     * unsigned order.
+     *
+     * @param action
+     *            the action to perform on each value
+     */
+    public void forEach(IntConsumer action) {
+        PrimitiveIterator.OfInt it = iterator();
+        while (it.hasNext()) {
+            action.accept(it.nextInt());
+        }
+    }
+
+    /**
+     * Returns an iterator over the values of this set, in increasing unsigned
+     * order. Use {@link PrimitiveIterator.OfInt#nextInt()} to avoid boxing.
+     *
+     * @return an iterator over the values of this set
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private int index = 0;
+            private ContainerIterator current = size > 0 ? containers[0].iterator() : null;
+
+            @Override
+            public boolean hasNext() {
+                while (current != null && !current.hasNext()) {
+                    index++;
+                    current = index < size ? containers[index].iterator() : null;
+                }
+                return current != null;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index] << 16 | current.next();
+            }
+        };
+    }
+
+    /**
+     * Returns the values of this set in an array, in increasing unsigned order.
+     *
+     * @return a new array containing the values of this set
+     */
+    public int[] toArray() {
+        long cardinality = cardinality();
+        if (cardinality > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many values for an array: " + cardinality);
+        }
+        int[] values = new int[(int) cardinality];
+        PrimitiveIterator.OfInt it = iterator();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = it.nextInt();
+        }
+        return values;
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @return the serialized size of this set in bytes
+     */
+    public int serializedSizeInBytes() {
+        int bytes = Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            bytes += Character.BYTES + 1 + Integer.BYTES + containers[i].payloadSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes this set to the specified stream.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeTo(BitOutputStream out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            out.writeByte(containers[i].type());
+            containers[i].writeTo(out);
+        }
+    }
+
+    /**
+     * Writes this set to the specified buffer, at its current position.
+     *
+     * @param out
+     *            the buffer to write to, with at least
+     *            {@link #serializedSizeInBytes()} bytes remaining
+     */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putChar(keys[i]);
+            out.put(containers[i].type());
+            containers[i].writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a set written by {@link #writeTo(BitOutputStream)} from the specified
+     * stream.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the read set
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the whole set could be
+     *             read
+     * @throws IOException
+     *             if an I/O error occurs, or if the data is not a valid set
+     */
+    public static CompressedBitmap readFrom(BitInputStream in) throws IOException {
+        int nContainers = checkContainerCount(in.readInt());
+        CompressedBitmap bitmap = new CompressedBitmap(nContainers);
+        for (int i = 0; i < nContainers; i++) {
+            char key = in.readChar();
+            byte type = in.readByte();
+            int count = in.readInt();
+            Container container;
+            switch (type) {
+            case ARRAY:
+                char[] content = new char[checkCount(count, ARRAY_MAX_SIZE)];
+                for (int k = 0; k < count; k++) {
+                    content[k] = in.readChar();
+                }
+                container = new ArrayContainer(content, count);
+                break;
+            case BITMAP:
+                long[] words = new long[BITMAP_WORDS];
+                in.readBits(Long.SIZE, words, 0, BITMAP_WORDS);
+                container = new BitmapContainer(words, checkCount(count, CONTAINER_VALUES));
+                break;
+            case RUN:
+                char[] runs = new char[2 * checkCount(count, CONTAINER_VALUES / 2)];
+                for (int k = 0; k < runs.length; k++) {
+                    runs[k] = in.readChar();
+                }
+                container = new RunContainer(runs, count);
+                break;
+            default:
+                throw new IOException("unknown container type " + type);
+            }
+            bitmap.appendValidated(key, container);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Reads a set written by {@link #writeTo(ByteBuffer)} from the specified
+     * buffer, at its current position.
+     *
+     * @param in
+     *            the buffer to read from
+     * @return the read set
+     * @throws IOException
+     *             if the data is not a valid set
+     */
+    public static CompressedBitmap readFrom(ByteBuffer in) throws IOException {
+        int nContainers = checkContainerCount(in.getInt());
+        CompressedBitmap bitmap = new CompressedBitmap(nContainers);
+        for (int i = 0; i < nContainers; i++) {
+            char key = in.getChar();
+            byte type = in.get();
+            int count = in.getInt();
+            Container container;
+            switch (type) {
+            case ARRAY:
+                char[] content = new char[checkCount(count, ARRAY_MAX_SIZE)];
+                in.asCharBuffer().get(content);
+                in.position(in.position() + count * Character.BYTES);
+                container = new ArrayContainer(content, count);
+                break;
+            case BITMAP:
+                long[] words = new long[BITMAP_WORDS];
+                in.asLongBuffer().get(words);
+                in.position(in.position() + BITMAP_WORDS * Long.BYTES);
+                container = new BitmapContainer(words, checkCount(count, CONTAINER_VALUES));
+                break;
+            case RUN:
+                char[] runs = new char[2 * checkCount(count, CONTAINER_VALUES / 2)];
+                in.asCharBuffer().get(runs);
+                in.position(in.position() + runs.length * Character.BYTES);
+                container = new RunContainer(runs, count);
+                break;
+            default:
+                throw new IOException("unknown container type " + type);
+            }
+            bitmap.appendValidated(key, container);
+        }
+        return bitmap;
+    }
+
+    private static int checkContainerCount(int nContainers) throws IOException {
+        return checkCount(nContainers, CONTAINER_VALUES);
+    }
+
+    private static int checkCount(int count, int max) throws IOException {
+        if (count < 0 || count > max) {
+            throw new IOException("invalid count " + count + " in compressed bitmap");
+        }
+        return count;
+    }
+
+    private void appendValidated(char key, Container container) throws IOException {
+        if (size > 0 && keys[size - 1] >= key) {
+            throw new IOException("unsorted container keys in compressed bitmap");
+        }
+        appendContainer(key, container);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompressedBitmap)) {
+            return false;
+        }
+        CompressedBitmap other = (CompressedBitmap) obj;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || containers[i].cardinality() != other.containers[i].cardinality()) {
+                return false;
+            }
+        }
+        return Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        PrimitiveIterator.OfInt it = iterator();
+        while (it.hasNext()) {
+            hash = 31 * hash + it.nextInt();
+        }
+        return hash;
+    }
+
+    /**
+     * Iterates over the 16-bit values of a container, in increasing order.
+     */
+    private interface ContainerIterator {
+
+        boolean hasNext();
+
+        char next();
+    }
+
+    /**
+     * A set of 16-bit values. The operations return new containers and leave their
+     * operands untouched, except {@link #add(char)} which may return this
+     * container.
+     */
+    private static abstract class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container runOptimize();
+
+        abstract Container copy();
+
+        abstract ContainerIterator iterator();
+
+        abstract byte type();
+
+        abstract int payloadSizeInBytes();
+
+        abstract void writeTo(BitOutputStream out) throws IOException;
+
+        abstract void writeTo(ByteBuffer out);
+
+        /**
+         * Returns the number of bytes of a run container holding the specified
+         * number of runs.
+         */
+        static int runSizeInBytes(int nRuns) {
+            return 2 * nRuns * Character.BYTES;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] content;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] content, int cardinality) {
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(content, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index;
+            if (cardinality == 0 || content[cardinality - 1] < value) {
+                index = -cardinality - 1;
+            } else {
+                index = Arrays.binarySearch(content, 0, cardinality, value);
+            }
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX_SIZE) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == content.length) {
+                content = Arrays.copyOf(content, Math.min(ARRAY_MAX_SIZE, Math.max(4, 2 * cardinality)));
+            }
+            System.arraycopy(content, index, content, index + 1, cardinality - index);
+            content[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                char v = content[i];
+                words[v >>> 6] |= 1L << v;
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                return intersect(this, o);
+            }
+            // filter the (smaller) array through the other container
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(content[i])) {
+                    result[n++] = content[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        private static ArrayContainer intersect(ArrayContainer a, ArrayContainer b) {
+            if (a.cardinality > b.cardinality) {
+                return intersect(b, a);
+            }
+            char[] result = new char[a.cardinality];
+            int n = 0;
+            if (a.cardinality * 64 < b.cardinality) {
+                // very different sizes: binary search the small one in the big one
+                int from = 0;
+                for (int i = 0; i < a.cardinality && from < b.cardinality; i++) {
+                    int index = Arrays.binarySearch(b.content, from, b.cardinality, a.content[i]);
+                    if (index >= 0) {
+                        result[n++] = a.content[i];
+                        from = index + 1;
+                    } else {
+                        from = -index - 1;
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < a.cardinality && j < b.cardinality) {
+                    char va = a.content[i];
+                    char vb = b.content[j];
+                    if (va == vb) {
+                        result[n++] = va;
+                        i++;
+                        j++;
+                    } else if (va < vb) {
+                        i++;
+                    } else {
+                        j++;
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer)) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            if (cardinality + o.cardinality > ARRAY_MAX_SIZE) {
+                BitmapContainer bitmap = toBitmap();
+                for (int i = 0; i < o.cardinality; i++) {
+                    bitmap.add(o.content[i]);
+                }
+                return bitmap.cardinality() <= ARRAY_MAX_SIZE ? bitmap.toArray() : bitmap;
+            }
+            char[] result = new char[cardinality + o.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < o.cardinality) {
+                char va = content[i];
+                char vb = o.content[j];
+                if (va == vb) {
+                    result[n++] = va;
+                    i++;
+                    j++;
+                } else if (va < vb) {
+                    result[n++] = va;
+                    i++;
+                } else {
+                    result[n++] = vb;
+                    j++;
+                }
+            }
+            while (i < cardinality) {
+                result[n++] = content[i++];
+            }
+            while (j < o.cardinality) {
+                result[n++] = o.content[j++];
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                int j = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    char v = content[i];
+                    while (j < o.cardinality && o.content[j] < v) {
+                        j++;
+                    }
+                    if (j == o.cardinality || o.content[j] != v) {
+                        result[n++] = v;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (!other.contains(content[i])) {
+                        result[n++] = content[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container runOptimize() {
+            int nRuns = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (i == 0 || content[i] != content[i - 1] + 1) {
+                    nRuns++;
+                }
+            }
+            if (runSizeInBytes(nRuns) >= payloadSizeInBytes()) {
+                return this;
+            }
+            char[] runs = new char[2 * nRuns];
+            int r = -1;
+            for (int i = 0; i < cardinality; i++) {
+                if (i == 0 || content[i] != content[i - 1] + 1) {
+                    r++;
+                    runs[2 * r] = content[i];
+                } else {
+                    runs[2 * r + 1]++;
+                }
+            }
+            return new RunContainer(runs, nRuns);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, cardinality), cardinality);
+        }
+
+        @Override
+        ContainerIterator iterator() {
+            return new ContainerIterator() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < cardinality;
+                }
+
+                @Override
+                public char next() {
+                    return content[index++];
+                }
+            };
+        }
+
+        @Override
+        byte type() {
+            return ARRAY;
+        }
+
+        @Override
+        int payloadSizeInBytes() {
+            return cardinality * Character.BYTES;
+        }
+
+        @Override
+        void writeTo(BitOutputStream out) throws IOException {
+            out.writeInt(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.writeChar(content[i]);
+            }
+        }
+
+        @Override
+        void writeTo(ByteBuffer out) {
+            out.putInt(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.putChar(content[i]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        ArrayContainer toArray() {
+            char[] content = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    content[n++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(content, n);
+        }
+
+        /**
+         * Returns the most compact container for the specified words.
+         */
+        private static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long w : words) {
+                cardinality += Long.bitCount(w);
+            }
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality <= ARRAY_MAX_SIZE ? bitmap.toArray() : bitmap;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] o = otherWords(other);
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & o[i];
+            }
+            return fromWords(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                BitmapContainer result = (BitmapContainer) copy();
+                for (int i = 0; i < o.cardinality; i++) {
+                    result.add(o.content[i]);
+                }
+                return result;
+            }
+            long[] o = otherWords(other);
+            long[] result = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] | o[i];
+                cardinality += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, cardinality);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                long[] result = words.clone();
+                for (int i = 0; i < o.cardinality; i++) {
+                    char v = o.content[i];
+                    result[v >>> 6] &= ~(1L << v);
+                }
+                return fromWords(result);
+            }
+            long[] o = otherWords(other);
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & ~o[i];
+            }
+            return fromWords(result);
+        }
+
+        private static long[] otherWords(Container other) {
+            if (other instanceof BitmapContainer) {
+                return ((BitmapContainer) other).words;
+            }
+            return ((RunContainer) other).toWords();
+        }
+
+        @Override
+        Container runOptimize() {
+            int nRuns = 0;
+            long previous = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                // a run starts at each 1 preceded by a 0
+                nRuns += Long.bitCount(w & ~((w << 1) | (previous >>> 63)));
+                previous = w;
+            }
+            if (runSizeInBytes(nRuns) >= payloadSizeInBytes()) {
+                return this;
+            }
+            char[] runs = new char[2 * nRuns];
+            int r = 0;
+            int start = nextBit(0, true);
+            while (start < CONTAINER_VALUES) {
+                int end = nextBit(start, false);
+                runs[2 * r] = (char) start;
+                runs[2 * r + 1] = (char) (end - start - 1);
+                r++;
+                start = end < CONTAINER_VALUES ? nextBit(end, true) : CONTAINER_VALUES;
+            }
+            return new RunContainer(runs, nRuns);
+        }
+
+        /**
+         * Returns the position of the next bit with the specified value, or
+         * {@link #CONTAINER_VALUES} if there is none.
+         */
+        private int nextBit(int from, boolean set) {
+            int i = from >>> 6;
+            long w = (set ? words[i] : ~words[i]) & (-1L << from);
+            while (w == 0) {
+                if (++i == BITMAP_WORDS) {
+                    return CONTAINER_VALUES;
+                }
+                w = set ? words[i] : ~words[i];
+            }
+            return i * Long.SIZE + Long.numberOfTrailingZeros(w);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        ContainerIterator iterator() {
+            return new ContainerIterator() {
+                private int index = 0;
+                private long word = words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0 && index < BITMAP_WORDS - 1) {
+                        word = words[++index];
+                    }
+                    return word != 0;
+                }
+
+                @Override
+                public char next() {
+                    char value = (char) (index * Long.SIZE + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        byte type() {
+            return BITMAP;
+        }
+
+        @Override
+        int payloadSizeInBytes() {
+            return BITMAP_WORDS * Long.BYTES;
+        }
+
+        @Override
+        void writeTo(BitOutputStream out) throws IOException {
+            out.writeInt(cardinality);
+            out.writeBits(words, 0, BITMAP_WORDS, Long.SIZE);
+        }
+
+        @Override
+        void writeTo(ByteBuffer out) {
+            out.putInt(cardinality);
+            out.asLongBuffer().put(words);
+            out.position(out.position() + BITMAP_WORDS * Long.BYTES);
+        }
+    }
+
+    private static final class RunContainer extends Container {
+
+        /**
+         * The runs, as pairs of their first value and their length minus 1.
+         */
+        private final char[] runs;
+        private final int nRuns;
+        private final int cardinality;
+
+        RunContainer(char[] runs, int nRuns) {
+            this.runs = runs;
+            this.nRuns = nRuns;
+            int cardinality = 0;
+            for (int r = 0; r < nRuns; r++) {
+                cardinality += runs[2 * r + 1] + 1;
+            }
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            // last run starting at or before the value
+            int low = 0;
+            int high = nRuns - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (runs[2 * mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high >= 0 && value - runs[2 * high] <= runs[2 * high + 1];
+        }
+
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int r = 0; r < nRuns; r++) {
+                int start = runs[2 * r];
+                int end = start + runs[2 * r + 1] + 1;
+                int firstWord = start >>> 6;
+                int lastWord = (end - 1) >>> 6;
+                if (firstWord == lastWord) {
+                    words[firstWord] |= (-1L << start) & (-1L >>> -end);
+                } else {
+                    words[firstWord] |= -1L << start;
+                    for (int i = firstWord + 1; i < lastWord; i++) {
+                        words[i] = -1L;
+                    }
+                    words[lastWord] |= -1L >>> -end;
+                }
+            }
+            return words;
+        }
+
+        /**
+         * Returns this container in array or bitmap form.
+         */
+        private Container toEfficientContainer() {
+            return BitmapContainer.fromWords(toWords());
+        }
+
+        @Override
+        Container add(char value) {
+            return contains(value) ? this : toEfficientContainer().add(value);
+        }
+
+        @Override
+        Container and(Container other) {
+            return toEfficientContainer().and(other);
+        }
+
+        @Override
+        Container or(Container other) {
+            return toEfficientContainer().or(other);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            return toEfficientContainer().andNot(other);
+        }
+
+        @Override
+        Container runOptimize() {
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, 2 * nRuns), nRuns);
+        }
+
+        @Override
+        ContainerIterator iterator() {
+            return new ContainerIterator() {
+                private int run = 0;
+                private int offset = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return run < nRuns;
+                }
+
+                @Override
+                public char next() {
+                    char value = (char) (runs[2 * run] + offset);
+                    if (offset++ == runs[2 * run + 1]) {
+                        run++;
+                        offset = 0;
+                    }
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        byte type() {
+            return RUN;
+        }
+
+        @Override
+        int payloadSizeInBytes() {
+            return runSizeInBytes(nRuns);
+        }
+
+        @Override
+        void writeTo(BitOutputStream out) throws IOException {
+            out.writeInt(nRuns);
+            for (int i = 0; i < 2 * nRuns; i++) {
+                out.writeChar(runs[i]);
+            }
+        }
+
+        @Override
+        void writeTo(ByteBuffer out) {
+            out.putInt(nRuns);
+            for (int i = 0; i < 2 * nRuns; i++) {
+                out.putChar(runs[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link ChecksummedBlockInputStream} when a block does not match its
+ * checksum.
+ */
+public class CorruptBlockException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long blockIndex;
+    private final long streamOffset;
+
+    /**
+     * Creates a new {@link CorruptBlockException}.
+     *
+     * @param blockIndex
+     *            the index of the corrupt block in the stream
+     * @param streamOffset
+     *            the offset of the header of the corrupt block in the underlying
+     *            stream, in bytes
+     */
+    public CorruptBlockException(long blockIndex, long streamOffset) {
+        super("corrupt block " + blockIndex + " at byte offset " + streamOffset);
+        this.blockIndex = blockIndex;
+        this.streamOffset = streamOffset;
+    }
+
+    /**
+     * Returns the index of the corrupt block in the stream.
+     *
+     * @return the index of the corrupt block
+     */
+    public long getBlockIndex() {
+        return blockIndex;
+    }
+
+    /**
+     * Returns the offset of the header of the corrupt block in the underlying
+     * stream.
+     *
+     * @return the offset of the corrupt block, in bytes
+     */
+    public long getStreamOffset() {
+        return streamOffset;
+    }
+}
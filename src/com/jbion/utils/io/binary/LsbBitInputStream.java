@@ -0,0 +1,438 @@
+package com.jbion.utils.io.binary;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Represents a stream of bits packed in LSB-first order, as in DEFLATE streams:
+ * the first bit of each byte is its least significant bit, and multi-bit values
+ * are read starting with their least significant bit.
+ * <p>
+ * It is the LSB-first counterpart of {@link BitInputStream}, and reads the bytes
+ * directly from the array of the underlying {@link BufferedInputStream} the same
+ * way, so that no bit reversal is needed on the caller's side.
+ * </p>
+ */
+public class LsbBitInputStream extends BufferedInputStream {
+
+    private static final int BITS_PER_BYTE = 8;
+
+    /**
+     * The maximum number of bits that can be peeked with {@link #peekBits(int)}.
+     */
+    public static final int MAX_PEEK_BITS = BitInputStream.MAX_PEEK_BITS;
+
+    /**
+     * The buffer of bits. The next bit to read is the least significant one, and
+     * the unused bits are 0s.
+     */
+    private long buffer = 0;
+    /**
+     * Indicates how many bits of the buffer are currently used.
+     */
+    private int bufferLength = 0;
+    /**
+     * The content of {@link #buffer} when {@link #markBits(int)} was last called.
+     */
+    private long markedBuffer = 0;
+    /**
+     * The value of {@link #bufferLength} when {@link #markBits(int)} was last
+     * called.
+     */
+    private int markedBufferLength = 0;
+
+    /**
+     * Creates a new {@link LsbBitInputStream} reading from the specified file.
+     *
+     * @param file
+     *            the file to read from
+     * @throws FileNotFoundException
+     *             if the file does not exist, is a directory rather than a regular
+     *             file, or for some other reason cannot be opened for reading.
+     */
+    public LsbBitInputStream(File file) throws FileNotFoundException {
+        super(new FileInputStream(file));
+    }
+
+    /**
+     * Creates a new {@link LsbBitInputStream} wrapping the specified
+     * {@link InputStream}.
+     *
+     * @param in
+     *            the {@link InputStream} to wrap
+     */
+    public LsbBitInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Creates a new {@link LsbBitInputStream} wrapping the specified
+     * {@link InputStream}.
+     *
+     * @param in
+     *            the {@link InputStream} to wrap
+     * @param size
+     *            the buffer size for the underlying {@link BufferedInputStream}
+     */
+    public LsbBitInputStream(InputStream in, int size) {
+        super(in, size);
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return bufferLength / 8 + super.available();
+    }
+
+    /**
+     * Reads the next 8 bits of this stream. If less than 8 bits are available
+     * because the end of the stream has been reached, the value -1 is returned.
+     *
+     * @see InputStream#read()
+     */
+    @Override
+    public synchronized int read() throws IOException {
+        return (int) readBitsUnlocked(Byte.SIZE, false);
+    }
+
+    /**
+     * Takes the next byte of the underlying stream, directly from the array of the
+     * underlying {@link BufferedInputStream} if possible.
+     */
+    private int nextByte() throws IOException {
+        final byte[] bytes = buf;
+        if (pos < count && bytes != null) {
+            return bytes[pos++] & 0xFF;
+        }
+        return super.read();
+    }
+
+    private long pollBitsFromBuffer(int length) {
+        assert bufferLength >= length : "buffer too short!";
+        if (length == 0) {
+            return 0L;
+        }
+        long bits = length == Long.SIZE ? buffer : buffer & ~(-1L << length);
+        buffer = length == Long.SIZE ? 0L : buffer >>> length;
+        bufferLength -= length;
+        return bits;
+    }
+
+    private static long prematureEOF(boolean failOnEOF) {
+        if (failOnEOF) {
+            throw new IllegalStateException("premature end of input, cannot read the requested number of bits");
+        } else {
+            return -1;
+        }
+    }
+
+    private long readBitsUnlocked(int length, boolean failOnEOF) throws IOException {
+        if (length > Long.SIZE) {
+            throw new IllegalArgumentException("can't read more bits than the size of a long");
+        }
+        if (length <= bufferLength) {
+            return pollBitsFromBuffer(length);
+        }
+        // the last byte may overflow the 64-bit buffer, it is handled separately
+        final int fullBytes = (length - bufferLength - 1) >>> 3;
+        final byte[] bytes = buf;
+        if (count - pos > fullBytes && bytes != null) {
+            // fast path: all the needed bytes are already in the array
+            long acc = buffer;
+            int accLength = bufferLength;
+            int p = pos;
+            for (int i = 0; i < fullBytes; i++) {
+                acc |= (bytes[p++] & 0xFFL) << accLength;
+                accLength += BITS_PER_BYTE;
+            }
+            buffer = acc;
+            bufferLength = accLength;
+            pos = p;
+        } else {
+            for (int i = 0; i < fullBytes; i++) {
+                int octet = nextByte();
+                if (octet == -1) {
+                    return prematureEOF(failOnEOF);
+                }
+                buffer |= (long) octet << bufferLength;
+                bufferLength += BITS_PER_BYTE;
+            }
+        }
+        int lastByte = nextByte();
+        if (lastByte == -1) {
+            return prematureEOF(failOnEOF);
+        }
+        final int missingBits = length - bufferLength;
+        long result = buffer | ((long) (lastByte & ((1 << missingBits) - 1)) << bufferLength);
+        buffer = lastByte >>> missingBits;
+        bufferLength = BITS_PER_BYTE - missingBits;
+        return result;
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits as a long value. The first bit read is the
+     * least significant bit of the result.
+     *
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @param failOnEOF
+     *            indicates how to behave in case of premature end of input. If
+     *            {@code true}, this method throws {@link IllegalStateException} if
+     *            there's not enough bits to read. If {@code false}, this methods
+     *            returns -1 in such a case.
+     * @return the long value of the read bits, or -1 if the end of input is reached
+     *         (only if {@code failOnEOF} is {@code false})
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be read (only if {@code failOnEOF} is {@code true})
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long readBits(int length, boolean failOnEOF) throws IOException {
+        return readBitsUnlocked(length, failOnEOF);
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits as a long value. The first bit read is the
+     * least significant bit of the result.
+     *
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @return the long value of the read bits
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long readBits(int length) throws IOException {
+        return readBitsUnlocked(length, true);
+    }
+
+    /**
+     * Reads the next bit from this stream.
+     *
+     * @return 1 or 0 depending on the read bit, or -1 if the end of stream was
+     *         reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized int readBit() throws IOException {
+        if (bufferLength == 0) {
+            int octet = nextByte();
+            if (octet == -1) {
+                return -1;
+            }
+            buffer = octet;
+            bufferLength = BITS_PER_BYTE;
+        }
+        return (int) pollBitsFromBuffer(1);
+    }
+
+    /**
+     * Returns the next bits of this stream as a long value, without consuming
+     * them. The first bit of the stream is the least significant bit of the result.
+     *
+     * @param length
+     *            the number of bits to peek. Must not exceed {@link #MAX_PEEK_BITS}.
+     * @param failOnEOF
+     *            indicates how to behave in case of premature end of input. If
+     *            {@code true}, this method throws {@link IllegalStateException} if
+     *            there's not enough bits left. If {@code false}, this methods
+     *            returns -1 in such a case.
+     * @return the long value of the next {@code length} bits, or -1 if the end of
+     *         input is reached (only if {@code failOnEOF} is {@code false})
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be peeked (only if {@code failOnEOF} is {@code true})
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long peekBits(int length, boolean failOnEOF) throws IOException {
+        if (length > MAX_PEEK_BITS) {
+            throw new IllegalArgumentException("can't peek more than " + MAX_PEEK_BITS + " bits");
+        }
+        while (bufferLength < length) {
+            int octet = nextByte();
+            if (octet == -1) {
+                return prematureEOF(failOnEOF);
+            }
+            buffer |= (long) octet << bufferLength;
+            bufferLength += BITS_PER_BYTE;
+        }
+        return buffer & ~(-1L << length);
+    }
+
+    /**
+     * Returns the next bits of this stream as a long value, without consuming
+     * them. The first bit of the stream is the least significant bit of the result.
+     *
+     * @param length
+     *            the number of bits to peek. Must not exceed {@link #MAX_PEEK_BITS}.
+     * @return the long value of the next {@code length} bits
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the specified number of
+     *             bits could be peeked
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public long peekBits(int length) throws IOException {
+        return peekBits(length, true);
+    }
+
+    /**
+     * Skips over and discards {@code n} bits from this stream.
+     *
+     * @param n
+     *            the number of bits to skip
+     * @return the actual number of bits skipped, which is less than {@code n} only
+     *         if the end of stream was reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized long skipBits(long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            if (bufferLength == 0) {
+                int octet = nextByte();
+                if (octet == -1) {
+                    break;
+                }
+                buffer = octet;
+                bufferLength = BITS_PER_BYTE;
+            }
+            int toSkip = (int) Math.min(remaining, bufferLength);
+            pollBitsFromBuffer(toSkip);
+            remaining -= toSkip;
+        }
+        return n - Math.max(remaining, 0);
+    }
+
+    /**
+     * Marks the current bit position in this stream. A subsequent call to
+     * {@link #resetBits()} repositions this stream at the last marked bit, even if
+     * it is in the middle of a byte.
+     *
+     * @param readLimit
+     *            the maximum number of bytes that can be read before the mark
+     *            position becomes invalid
+     * @see BufferedInputStream#mark(int)
+     */
+    public synchronized void markBits(int readLimit) {
+        super.mark(readLimit);
+        markedBuffer = buffer;
+        markedBufferLength = bufferLength;
+    }
+
+    /**
+     * Repositions this stream at the bit position of the last call to
+     * {@link #markBits(int)}.
+     *
+     * @throws IOException
+     *             if this stream has not been marked or if the mark has been
+     *             invalidated
+     * @see BufferedInputStream#reset()
+     */
+    public synchronized void resetBits() throws IOException {
+        super.reset();
+        buffer = markedBuffer;
+        bufferLength = markedBufferLength;
+    }
+
+    /**
+     * Marks the current position in this stream, at bit level.
+     *
+     * @see #markBits(int)
+     */
+    @Override
+    public synchronized void mark(int readLimit) {
+        markBits(readLimit);
+    }
+
+    /**
+     * Repositions this stream at the last marked bit position.
+     *
+     * @see #resetBits()
+     */
+    @Override
+    public synchronized void reset() throws IOException {
+        resetBits();
+    }
+
+    /**
+     * Discards the remaining bits of the current byte, so that the next read starts
+     * on a byte boundary. DEFLATE stored blocks for instance start on a byte
+     * boundary.
+     */
+    public synchronized void alignToByte() {
+        pollBitsFromBuffer(bufferLength % BITS_PER_BYTE);
+    }
+
+    /**
+     * Reads the next bit from this stream as a {@code boolean}.
+     *
+     * @return {@code true} for a 1 and {@code false} for a 0
+     * @throws IllegalStateException
+     *             if the end of stream was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public boolean readBoolean() throws IOException {
+        return readBits(1) == 1;
+    }
+
+    /**
+     * Reads the next {@link Byte#SIZE} bits from this stream as a {@code byte}.
+     *
+     * @return the read {@code byte}
+     * @throws IllegalStateException
+     *             if the end of stream was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public byte readByte() throws IOException {
+        return (byte) readBits(Byte.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Character#SIZE} bits from this stream as a {@code char}.
+     *
+     * @return the read {@code char}
+     * @throws IllegalStateException
+     *             if the end of stream was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public char readChar() throws IOException {
+        return (char) readBits(Character.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Integer#SIZE} bits from this stream as an {@code int}.
+     *
+     * @return the read {@code int}
+     * @throws IllegalStateException
+     *             if the end of stream was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        return (int) readBits(Integer.SIZE);
+    }
+
+    /**
+     * Reads the next {@link Long#SIZE} bits from this stream as a {@code long}.
+     *
+     * @return the read {@code long}
+     * @throws IllegalStateException
+     *             if the end of stream was reached before enough bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public long readLong() throws IOException {
+        return readBits(Long.SIZE);
+    }
+}
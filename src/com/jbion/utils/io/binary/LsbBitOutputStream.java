@@ -0,0 +1,223 @@
+package com.jbion.utils.io.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Represents a stream of bits packed in LSB-first order, as in DEFLATE streams:
+ * the first bit of each byte is its least significant bit, and multi-bit values
+ * are written starting with their least significant bit.
+ * <p>
+ * It is the LSB-first counterpart of {@link BitOutputStream}, and writes the
+ * complete bytes directly into the array of the underlying
+ * {@link BufferedOutputStream} the same way.
+ * </p>
+ */
+public class LsbBitOutputStream extends BufferedOutputStream {
+
+    /**
+     * The bits that are not written yet. The first bit to write is the least
+     * significant one, and the unused bits are 0s.
+     */
+    private long buffer = 0;
+    /**
+     * Indicates how many bits of the buffer are currently used.
+     */
+    private int bufferLength = 0;
+
+    /**
+     * Creates a new {@link LsbBitOutputStream} wrapping the specified
+     * {@link OutputStream}.
+     *
+     * @param out
+     *            the {@link OutputStream} to wrap
+     */
+    public LsbBitOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Creates a new {@link LsbBitOutputStream} wrapping the specified
+     * {@link OutputStream}.
+     *
+     * @param out
+     *            the {@link OutputStream} to wrap
+     * @param size
+     *            the buffer size for the underlying {@link BufferedOutputStream}
+     */
+    public LsbBitOutputStream(OutputStream out, int size) {
+        super(out, size);
+    }
+
+    private void drainBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeBitsUnlocked(long value, int nBits) throws IOException {
+        if (bufferLength + nBits > Long.SIZE) {
+            // the bits would not fit in a long along with the buffered ones
+            writeBitsUnlocked(value, Integer.SIZE);
+            value >>>= Integer.SIZE;
+            nBits -= Integer.SIZE;
+        }
+        long bits = nBits == Long.SIZE ? value : value & ~(-1L << nBits);
+        long acc = buffer | (bits << bufferLength);
+        int accLength = bufferLength + nBits;
+        final byte[] bytes = buf;
+        int c = count;
+        while (accLength >= 8) {
+            if (c == bytes.length) {
+                count = c;
+                drainBuffer();
+                c = 0;
+            }
+            bytes[c++] = (byte) acc;
+            acc >>>= 8;
+            accLength -= 8;
+        }
+        count = c;
+        buffer = acc;
+        bufferLength = accLength;
+    }
+
+    /**
+     * Writes the specified bits to this stream, the least significant first.
+     *
+     * @param value
+     *            the value of the bits to write
+     * @param nBits
+     *            the number of bits to write. Must not exceed {@link Long#SIZE}. The
+     *            least significant (right-most) bits are taken from the input value.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void writeBits(long value, int nBits) throws IOException {
+        if (nBits > Long.SIZE) {
+            throw new IllegalArgumentException("cannot write more bits than the length of a long");
+        }
+        writeBitsUnlocked(value, nBits);
+    }
+
+    /**
+     * Writes the specified bit to this stream.
+     *
+     * @param bit
+     *            the bit to write, as an int
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void writeBit(int bit) throws IOException {
+        if (bit != 0 && bit != 1) {
+            throw new IllegalArgumentException("the specified bit is neither 0 nor 1");
+        }
+        writeBitsUnlocked(bit, 1);
+    }
+
+    /**
+     * Writes the specified bit to this stream.
+     *
+     * @param bit
+     *            the bit to write: {@code true} for 1, {@code false} for 0
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeBit(boolean bit) throws IOException {
+        writeBit(bit ? 1 : 0);
+    }
+
+    /**
+     * Completes the current byte with 0s, so that the next bits are written on a
+     * byte boundary.
+     *
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public synchronized void alignToByte() throws IOException {
+        if (bufferLength > 0) {
+            writeBitsUnlocked(0, 8 - bufferLength);
+        }
+    }
+
+    /**
+     * Flushes this stream. If the written bits do not end on a byte boundary, the
+     * last byte is completed with 0s, and the next bits will be written at the
+     * beginning of a new byte.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        alignToByte();
+        super.flush();
+    }
+
+    /**
+     * Writes the given byte to this stream, with leading zeros to reach
+     * {@link Byte#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeByte(byte value) throws IOException {
+        writeBits(value, Byte.SIZE);
+    }
+
+    /**
+     * Writes the given character's code to this stream, with leading zeros to reach
+     * {@link Character#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeChar(char value) throws IOException {
+        writeBits(value, Character.SIZE);
+    }
+
+    /**
+     * Writes the given integer to this stream, with leading zeros to reach
+     * {@link Integer#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeInt(int value) throws IOException {
+        writeBits(value, Integer.SIZE);
+    }
+
+    /**
+     * Writes the given long to this stream, with leading zeros to reach
+     * {@link Long#SIZE}.
+     *
+     * @param value
+     *            The value to write.
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeLong(long value) throws IOException {
+        writeBits(value, Long.SIZE);
+    }
+
+    /**
+     * Closes this stream, flushing the buffer.
+     *
+     * @throws IOException
+     *             if the buffer cannot be flushed or the wrapped stream cannot be
+     *             closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.jbion.utils.io.binary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Gives random access to the bits of a file, by mapping it in memory. The bits are
+ * read in the same order as they are read by a {@link BitInputStream}, and
+ * written by a {@link BitOutputStream}: the most significant bit of each byte
+ * first.
+ * <p>
+ * Contrary to a {@link BitInputStream}, a {@link MappedBitReader} can jump to any
+ * bit position using {@link #seekBit(long)}, or read at absolute positions using
+ * {@link #getBits(long, int)}, without reading what's before. Files larger than
+ * 2GB are mapped as several segments.
+ * </p>
+ * <p>
+ * A {@link MappedBitReader} is not thread-safe, as it holds a current position.
+ * The absolute {@link #getBits(long, int)} method however may be called
+ * concurrently.
+ * </p>
+ */
+public class MappedBitReader implements Closeable {
+
+    /**
+     * The default size of the mapped segments is 1GB.
+     */
+    private static final int DEFAULT_SEGMENT_SHIFT = 30;
+    /**
+     * The number of bytes each segment shares with the next one, so that any
+     * {@code long} plus one byte can be read from a single segment.
+     */
+    private static final int SEGMENT_OVERLAP = Long.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long byteLength;
+    private final long bitLength;
+
+    /**
+     * The position of the next bit to read.
+     */
+    private long position = 0;
+
+    /**
+     * Creates a new {@link MappedBitReader} on the specified file.
+     *
+     * @param file
+     *            the file to read
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    public MappedBitReader(File file) throws IOException {
+        this(file.toPath());
+    }
+
+    /**
+     * Creates a new {@link MappedBitReader} on the specified file.
+     *
+     * @param path
+     *            the path of the file to read
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    public MappedBitReader(Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * Creates a new {@link MappedBitReader} on the specified file, using segments
+     * of {@code 2^segmentShift} bytes.
+     *
+     * @param path
+     *            the path of the file to read
+     * @param segmentShift
+     *            the base 2 logarithm of the size of the segments, at most 30
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    MappedBitReader(Path path, int segmentShift) throws IOException {
+        if (segmentShift < 4 || segmentShift > DEFAULT_SEGMENT_SHIFT) {
+            throw new IllegalArgumentException("segment shift must be between 4 and " + DEFAULT_SEGMENT_SHIFT);
+        }
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.byteLength = channel.size();
+            this.bitLength = byteLength * Byte.SIZE;
+            int nSegments = (int) ((byteLength + segmentMask) >>> segmentShift);
+            this.segments = new MappedByteBuffer[nSegments];
+            for (int i = 0; i < nSegments; i++) {
+                long start = (long) i << segmentShift;
+                long size = Math.min(byteLength - start, (1L << segmentShift) + SEGMENT_OVERLAP);
+                segments[i] = channel.map(MapMode.READ_ONLY, start, size);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of bits of the file.
+     *
+     * @return the number of bits of the file
+     */
+    public long bitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns the position of the next bit to read.
+     *
+     * @return the position of the next bit to read, 0 being the first bit of the
+     *         file
+     */
+    public long getBitPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bits between the current position and the end of the
+     * file.
+     *
+     * @return the number of bits that can still be read
+     */
+    public long remainingBits() {
+        return bitLength - position;
+    }
+
+    /**
+     * Moves the current position to the specified bit.
+     *
+     * @param bitPosition
+     *            the position of the next bit to read, 0 being the first bit of the
+     *            file. It may be equal to {@link #bitLength()} to position this
+     *            reader at the end of the file.
+     * @throws IllegalArgumentException
+     *             if the position is negative or beyond the end of the file
+     */
+    public void seekBit(long bitPosition) {
+        if (bitPosition < 0 || bitPosition > bitLength) {
+            throw new IllegalArgumentException("bit position " + bitPosition + " out of bounds [0, " + bitLength
+                    + "]");
+        }
+        position = bitPosition;
+    }
+
+    /**
+     * Skips the specified number of bits.
+     *
+     * @param n
+     *            the number of bits to skip
+     * @throws IllegalStateException
+     *             if there are less than {@code n} bits left
+     */
+    public void skipBits(long n) {
+        if (n > remainingBits()) {
+            throw new IllegalStateException("premature end of input, cannot skip the requested number of bits");
+        }
+        position += n;
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits as a long value, and moves the current
+     * position after them.
+     *
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @return the long value of the read bits
+     * @throws IllegalStateException
+     *             if the end of the file is reached before the specified number of
+     *             bits could be read
+     */
+    public long readBits(int length) {
+        long value = getBits(position, length);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits as a long value, without moving the
+     * current position.
+     *
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @return the long value of the read bits
+     * @throws IllegalStateException
+     *             if the end of the file is reached before the specified number of
+     *             bits could be read
+     */
+    public long peekBits(int length) {
+        return getBits(position, length);
+    }
+
+    /**
+     * Reads the next bit.
+     *
+     * @return 1 or 0 depending on the read bit, or -1 if the end of the file was
+     *         reached
+     */
+    public int readBit() {
+        if (position >= bitLength) {
+            return -1;
+        }
+        int octet = getByte(position >>> 3);
+        int bit = (octet >>> (7 - (int) (position & 7))) & 1;
+        position++;
+        return bit;
+    }
+
+    /**
+     * Reads up to {@link Long#SIZE} bits at the specified absolute position. The
+     * current position is not used nor modified.
+     *
+     * @param bitPosition
+     *            the position of the first bit to read, 0 being the first bit of
+     *            the file
+     * @param length
+     *            the number of bits to read. Must not exceed {@link Long#SIZE}.
+     * @return the long value of the read bits
+     * @throws IllegalStateException
+     *             if the end of the file is reached before the specified number of
+     *             bits could be read
+     */
+    public long getBits(long bitPosition, int length) {
+        if (length > Long.SIZE || length < 0) {
+            throw new IllegalArgumentException("can't read more bits than the size of a long");
+        }
+        if (bitPosition < 0) {
+            throw new IllegalArgumentException("negative bit position " + bitPosition);
+        }
+        if (bitPosition + length > bitLength) {
+            throw new IllegalStateException("premature end of input, cannot read the requested number of bits");
+        }
+        if (length == 0) {
+            return 0L;
+        }
+        final long byteIndex = bitPosition >>> 3;
+        final int bitOffset = (int) (bitPosition & 7);
+        long word;
+        int extraByte;
+        if (byteIndex + Long.BYTES < byteLength) {
+            // fast path: a long and the byte after it are in the same segment
+            final MappedByteBuffer segment = segments[(int) (byteIndex >>> segmentShift)];
+            final int local = (int) (byteIndex & segmentMask);
+            word = segment.getLong(local);
+            extraByte = segment.get(local + Long.BYTES) & 0xFF;
+        } else {
+            // close to the end of the file, missing bytes are read as 0s
+            word = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                word = (word << Byte.SIZE) | getByteOrZero(byteIndex + i);
+            }
+            extraByte = getByteOrZero(byteIndex + Long.BYTES);
+        }
+        long bits = word << bitOffset;
+        if (bitOffset + length > Long.SIZE) {
+            bits |= extraByte >>> (Byte.SIZE - bitOffset);
+        }
+        return bits >>> (Long.SIZE - length);
+    }
+
+    private int getByte(long byteIndex) {
+        return segments[(int) (byteIndex >>> segmentShift)].get((int) (byteIndex & segmentMask)) & 0xFF;
+    }
+
+    private int getByteOrZero(long byteIndex) {
+        return byteIndex < byteLength ? getByte(byteIndex) : 0;
+    }
+
+    /**
+     * Closes the underlying file channel. The mapped memory is released when the
+     * segments are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,127 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+
+/**
+ * An array of {@code int} values stored with a fixed number of bits per value. It
+ * uses the same layout as a {@link PackedLongArray}, which is the layout written
+ * by {@link BitOutputStream#writeBits(long, int)}.
+ *
+ * @see PackedLongArray
+ */
+public class PackedIntArray {
+
+    private final PackedLongArray values;
+
+    /**
+     * Creates a new {@link PackedIntArray} containing only 0s.
+     *
+     * @param size
+     *            the number of values
+     * @param bitsPerValue
+     *            the number of bits used to store each value, between 1 and
+     *            {@link Integer#SIZE}
+     */
+    public PackedIntArray(int size, int bitsPerValue) {
+        this(new PackedLongArray(size, checkBitsPerValue(bitsPerValue)));
+    }
+
+    private PackedIntArray(PackedLongArray values) {
+        this.values = values;
+    }
+
+    private static int checkBitsPerValue(int bitsPerValue) {
+        if (bitsPerValue < 1 || bitsPerValue > Integer.SIZE) {
+            throw new IllegalArgumentException("bits per value must be between 1 and " + Integer.SIZE);
+        }
+        return bitsPerValue;
+    }
+
+    /**
+     * Returns the number of bits needed to store the specified value.
+     *
+     * @param maxValue
+     *            the greatest value to store, considered unsigned
+     * @return the number of bits per value to use to store values up to
+     *         {@code maxValue}, at least 1
+     */
+    public static int bitsRequired(int maxValue) {
+        return PackedLongArray.bitsRequired(maxValue & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the number of values of this array.
+     *
+     * @return the number of values of this array
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the number of bits used to store each value.
+     *
+     * @return the number of bits per value
+     */
+    public int getBitsPerValue() {
+        return values.getBitsPerValue();
+    }
+
+    /**
+     * Returns the value at the specified index.
+     *
+     * @param index
+     *            the index of the value
+     * @return the value at {@code index}, as an unsigned value of
+     *         {@link #getBitsPerValue()} bits
+     */
+    public int get(int index) {
+        return (int) values.get(index);
+    }
+
+    /**
+     * Sets the value at the specified index.
+     *
+     * @param index
+     *            the index of the value
+     * @param value
+     *            the value to set. Only its {@link #getBitsPerValue()} least
+     *            significant bits are stored.
+     */
+    public void set(int index, int value) {
+        values.set(index, value);
+    }
+
+    /**
+     * Writes all the values of this array to the specified stream, as
+     * {@link #getBitsPerValue()}-bit values. No header is written.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeTo(BitOutputStream out) throws IOException {
+        values.writeTo(out);
+    }
+
+    /**
+     * Reads {@code size} values of {@code bitsPerValue} bits from the specified
+     * stream.
+     *
+     * @param in
+     *            the stream to read from
+     * @param size
+     *            the number of values to read
+     * @param bitsPerValue
+     *            the number of bits of each value
+     * @return a new {@link PackedIntArray} containing the read values
+     * @throws IllegalStateException
+     *             if the end of stream is reached before all values could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static PackedIntArray readFrom(BitInputStream in, int size, int bitsPerValue) throws IOException {
+        return new PackedIntArray(PackedLongArray.readFrom(in, size, checkBitsPerValue(bitsPerValue)));
+    }
+}
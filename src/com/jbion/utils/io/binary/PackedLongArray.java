@@ -0,0 +1,182 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+
+/**
+ * An array of {@code long} values stored with a fixed number of bits per value.
+ * The values are packed in a {@code long[]} in the same MSB-first layout as a
+ * {@link BitOutputStream} writes them: value {@code i} occupies the bits
+ * {@code i * bitsPerValue} to {@code (i + 1) * bitsPerValue - 1}, bit 0 being the
+ * most significant bit of the first word.
+ * <p>
+ * Writing a {@link PackedLongArray} with {@link #writeTo(BitOutputStream)} is
+ * therefore equivalent to writing each value with
+ * {@link BitOutputStream#writeBits(long, int)}, and such values can be read back
+ * with {@link #readFrom(BitInputStream, int, int)}.
+ * </p>
+ */
+public class PackedLongArray {
+
+    private static final int WORD_SHIFT = 6;
+
+    private final long[] words;
+    private final int size;
+    private final int bitsPerValue;
+    private final long valueMask;
+
+    /**
+     * Creates a new {@link PackedLongArray} containing only 0s.
+     *
+     * @param size
+     *            the number of values
+     * @param bitsPerValue
+     *            the number of bits used to store each value, between 1 and
+     *            {@link Long#SIZE}
+     */
+    public PackedLongArray(int size, int bitsPerValue) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size " + size);
+        }
+        if (bitsPerValue < 1 || bitsPerValue > Long.SIZE) {
+            throw new IllegalArgumentException("bits per value must be between 1 and " + Long.SIZE);
+        }
+        this.size = size;
+        this.bitsPerValue = bitsPerValue;
+        this.valueMask = -1L >>> (Long.SIZE - bitsPerValue);
+        long nBits = (long) size * bitsPerValue;
+        this.words = new long[(int) ((nBits + Long.SIZE - 1) >>> WORD_SHIFT)];
+    }
+
+    /**
+     * Returns the number of bits needed to store the specified value.
+     *
+     * @param maxValue
+     *            the greatest value to store, considered unsigned
+     * @return the number of bits per value to use to store values up to
+     *         {@code maxValue}, at least 1
+     */
+    public static int bitsRequired(long maxValue) {
+        return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(maxValue));
+    }
+
+    /**
+     * Returns the number of values of this array.
+     *
+     * @return the number of values of this array
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bits used to store each value.
+     *
+     * @return the number of bits per value
+     */
+    public int getBitsPerValue() {
+        return bitsPerValue;
+    }
+
+    /**
+     * Returns the value at the specified index.
+     *
+     * @param index
+     *            the index of the value
+     * @return the value at {@code index}, as an unsigned value of
+     *         {@link #getBitsPerValue()} bits
+     */
+    public long get(int index) {
+        checkIndex(index);
+        final long bitIndex = (long) index * bitsPerValue;
+        final int wordIndex = (int) (bitIndex >>> WORD_SHIFT);
+        final int offset = (int) (bitIndex & (Long.SIZE - 1));
+        long value = (words[wordIndex] << offset) >>> (Long.SIZE - bitsPerValue);
+        final int overflow = offset + bitsPerValue - Long.SIZE;
+        if (overflow > 0) {
+            value |= words[wordIndex + 1] >>> (Long.SIZE - overflow);
+        }
+        return value;
+    }
+
+    /**
+     * Sets the value at the specified index.
+     *
+     * @param index
+     *            the index of the value
+     * @param value
+     *            the value to set. Only its {@link #getBitsPerValue()} least
+     *            significant bits are stored.
+     */
+    public void set(int index, long value) {
+        checkIndex(index);
+        value &= valueMask;
+        final long bitIndex = (long) index * bitsPerValue;
+        final int wordIndex = (int) (bitIndex >>> WORD_SHIFT);
+        final int offset = (int) (bitIndex & (Long.SIZE - 1));
+        final int overflow = offset + bitsPerValue - Long.SIZE;
+        if (overflow <= 0) {
+            final int shift = -overflow;
+            words[wordIndex] = (words[wordIndex] & ~(valueMask << shift)) | (value << shift);
+        } else {
+            words[wordIndex] = (words[wordIndex] & ~(-1L >>> offset)) | (value >>> overflow);
+            words[wordIndex + 1] = (words[wordIndex + 1] & (-1L >>> overflow)) | (value << (Long.SIZE - overflow));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Writes all the values of this array to the specified stream, as
+     * {@link #getBitsPerValue()}-bit values. No header is written.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeTo(BitOutputStream out) throws IOException {
+        long nBits = (long) size * bitsPerValue;
+        int fullWords = (int) (nBits >>> WORD_SHIFT);
+        for (int i = 0; i < fullWords; i++) {
+            out.writeLong(words[i]);
+        }
+        int lastBits = (int) (nBits & (Long.SIZE - 1));
+        if (lastBits > 0) {
+            out.writeBits(words[fullWords] >>> (Long.SIZE - lastBits), lastBits);
+        }
+    }
+
+    /**
+     * Reads {@code size} values of {@code bitsPerValue} bits from the specified
+     * stream.
+     *
+     * @param in
+     *            the stream to read from
+     * @param size
+     *            the number of values to read
+     * @param bitsPerValue
+     *            the number of bits of each value
+     * @return a new {@link PackedLongArray} containing the read values
+     * @throws IllegalStateException
+     *             if the end of stream is reached before all values could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static PackedLongArray readFrom(BitInputStream in, int size, int bitsPerValue) throws IOException {
+        PackedLongArray array = new PackedLongArray(size, bitsPerValue);
+        long nBits = (long) size * bitsPerValue;
+        int fullWords = (int) (nBits >>> WORD_SHIFT);
+        for (int i = 0; i < fullWords; i++) {
+            array.words[i] = in.readLong();
+        }
+        int lastBits = (int) (nBits & (Long.SIZE - 1));
+        if (lastBits > 0) {
+            array.words[fullWords] = in.readBits(lastBits) << (Long.SIZE - lastBits);
+        }
+        return array;
+    }
+}
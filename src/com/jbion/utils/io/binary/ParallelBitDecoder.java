@@ -0,0 +1,195 @@
+package com.jbion.utils.io.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file written by a {@link ParallelBitEncoder}, and decodes its blocks
+ * independently, possibly in parallel in a {@link ForkJoinPool}.
+ */
+public class ParallelBitDecoder implements Closeable {
+
+    private static final int FOOTER_END_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Decodes a block of bits.
+     *
+     * @param <R>
+     *            the type of the decoded blocks
+     */
+    public interface BlockDecoder<R> {
+
+        /**
+         * Decodes the block contained in the specified stream. This method is called
+         * concurrently on different blocks.
+         *
+         * @param blockIndex
+         *            the index of the block
+         * @param in
+         *            the stream containing the bits of the block only, which is only
+         *            used by the current thread
+         * @return the decoded block
+         * @throws IOException
+         *             if an I/O error occurs
+         */
+        R decode(int blockIndex, BitInputStream in) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    /**
+     * Opens the specified file and reads its block table.
+     *
+     * @param path
+     *            the file written by a {@link ParallelBitEncoder}
+     * @throws IOException
+     *             if the file cannot be read, or is not in the expected format
+     */
+    public ParallelBitDecoder(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_END_SIZE) {
+                throw new IOException("file too short to contain blocks");
+            }
+            ByteBuffer end = readFully(size - FOOTER_END_SIZE, FOOTER_END_SIZE);
+            int nBlocks = end.getInt();
+            if (end.getInt() != ParallelBitEncoder.MAGIC || nBlocks < 0
+                    || (long) nBlocks * Integer.BYTES > size - FOOTER_END_SIZE) {
+                throw new IOException("not a block-framed bit file");
+            }
+            long tableStart = size - FOOTER_END_SIZE - (long) nBlocks * Integer.BYTES;
+            ByteBuffer table = readFully(tableStart, nBlocks * Integer.BYTES);
+            this.offsets = new long[nBlocks];
+            this.lengths = new int[nBlocks];
+            long offset = 0;
+            for (int i = 0; i < nBlocks; i++) {
+                offsets[i] = offset;
+                lengths[i] = table.getInt();
+                offset += lengths[i];
+            }
+            if (offset != tableStart) {
+                throw new IOException("corrupt block table");
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            // positional reads, safe to use from several threads
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the number of blocks of the file.
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return lengths.length;
+    }
+
+    /**
+     * Returns a stream on the bits of the specified block. The returned stream may
+     * be used by a single thread only.
+     *
+     * @param blockIndex
+     *            the index of the block
+     * @return a stream containing the bits of the specified block only
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public BitInputStream openBlock(int blockIndex) throws IOException {
+        ByteBuffer bytes = readFully(offsets[blockIndex], lengths[blockIndex]);
+        return new UnsynchronizedBitInputStream(new ByteArrayInputStream(bytes.array()));
+    }
+
+    /**
+     * Decodes all the blocks in parallel, in the common {@link ForkJoinPool}.
+     *
+     * @param decoder
+     *            the decoder for each block
+     * @param <R>
+     *            the type of the decoded blocks
+     * @return the decoded blocks, in the order of the file
+     * @throws IOException
+     *             if an I/O error occurs, or if the decoding of a block failed
+     */
+    public <R> List<R> decodeAll(BlockDecoder<R> decoder) throws IOException {
+        return decodeAll(decoder, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decodes all the blocks in parallel, in the specified {@link ForkJoinPool}.
+     *
+     * @param decoder
+     *            the decoder for each block
+     * @param pool
+     *            the pool running the decoding tasks
+     * @param <R>
+     *            the type of the decoded blocks
+     * @return the decoded blocks, in the order of the file
+     * @throws IOException
+     *             if an I/O error occurs, or if the decoding of a block failed
+     */
+    public <R> List<R> decodeAll(final BlockDecoder<R> decoder, ForkJoinPool pool) throws IOException {
+        List<Callable<R>> tasks = new ArrayList<>(lengths.length);
+        for (int i = 0; i < lengths.length; i++) {
+            final int blockIndex = i;
+            tasks.add(new Callable<R>() {
+                @Override
+                public R call() throws IOException {
+                    try (BitInputStream in = openBlock(blockIndex)) {
+                        return decoder.decode(blockIndex, in);
+                    }
+                }
+            });
+        }
+        List<R> results = new ArrayList<>(lengths.length);
+        for (Future<R> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while decoding blocks", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("failed to decode block " + results.size(), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Closes the underlying file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,220 @@
+package com.jbion.utils.io.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes a sequence of blocks in parallel, each block in its own
+ * {@link BitOutputStream}, and writes them one after the other in a block-framed
+ * format that a {@link ParallelBitDecoder} can decode in parallel.
+ * <p>
+ * The blocks are encoded on worker threads by a {@link BlockEncoder}, and written
+ * to the output in their submission order as soon as they are ready. At most a
+ * bounded number of blocks are pending at any time, so that memory stays bounded
+ * whatever the size of the data.
+ * </p>
+ * <p>
+ * The format is the concatenation of the encoded blocks, each padded to a byte
+ * boundary, followed by a footer containing the byte length of each block as
+ * {@code int}s, the number of blocks as an {@code int}, and the {@code int}
+ * {@link #MAGIC}.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the blocks of data to encode
+ */
+public class ParallelBitEncoder<T> implements Closeable {
+
+    /**
+     * The value written at the very end of the data, to recognize the format.
+     */
+    static final int MAGIC = 0x42495450; // "BITP"
+
+    /**
+     * Encodes a block of data as bits.
+     *
+     * @param <T>
+     *            the type of the blocks of data to encode
+     */
+    public interface BlockEncoder<T> {
+
+        /**
+         * Encodes the specified block into the specified stream. This method is
+         * called concurrently on different blocks.
+         *
+         * @param block
+         *            the block of data to encode
+         * @param out
+         *            the stream to write the bits of the block to, which is only
+         *            used by the current thread
+         * @throws IOException
+         *             if an I/O error occurs
+         */
+        void encode(T block, BitOutputStream out) throws IOException;
+    }
+
+    private final DataOutputStream out;
+    private final BlockEncoder<T> encoder;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int maxPendingBlocks;
+
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private final List<Integer> blockLengths = new ArrayList<>();
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@link ParallelBitEncoder} using as many threads as there are
+     * available processors.
+     *
+     * @param out
+     *            the stream to write the blocks to
+     * @param encoder
+     *            the encoder for each block
+     */
+    public ParallelBitEncoder(OutputStream out, BlockEncoder<T> encoder) {
+        this(out, encoder, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@link ParallelBitEncoder} using the specified number of
+     * threads. The threads are stopped when this encoder is closed.
+     *
+     * @param out
+     *            the stream to write the blocks to
+     * @param encoder
+     *            the encoder for each block
+     * @param nThreads
+     *            the number of worker threads
+     */
+    public ParallelBitEncoder(OutputStream out, BlockEncoder<T> encoder, int nThreads) {
+        this(out, encoder, Executors.newFixedThreadPool(nThreads), 2 * nThreads, true);
+    }
+
+    /**
+     * Creates a new {@link ParallelBitEncoder} using the specified executor, which
+     * is not shut down when this encoder is closed.
+     *
+     * @param out
+     *            the stream to write the blocks to
+     * @param encoder
+     *            the encoder for each block
+     * @param executor
+     *            the executor running the encoding of the blocks
+     * @param maxPendingBlocks
+     *            the maximum number of blocks being encoded or waiting to be
+     *            written. When it is reached, {@link #submit(Object)} blocks until
+     *            the oldest block is written.
+     */
+    public ParallelBitEncoder(OutputStream out, BlockEncoder<T> encoder, ExecutorService executor,
+            int maxPendingBlocks) {
+        this(out, encoder, executor, maxPendingBlocks, false);
+    }
+
+    private ParallelBitEncoder(OutputStream out, BlockEncoder<T> encoder, ExecutorService executor,
+            int maxPendingBlocks, boolean ownExecutor) {
+        if (maxPendingBlocks < 1) {
+            throw new IllegalArgumentException("at least one block must be allowed to be pending");
+        }
+        this.out = new DataOutputStream(out);
+        this.encoder = encoder;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * Submits the specified block for encoding. The block is written after all the
+     * previously submitted ones.
+     *
+     * @param block
+     *            the block of data to encode
+     * @throws IOException
+     *             if an I/O error occurs, or if the encoding of a previous block
+     *             failed
+     */
+    public void submit(final T block) throws IOException {
+        if (closed) {
+            throw new IOException("encoder closed");
+        }
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+        pendingBlocks.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (BitOutputStream bits = new BitOutputStream(bytes)) {
+                    encoder.encode(block, bits);
+                }
+                return bytes.toByteArray();
+            }
+        }));
+        // write the blocks that are already done, without waiting
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peekFirst().isDone()) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+    }
+
+    private void writeBlock(Future<byte[]> pendingBlock) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = pendingBlock.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while encoding a block", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("failed to encode block " + blockLengths.size(), e.getCause());
+        }
+        out.write(bytes);
+        blockLengths.add(bytes.length);
+    }
+
+    /**
+     * Waits for all the submitted blocks to be encoded and written, then writes the
+     * footer and closes the underlying stream.
+     *
+     * @throws IOException
+     *             if an I/O error occurs, or if the encoding of a block failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.removeFirst());
+            }
+            for (int length : blockLengths) {
+                out.writeInt(length);
+            }
+            out.writeInt(blockLengths.size());
+            out.writeInt(MAGIC);
+        } finally {
+            for (Future<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(true);
+            }
+            if (ownExecutor) {
+                executor.shutdown();
+            }
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link BitInputStream} reading the wrapped stream ahead of the consumer from a
+ * background thread, for sources with a high latency such as disks or pipes.
+ * <p>
+ * The background thread keeps up to a configurable number of buffers filled in
+ * advance. The bits are read with the usual {@link BitInputStream} methods, which
+ * only block when all the prefetched data has been consumed. An
+ * {@link IOException} thrown by the wrapped stream is rethrown to the consumer
+ * once the data read before it has been consumed, and by every later read.
+ * </p>
+ * <p>
+ * The background thread stops at the end of the wrapped stream, or when this
+ * stream is closed.
+ * </p>
+ */
+public class PrefetchingBitInputStream extends BitInputStream {
+
+    /**
+     * The default number of buffers read ahead.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Creates a new {@link PrefetchingBitInputStream} reading ahead
+     * {@link #DEFAULT_DEPTH} buffers of 64 KiB.
+     *
+     * @param in
+     *            the {@link InputStream} to wrap
+     */
+    public PrefetchingBitInputStream(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates a new {@link PrefetchingBitInputStream}.
+     *
+     * @param in
+     *            the {@link InputStream} to wrap
+     * @param size
+     *            the size of each buffer
+     * @param depth
+     *            the maximum number of buffers read ahead
+     */
+    public PrefetchingBitInputStream(InputStream in, int size, int depth) {
+        super(new Prefetcher(in, size, depth), size);
+    }
+
+    /**
+     * A chunk of the wrapped stream, read by the background thread.
+     */
+    private static final class Chunk {
+
+        private static final Chunk EOF = new Chunk(null, -1, null);
+
+        private final byte[] data;
+        private final int length;
+        private final IOException error;
+
+        Chunk(byte[] data, int length, IOException error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The {@link InputStream} between the wrapped stream and the buffer of the
+     * {@link BitInputStream}, returning the chunks read by its background thread.
+     */
+    private static final class Prefetcher extends InputStream implements Runnable {
+
+        private final InputStream in;
+        private final BlockingQueue<byte[]> freeBuffers;
+        /**
+         * The filled chunks. One more slot than buffers is needed for the final
+         * marker.
+         */
+        private final BlockingQueue<Chunk> filledChunks;
+        private final Thread thread;
+
+        private Chunk current = null;
+        private int currentPos = 0;
+        private boolean ended = false;
+        /**
+         * The error that ended the wrapped stream, rethrown by every read after it.
+         */
+        private IOException error = null;
+        private volatile boolean closed = false;
+
+        Prefetcher(InputStream in, int size, int depth) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("buffer size must be positive");
+            }
+            if (depth < 1) {
+                throw new IllegalArgumentException("at least one buffer must be read ahead");
+            }
+            this.in = in;
+            this.freeBuffers = new ArrayBlockingQueue<>(depth);
+            for (int i = 0; i < depth; i++) {
+                freeBuffers.add(new byte[size]);
+            }
+            this.filledChunks = new ArrayBlockingQueue<>(depth + 1);
+            this.thread = new Thread(this, "bit-stream-prefetcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    byte[] buffer = freeBuffers.take();
+                    int n;
+                    try {
+                        n = in.read(buffer, 0, buffer.length);
+                    } catch (IOException e) {
+                        filledChunks.put(new Chunk(null, -1, e));
+                        return;
+                    }
+                    if (n < 0) {
+                        filledChunks.put(Chunk.EOF);
+                        return;
+                    }
+                    filledChunks.put(new Chunk(buffer, n, null));
+                }
+            } catch (InterruptedException e) {
+                // closed while waiting
+            }
+        }
+
+        /**
+         * Makes sure the current chunk has bytes left, waiting for the next one if
+         * necessary.
+         *
+         * @return {@code false} if the end of stream is reached
+         */
+        private boolean nextChunk() throws IOException {
+            while (current == null || currentPos == current.length) {
+                if (ended) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    return false;
+                }
+                if (current != null) {
+                    freeBuffers.add(current.data);
+                }
+                Chunk chunk;
+                try {
+                    chunk = filledChunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for prefetched data");
+                }
+                if (chunk.length < 0) {
+                    current = null;
+                    ended = true;
+                    error = chunk.error;
+                    continue;
+                }
+                current = chunk;
+                currentPos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            return current.data[currentPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ((off | len | (b.length - (off + len))) < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = Math.min(len, current.length - currentPos);
+            System.arraycopy(current.data, currentPos, b, off, n);
+            currentPos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.length - currentPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            thread.interrupt();
+            in.close();
+        }
+    }
+}
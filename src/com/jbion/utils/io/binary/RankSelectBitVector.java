@@ -0,0 +1,257 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+
+/**
+ * An immutable vector of bits supporting fast {@link #rank1(long)} and
+ * {@link #select1(long)} queries. The bits are stored in a {@code long[]} in the
+ * same MSB-first layout as a {@link BitOutputStream} writes them, along with the
+ * number of 1s preceding each superblock of {@value #SUPERBLOCK_WORDS} words.
+ * <p>
+ * {@link #rank1(long)} runs in constant time, and {@link #select1(long)} in
+ * logarithmic time, so that counting the set bits up to a position does not
+ * require to scan the whole vector. The index takes 1/8 of the size of the
+ * bits.
+ * </p>
+ */
+public class RankSelectBitVector {
+
+    private static final int WORD_SHIFT = 6;
+    private static final int SUPERBLOCK_SHIFT = 3;
+    private static final int SUPERBLOCK_WORDS = 1 << SUPERBLOCK_SHIFT;
+
+    private final long[] words;
+    private final long size;
+    /**
+     * The number of 1s before each superblock, plus the total number of 1s at the
+     * end.
+     */
+    private final long[] superblockRanks;
+
+    /**
+     * Creates a new {@link RankSelectBitVector} on the specified bits. The array is
+     * not copied and must not be modified afterwards.
+     *
+     * @param words
+     *            the bits, bit 0 being the most significant bit of the first word
+     * @param size
+     *            the number of bits of the vector. The bits of the array beyond
+     *            this size are cleared.
+     */
+    public RankSelectBitVector(long[] words, long size) {
+        if (size < 0 || size > (long) words.length << WORD_SHIFT) {
+            throw new IllegalArgumentException("size " + size + " does not fit in " + words.length + " words");
+        }
+        this.words = words;
+        this.size = size;
+        int lastBits = (int) (size & (Long.SIZE - 1));
+        if (lastBits > 0) {
+            // clear the trailing bits so that they are not counted
+            int lastWord = (int) (size >>> WORD_SHIFT);
+            words[lastWord] &= -1L << (Long.SIZE - lastBits);
+        }
+        int nWords = (int) ((size + Long.SIZE - 1) >>> WORD_SHIFT);
+        int nSuperblocks = (nWords + SUPERBLOCK_WORDS - 1) >>> SUPERBLOCK_SHIFT;
+        this.superblockRanks = new long[nSuperblocks + 1];
+        long rank = 0;
+        for (int i = 0; i < nWords; i++) {
+            if ((i & (SUPERBLOCK_WORDS - 1)) == 0) {
+                superblockRanks[i >>> SUPERBLOCK_SHIFT] = rank;
+            }
+            rank += Long.bitCount(words[i]);
+        }
+        superblockRanks[nSuperblocks] = rank;
+    }
+
+    /**
+     * Reads {@code size} bits from the specified stream and indexes them.
+     *
+     * @param in
+     *            the stream to read from
+     * @param size
+     *            the number of bits to read
+     * @return a new {@link RankSelectBitVector} containing the read bits
+     * @throws IllegalStateException
+     *             if the end of stream is reached before all bits could be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static RankSelectBitVector readFrom(BitInputStream in, long size) throws IOException {
+        long[] words = allocateWords(size);
+        int fullWords = (int) (size >>> WORD_SHIFT);
+        in.readBits(Long.SIZE, words, 0, fullWords);
+        int lastBits = (int) (size & (Long.SIZE - 1));
+        if (lastBits > 0) {
+            words[fullWords] = in.readBits(lastBits) << (Long.SIZE - lastBits);
+        }
+        return new RankSelectBitVector(words, size);
+    }
+
+    /**
+     * Reads {@code size} bits from the current position of the specified mapped
+     * file and indexes them.
+     *
+     * @param in
+     *            the mapped file to read from
+     * @param size
+     *            the number of bits to read
+     * @return a new {@link RankSelectBitVector} containing the read bits
+     * @throws IllegalStateException
+     *             if the end of file is reached before all bits could be read
+     */
+    public static RankSelectBitVector readFrom(MappedBitReader in, long size) {
+        long[] words = allocateWords(size);
+        int fullWords = (int) (size >>> WORD_SHIFT);
+        for (int i = 0; i < fullWords; i++) {
+            words[i] = in.readBits(Long.SIZE);
+        }
+        int lastBits = (int) (size & (Long.SIZE - 1));
+        if (lastBits > 0) {
+            words[fullWords] = in.readBits(lastBits) << (Long.SIZE - lastBits);
+        }
+        return new RankSelectBitVector(words, size);
+    }
+
+    private static long[] allocateWords(long size) {
+        long nWords = (size + Long.SIZE - 1) >>> WORD_SHIFT;
+        if (size < 0 || nWords > Integer.MAX_VALUE - SUPERBLOCK_WORDS) {
+            throw new IllegalArgumentException("unsupported bit vector size " + size);
+        }
+        return new long[(int) nWords];
+    }
+
+    /**
+     * Writes the bits of this vector to the specified stream. The index is not
+     * written, it is rebuilt by {@link #readFrom(BitInputStream, long)}.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeTo(BitOutputStream out) throws IOException {
+        int fullWords = (int) (size >>> WORD_SHIFT);
+        out.writeBits(words, 0, fullWords, Long.SIZE);
+        int lastBits = (int) (size & (Long.SIZE - 1));
+        if (lastBits > 0) {
+            out.writeBits(words[fullWords] >>> (Long.SIZE - lastBits), lastBits);
+        }
+    }
+
+    /**
+     * Returns the number of bits of this vector.
+     *
+     * @return the number of bits of this vector
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of 1s in this vector.
+     *
+     * @return the number of 1s in this vector
+     */
+    public long cardinality() {
+        return superblockRanks[superblockRanks.length - 1];
+    }
+
+    /**
+     * Returns whether the bit at the specified position is a 1.
+     *
+     * @param pos
+     *            the position of the bit
+     * @return {@code true} if the bit at {@code pos} is 1
+     */
+    public boolean get(long pos) {
+        if (pos < 0 || pos >= size) {
+            throw new IndexOutOfBoundsException("position " + pos + " out of bounds for size " + size);
+        }
+        return (words[(int) (pos >>> WORD_SHIFT)] << pos) < 0;
+    }
+
+    /**
+     * Returns the number of 1s strictly before the specified position.
+     *
+     * @param pos
+     *            the position, between 0 and {@link #size()} inclusive
+     * @return the number of 1s in the bits {@code [0, pos)}
+     */
+    public long rank1(long pos) {
+        if (pos < 0 || pos > size) {
+            throw new IndexOutOfBoundsException("position " + pos + " out of bounds for size " + size);
+        }
+        final int wordIndex = (int) (pos >>> WORD_SHIFT);
+        final int superblock = wordIndex >>> SUPERBLOCK_SHIFT;
+        long rank = superblockRanks[superblock];
+        for (int i = superblock << SUPERBLOCK_SHIFT; i < wordIndex; i++) {
+            rank += Long.bitCount(words[i]);
+        }
+        final int offset = (int) (pos & (Long.SIZE - 1));
+        if (offset > 0) {
+            rank += Long.bitCount(words[wordIndex] >>> (Long.SIZE - offset));
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the number of 0s strictly before the specified position.
+     *
+     * @param pos
+     *            the position, between 0 and {@link #size()} inclusive
+     * @return the number of 0s in the bits {@code [0, pos)}
+     */
+    public long rank0(long pos) {
+        return pos - rank1(pos);
+    }
+
+    /**
+     * Returns the position of the 1 of the specified rank.
+     *
+     * @param k
+     *            the rank of the 1 to find, starting at 0
+     * @return the position {@code pos} of the bit such that
+     *         {@code rank1(pos) == k} and {@code get(pos)} is {@code true}
+     */
+    public long select1(long k) {
+        if (k < 0 || k >= cardinality()) {
+            throw new IndexOutOfBoundsException("rank " + k + " out of bounds for cardinality " + cardinality());
+        }
+        // last superblock starting with at most k 1s
+        int low = 0;
+        int high = superblockRanks.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (superblockRanks[mid] <= k) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        long remaining = k - superblockRanks[low];
+        int wordIndex = low << SUPERBLOCK_SHIFT;
+        int count = Long.bitCount(words[wordIndex]);
+        while (remaining >= count) {
+            remaining -= count;
+            count = Long.bitCount(words[++wordIndex]);
+        }
+        return ((long) wordIndex << WORD_SHIFT) + selectInWord(words[wordIndex], (int) remaining);
+    }
+
+    /**
+     * Returns the offset, from the most significant bit, of the 1 of rank
+     * {@code k} in the specified word.
+     */
+    private static int selectInWord(long word, int k) {
+        int offset = 0;
+        for (int width = Integer.SIZE; width > 0; width >>>= 1) {
+            int count = Long.bitCount(word >>> (Long.SIZE - width));
+            if (k >= count) {
+                k -= count;
+                word <<= width;
+                offset += width;
+            }
+        }
+        return offset;
+    }
+}
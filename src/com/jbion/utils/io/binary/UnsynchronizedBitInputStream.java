@@ -0,0 +1,125 @@
+package com.jbion.utils.io.binary;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link BitInputStream} that does not lock itself on bit reads. It decodes the
+ * same MSB-first bit layout, and behaves the same way at the end of the stream,
+ * but it must not be shared between several threads without external
+ * synchronization.
+ * <p>
+ * This is the stream to use when a single thread decodes a lot of small values:
+ * the synchronized {@link BitInputStream} pays a monitor enter/exit on every
+ * {@link #readBits(int)} call, whereas this one only locks when the underlying
+ * buffer needs to be refilled.
+ * </p>
+ */
+public class UnsynchronizedBitInputStream extends BitInputStream {
+
+    /**
+     * Creates a new {@link UnsynchronizedBitInputStream} reading from the specified
+     * file.
+     *
+     * @param filename
+     *            the name of the file to read from
+     * @throws FileNotFoundException
+     *             if the file does not exist, is a directory rather than a regular
+     *             file, or for some other reason cannot be opened for reading.
+     */
+    public UnsynchronizedBitInputStream(String filename) throws FileNotFoundException {
+        super(filename);
+    }
+
+    /**
+     * Creates a new {@link UnsynchronizedBitInputStream} reading from the specified
+     * file.
+     *
+     * @param file
+     *            the file to read from
+     * @throws FileNotFoundException
+     *             if the file does not exist, is a directory rather than a regular
+     *             file, or for some other reason cannot be opened for reading.
+     */
+    public UnsynchronizedBitInputStream(File file) throws FileNotFoundException {
+        super(file);
+    }
+
+    /**
+     * Creates a new {@link UnsynchronizedBitInputStream} wrapping the specified
+     * {@link InputStream}.
+     *
+     * @param in
+     *            the {@link InputStream} to wrap
+     */
+    public UnsynchronizedBitInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Creates a new {@link UnsynchronizedBitInputStream} wrapping the specified
+     * {@link InputStream}.
+     *
+     * @param in
+     *            the {@link InputStream} to wrap
+     * @param size
+     *            the buffer size for the underlying
+     *            {@link java.io.BufferedInputStream}
+     */
+    public UnsynchronizedBitInputStream(InputStream in, int size) {
+        super(in, size);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return availableUnlocked();
+    }
+
+    @Override
+    public int read() throws IOException {
+        long octet = readBitsUnlocked(Byte.SIZE, false);
+        return octet == -1 ? -1 : (int) octet;
+    }
+
+    @Override
+    public long readBits(int length, boolean failOnEOF) throws IOException {
+        return readBitsUnlocked(length, failOnEOF);
+    }
+
+    @Override
+    public long readBits(int length) throws IOException {
+        return readBitsUnlocked(length, true);
+    }
+
+    @Override
+    public int readBit() throws IOException {
+        return readBitUnlocked();
+    }
+
+    @Override
+    public void readBits(int width, long[] dst, int off, int len) throws IOException {
+        readBitsUnlocked(width, dst, off, len);
+    }
+
+    @Override
+    public void readBits(int width, int[] dst, int off, int len) throws IOException {
+        readBitsUnlocked(width, dst, off, len);
+    }
+
+    @Override
+    public long peekBits(int length, boolean failOnEOF) throws IOException {
+        return peekBitsUnlocked(length, failOnEOF);
+    }
+
+    @Override
+    public long peekBits(int length) throws IOException {
+        return peekBitsUnlocked(length, true);
+    }
+
+    @Override
+    public long skipBits(long n) throws IOException {
+        return skipBitsUnlocked(n);
+    }
+}
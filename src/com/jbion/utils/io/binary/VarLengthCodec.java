@@ -0,0 +1,394 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes integers with variable-length codes, so that small values
+ * take less bits than with fixed-width {@link BitOutputStream#writeInt(int)} or
+ * {@link BitOutputStream#writeLong(long)}:
+ * <ul>
+ * <li>Elias gamma and Elias delta codes, for strictly positive values,</li>
+ * <li>Golomb-Rice codes with a parameter {@code k}, for non-negative values,</li>
+ * <li>LEB128 varints, for non-negative values, and zigzag varints for signed
+ * values.</li>
+ * </ul>
+ * The encoders compute the length of the codes with
+ * {@link Long#numberOfLeadingZeros(long)} and write most codes with a single
+ * {@link BitOutputStream#writeBits(long, int)}. The decoders peek at the next bits
+ * to decode most codes at once, and only fall back to bit-by-bit reading near the
+ * end of the stream or for very long codes.
+ */
+public class VarLengthCodec {
+
+    private static final int PEEK_BITS = BitInputStream.MAX_PEEK_BITS;
+    private static final int VARINT_GROUP_BITS = 7;
+    private static final int VARINT_PEEK_BYTES = 7;
+    private static final long VARINT_CONTINUATION_BITS = 0x0080808080808080L;
+
+    /**
+     * Returns the number of significant bits of the specified value.
+     */
+    private static int bitLength(long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Reads and consumes the next 0 bits of the stream, up to the next 1 bit, which
+     * is not consumed.
+     *
+     * @return the number of 0 bits read
+     */
+    private static long readZeros(BitInputStream in) throws IOException {
+        long zeros = 0;
+        while (true) {
+            long bits = in.peekBits(PEEK_BITS, false);
+            if (bits == -1) {
+                break;
+            }
+            if (bits != 0) {
+                int z = Long.numberOfLeadingZeros(bits) - (Long.SIZE - PEEK_BITS);
+                in.skipBits(z);
+                return zeros + z;
+            }
+            in.skipBits(PEEK_BITS);
+            zeros += PEEK_BITS;
+        }
+        // close to the end of the stream
+        while (in.peekBits(1) == 0) {
+            in.skipBits(1);
+            zeros++;
+        }
+        return zeros;
+    }
+
+    /**
+     * Writes the specified number of 0 bits.
+     */
+    private static void writeZeros(BitOutputStream out, long n) throws IOException {
+        while (n > Long.SIZE) {
+            out.writeBits(0, Long.SIZE);
+            n -= Long.SIZE;
+        }
+        out.writeBits(0, (int) n);
+    }
+
+    /**
+     * Writes the specified value as an Elias gamma code: as many 0s as the number
+     * of significant bits of {@code value} minus one, followed by these significant
+     * bits.
+     *
+     * @param out
+     *            the stream to write to
+     * @param value
+     *            the value to write, must be strictly positive
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void writeGamma(BitOutputStream out, long value) throws IOException {
+        if (value <= 0) {
+            throw new IllegalArgumentException("gamma codes only apply to strictly positive values");
+        }
+        int n = bitLength(value);
+        if (2 * n - 1 <= Long.SIZE) {
+            // the leading 0s come for free
+            out.writeBits(value, 2 * n - 1);
+        } else {
+            out.writeBits(0, n - 1);
+            out.writeBits(value, n);
+        }
+    }
+
+    /**
+     * Reads an Elias gamma code written by {@link #writeGamma(BitOutputStream, long)}
+     * .
+     *
+     * @param in
+     *            the stream to read from
+     * @return the read value
+     * @throws IllegalStateException
+     *             if the end of stream is reached before a complete code could be
+     *             read, or if the code is too long for a {@code long}
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static long readGamma(BitInputStream in) throws IOException {
+        long bits = in.peekBits(PEEK_BITS, false);
+        if (bits > 0) {
+            int zeros = Long.numberOfLeadingZeros(bits) - (Long.SIZE - PEEK_BITS);
+            int codeLength = 2 * zeros + 1;
+            if (codeLength <= PEEK_BITS) {
+                // fast path: the whole code has been peeked
+                in.skipBits(codeLength);
+                return bits >>> (PEEK_BITS - codeLength);
+            }
+        }
+        long zeros = readZeros(in);
+        if (zeros >= Long.SIZE - 1) {
+            throw new IllegalStateException("gamma code too long for a long value");
+        }
+        return in.readBits((int) zeros + 1);
+    }
+
+    /**
+     * Writes the specified value as an Elias delta code: the number of significant
+     * bits of {@code value} as a gamma code, followed by these bits except the
+     * leading 1.
+     *
+     * @param out
+     *            the stream to write to
+     * @param value
+     *            the value to write, must be strictly positive
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void writeDelta(BitOutputStream out, long value) throws IOException {
+        if (value <= 0) {
+            throw new IllegalArgumentException("delta codes only apply to strictly positive values");
+        }
+        int n = bitLength(value);
+        int nn = bitLength(n);
+        // gamma(n) then the n-1 low bits of value: at most 11 + 62 bits
+        int codeLength = 2 * nn - 1 + n - 1;
+        if (codeLength <= Long.SIZE) {
+            long lowBits = value & ~(-1L << (n - 1));
+            out.writeBits(((long) n << (n - 1)) | lowBits, codeLength);
+        } else {
+            writeGamma(out, n);
+            out.writeBits(value, n - 1);
+        }
+    }
+
+    /**
+     * Reads an Elias delta code written by {@link #writeDelta(BitOutputStream, long)}
+     * .
+     *
+     * @param in
+     *            the stream to read from
+     * @return the read value
+     * @throws IllegalStateException
+     *             if the end of stream is reached before a complete code could be
+     *             read, or if the code is too long for a {@code long}
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static long readDelta(BitInputStream in) throws IOException {
+        long n = readGamma(in);
+        if (n > Long.SIZE - 1) {
+            throw new IllegalStateException("delta code too long for a long value");
+        }
+        return (1L << (n - 1)) | in.readBits((int) n - 1);
+    }
+
+    /**
+     * Writes the specified value as a Golomb-Rice code of parameter {@code k}: the
+     * quotient {@code value >>> k} in unary (as many 0s followed by a 1), then the
+     * {@code k} low bits of {@code value}.
+     *
+     * @param out
+     *            the stream to write to
+     * @param value
+     *            the value to write, must be non-negative
+     * @param k
+     *            the number of low bits written in binary, between 0 and 63
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void writeRice(BitOutputStream out, long value, int k) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("rice codes only apply to non-negative values");
+        }
+        if (k < 0 || k >= Long.SIZE) {
+            throw new IllegalArgumentException("rice parameter must be between 0 and " + (Long.SIZE - 1));
+        }
+        long quotient = value >>> k;
+        long remainder = value & ~(-1L << k);
+        // not quotient + 1 + k, which overflows for the largest quotients
+        if (quotient <= Long.SIZE - 1 - k) {
+            out.writeBits((1L << k) | remainder, (int) quotient + 1 + k);
+        } else {
+            writeZeros(out, quotient);
+            out.writeBit(1);
+            out.writeBits(remainder, k);
+        }
+    }
+
+    /**
+     * Reads a Golomb-Rice code written by
+     * {@link #writeRice(BitOutputStream, long, int)}.
+     *
+     * @param in
+     *            the stream to read from
+     * @param k
+     *            the parameter that was used to write the code
+     * @return the read value
+     * @throws IllegalStateException
+     *             if the end of stream is reached before a complete code could be
+     *             read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static long readRice(BitInputStream in, int k) throws IOException {
+        if (k < 0 || k >= Long.SIZE) {
+            throw new IllegalArgumentException("rice parameter must be between 0 and " + (Long.SIZE - 1));
+        }
+        long bits = in.peekBits(PEEK_BITS, false);
+        if (bits > 0) {
+            int quotient = Long.numberOfLeadingZeros(bits) - (Long.SIZE - PEEK_BITS);
+            int codeLength = quotient + 1 + k;
+            if (codeLength <= PEEK_BITS) {
+                // fast path: the whole code has been peeked
+                in.skipBits(codeLength);
+                long remainder = (bits >>> (PEEK_BITS - codeLength)) & ~(-1L << k);
+                return ((long) quotient << k) | remainder;
+            }
+        }
+        long quotient = readZeros(in);
+        in.skipBits(1);
+        return (quotient << k) | in.readBits(k);
+    }
+
+    /**
+     * Returns the Rice parameter that minimizes the size of the codes for values of
+     * the specified mean.
+     *
+     * @param mean
+     *            the mean of the values to encode
+     * @return an appropriate parameter for
+     *         {@link #writeRice(BitOutputStream, long, int)}
+     */
+    public static int optimalRiceParameter(double mean) {
+        // smallest k such that 2^k >= mean * ln(2)
+        long target = (long) Math.ceil(mean * Math.log(2));
+        if (target <= 1) {
+            return 0;
+        }
+        return Math.min(Long.SIZE - 1, bitLength(target - 1));
+    }
+
+    /**
+     * Maps signed values to unsigned ones, so that values of small magnitude are
+     * mapped to small values: 0, -1, 1, -2, 2... become 0, 1, 2, 3, 4...
+     *
+     * @param value
+     *            the signed value
+     * @return the zigzag-encoded value
+     */
+    public static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> (Long.SIZE - 1));
+    }
+
+    /**
+     * Reverts {@link #zigzagEncode(long)}.
+     *
+     * @param value
+     *            the zigzag-encoded value
+     * @return the signed value
+     */
+    public static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the specified value as an LEB128 varint: groups of 7 bits, least
+     * significant first, each in a byte whose most significant bit indicates
+     * whether another group follows. Negative values are treated as unsigned, and
+     * take 10 bytes.
+     *
+     * @param out
+     *            the stream to write to
+     * @param value
+     *            the value to write
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void writeVarLong(BitOutputStream out, long value) throws IOException {
+        int nGroups = Math.max(1, (bitLength(value) + VARINT_GROUP_BITS - 1) / VARINT_GROUP_BITS);
+        // up to 8 bytes are assembled in a long and written at once
+        int nBytes = Math.min(nGroups, Long.BYTES);
+        long bytes = 0;
+        for (int i = 0; i < nBytes; i++) {
+            long group = (value >>> (VARINT_GROUP_BITS * i)) & 0x7F;
+            if (i < nGroups - 1) {
+                group |= 0x80;
+            }
+            bytes |= group << (Byte.SIZE * (nBytes - 1 - i));
+        }
+        out.writeBits(bytes, Byte.SIZE * nBytes);
+        for (int i = nBytes; i < nGroups; i++) {
+            long group = (value >>> (VARINT_GROUP_BITS * i)) & 0x7F;
+            out.writeBits(i < nGroups - 1 ? group | 0x80 : group, Byte.SIZE);
+        }
+    }
+
+    /**
+     * Reads an LEB128 varint written by {@link #writeVarLong(BitOutputStream, long)}
+     * .
+     *
+     * @param in
+     *            the stream to read from
+     * @return the read value
+     * @throws IllegalStateException
+     *             if the end of stream is reached before a complete varint could
+     *             be read, or if the varint is too long for a {@code long}
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static long readVarLong(BitInputStream in) throws IOException {
+        long bits = in.peekBits(VARINT_PEEK_BYTES * Byte.SIZE, false);
+        if (bits != -1) {
+            long lastBytes = ~bits & VARINT_CONTINUATION_BITS;
+            if (lastBytes != 0) {
+                // fast path: the terminating byte is among the peeked ones
+                int nBytes = (Long.numberOfLeadingZeros(lastBytes) - Byte.SIZE) / Byte.SIZE + 1;
+                long value = 0;
+                for (int i = 0; i < nBytes; i++) {
+                    long group = (bits >>> (Byte.SIZE * (VARINT_PEEK_BYTES - 1 - i))) & 0x7F;
+                    value |= group << (VARINT_GROUP_BITS * i);
+                }
+                in.skipBits(Byte.SIZE * nBytes);
+                return value;
+            }
+        }
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += VARINT_GROUP_BITS) {
+            long octet = in.readBits(Byte.SIZE);
+            value |= (octet & 0x7F) << shift;
+            if ((octet & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("varint too long for a long value");
+    }
+
+    /**
+     * Writes the specified signed value as a zigzag-encoded LEB128 varint, so that
+     * values of small magnitude take few bytes whatever their sign.
+     *
+     * @param out
+     *            the stream to write to
+     * @param value
+     *            the value to write
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void writeSignedVarLong(BitOutputStream out, long value) throws IOException {
+        writeVarLong(out, zigzagEncode(value));
+    }
+
+    /**
+     * Reads a varint written by
+     * {@link #writeSignedVarLong(BitOutputStream, long)}.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the read value
+     * @throws IllegalStateException
+     *             if the end of stream is reached before a complete varint could
+     *             be read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static long readSignedVarLong(BitInputStream in) throws IOException {
+        return zigzagDecode(readVarLong(in));
+    }
+}
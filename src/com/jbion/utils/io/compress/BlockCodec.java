@@ -0,0 +1,61 @@
+package com.jbion.utils.io.compress;
+
+import java.io.IOException;
+
+/**
+ * Compresses and decompresses independent blocks of bytes. Implementations must
+ * be thread-safe, as a codec may be shared by several streams.
+ *
+ * @see CompressingOutputStream
+ * @see DecompressingInputStream
+ */
+public interface BlockCodec {
+
+    /**
+     * Returns the identifier of this codec, written in the header of compressed
+     * streams to check that they are decompressed with the same codec.
+     *
+     * @return the identifier of this codec
+     */
+    int id();
+
+    /**
+     * Compresses the specified bytes.
+     *
+     * @param src
+     *            the array containing the bytes to compress
+     * @param srcOff
+     *            the offset of the first byte to compress
+     * @param srcLen
+     *            the number of bytes to compress
+     * @param dst
+     *            the array to write the compressed bytes to
+     * @param dstOff
+     *            the offset at which to write the compressed bytes
+     * @param dstCapacity
+     *            the maximum number of compressed bytes to write
+     * @return the number of compressed bytes, or -1 if they do not fit in
+     *         {@code dstCapacity} bytes
+     */
+    int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstCapacity);
+
+    /**
+     * Decompresses the specified bytes.
+     *
+     * @param src
+     *            the array containing the compressed bytes
+     * @param srcOff
+     *            the offset of the first compressed byte
+     * @param srcLen
+     *            the number of compressed bytes
+     * @param dst
+     *            the array to write the decompressed bytes to
+     * @param dstOff
+     *            the offset at which to write the decompressed bytes
+     * @param dstLen
+     *            the exact number of decompressed bytes
+     * @throws IOException
+     *             if the compressed bytes are corrupt
+     */
+    void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException;
+}
@@ -0,0 +1,278 @@
+package com.jbion.utils.io.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An {@link OutputStream} compressing the written bytes in frames with a
+ * {@link BlockCodec}. It is meant to be wrapped by a
+ * {@link com.jbion.utils.io.binary.BitOutputStream}:
+ *
+ * <pre>
+ * new BitOutputStream(new CompressingOutputStream(out, new LzCodec()))
+ * </pre>
+ * <p>
+ * The frames are compressed and written to the underlying stream by a background
+ * thread, so that the compression overlaps with the production of the bytes. The
+ * frame buffers come from a fixed pool: when all of them are waiting to be
+ * compressed, the writing thread blocks until one is recycled, which bounds the
+ * memory used. An error in the background thread is thrown by the next call to
+ * {@link #write(int)}, {@link #flush()} or {@link #close()}.
+ * </p>
+ * <p>
+ * The stream starts with {@link #MAGIC}, the codec identifier and the frame size
+ * as {@code int}s. Each frame is then written as its original length and its
+ * stored length as {@code int}s, followed by the stored bytes. Frames that do not
+ * shrink when compressed are stored as is, with equal lengths.
+ * </p>
+ * <p>
+ * This stream is meant to be used by a single thread.
+ * </p>
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    /**
+     * The value written at the beginning of the stream, to recognize the format.
+     */
+    static final int MAGIC = 0x434D5046; // "CMPF"
+
+    /**
+     * The default size of the frames, in bytes.
+     */
+    public static final int DEFAULT_FRAME_SIZE = 64 * 1024;
+
+    /**
+     * The default number of frame buffers.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private static final ThreadFactory WRITER_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "compressing-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final OutputStream out;
+    private final BlockCodec codec;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(WRITER_THREADS);
+    private final BlockingQueue<byte[]> freeBuffers;
+
+    /**
+     * The buffer of the compressed frames, only used by the writer thread.
+     */
+    private final byte[] compressed;
+    private final byte[] header = new byte[2 * Integer.BYTES];
+
+    private byte[] frame;
+    private int frameLength = 0;
+    private Future<?> lastFrame = null;
+    private volatile IOException failure = null;
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@link CompressingOutputStream} with the default frame size and
+     * number of buffers.
+     *
+     * @param out
+     *            the stream to write the compressed frames to
+     * @param codec
+     *            the codec compressing the frames
+     * @throws IOException
+     *             if the header cannot be written
+     */
+    public CompressingOutputStream(OutputStream out, BlockCodec codec) throws IOException {
+        this(out, codec, DEFAULT_FRAME_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Creates a new {@link CompressingOutputStream}.
+     *
+     * @param out
+     *            the stream to write the compressed frames to
+     * @param codec
+     *            the codec compressing the frames
+     * @param frameSize
+     *            the number of bytes compressed at once
+     * @param bufferCount
+     *            the number of frame buffers, at least 2 for the compression to
+     *            overlap with the writes
+     * @throws IOException
+     *             if the header cannot be written
+     */
+    public CompressingOutputStream(OutputStream out, BlockCodec codec, int frameSize, int bufferCount)
+            throws IOException {
+        if (frameSize <= 0) {
+            throw new IllegalArgumentException("frame size must be positive");
+        }
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("at least one buffer is needed");
+        }
+        this.out = out;
+        this.codec = codec;
+        this.compressed = new byte[frameSize];
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 1; i < bufferCount; i++) {
+            freeBuffers.add(new byte[frameSize]);
+        }
+        this.frame = new byte[frameSize];
+        byte[] streamHeader = new byte[3 * Integer.BYTES];
+        putInt(streamHeader, 0, MAGIC);
+        putInt(streamHeader, Integer.BYTES, codec.id());
+        putInt(streamHeader, 2 * Integer.BYTES, frameSize);
+        out.write(streamHeader);
+    }
+
+    private void writeInts(int first, int second) throws IOException {
+        putInt(header, 0, first);
+        putInt(header, Integer.BYTES, second);
+        out.write(header, 0, header.length);
+    }
+
+    private static void putInt(byte[] dst, int off, int value) {
+        dst[off] = (byte) (value >>> 24);
+        dst[off + 1] = (byte) (value >>> 16);
+        dst[off + 2] = (byte) (value >>> 8);
+        dst[off + 3] = (byte) value;
+    }
+
+    private void checkFailure() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("failed to write a compressed frame", e);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkFailure();
+        if (frameLength == frame.length) {
+            submitFrame();
+        }
+        frame[frameLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        checkFailure();
+        while (len > 0) {
+            if (frameLength == frame.length) {
+                submitFrame();
+            }
+            int n = Math.min(len, frame.length - frameLength);
+            System.arraycopy(b, off, frame, frameLength, n);
+            frameLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Hands the current frame to the writer thread, and takes a free buffer for the
+     * next one, waiting if none is available.
+     */
+    private void submitFrame() throws IOException {
+        checkFailure();
+        final byte[] full = frame;
+        final int length = frameLength;
+        lastFrame = writer.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (failure == null) {
+                        writeFrame(full, length);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e);
+                } finally {
+                    freeBuffers.add(full);
+                }
+            }
+        });
+        try {
+            frame = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a free buffer");
+        }
+        frameLength = 0;
+    }
+
+    /**
+     * Compresses and writes a frame, in the writer thread.
+     */
+    private void writeFrame(byte[] bytes, int length) throws IOException {
+        int compressedLength = codec.compress(bytes, 0, length, compressed, 0, length - 1);
+        if (compressedLength < 0) {
+            writeInts(length, length);
+            out.write(bytes, 0, length);
+        } else {
+            writeInts(length, compressedLength);
+            out.write(compressed, 0, compressedLength);
+        }
+    }
+
+    private void awaitWriter() throws IOException {
+        if (lastFrame == null) {
+            return;
+        }
+        try {
+            lastFrame.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the compressed frames");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Ends the current frame, waits for all the frames to be compressed and
+     * written, and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (frameLength > 0) {
+            submitFrame();
+        }
+        awaitWriter();
+        checkFailure();
+        out.flush();
+    }
+
+    /**
+     * Writes the remaining frames, stops the writer thread and closes the
+     * underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            writer.shutdown();
+            out.close();
+        }
+    }
+}
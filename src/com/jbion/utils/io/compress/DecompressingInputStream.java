@@ -0,0 +1,152 @@
+package com.jbion.utils.io.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} decompressing the frames written by a
+ * {@link CompressingOutputStream}. It is meant to be wrapped by a
+ * {@link com.jbion.utils.io.binary.BitInputStream}:
+ *
+ * <pre>
+ * new BitInputStream(new DecompressingInputStream(in, new LzCodec()))
+ * </pre>
+ * <p>
+ * The frame buffers are allocated once, with the frame size read from the
+ * header, and reused for all the frames.
+ * </p>
+ */
+public class DecompressingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final BlockCodec codec;
+    private final byte[] header = new byte[3 * Integer.BYTES];
+    private final byte[] frame;
+    private final byte[] compressed;
+    private int frameLength = 0;
+    private int framePos = 0;
+
+    /**
+     * Creates a new {@link DecompressingInputStream}, reading the header of the
+     * stream.
+     *
+     * @param in
+     *            the stream to read the compressed frames from
+     * @param codec
+     *            the codec the frames were compressed with
+     * @throws IOException
+     *             if the header cannot be read, or does not match the codec
+     */
+    public DecompressingInputStream(InputStream in, BlockCodec codec) throws IOException {
+        this.in = in;
+        this.codec = codec;
+        if (!readFully(header, header.length)) {
+            throw new EOFException("missing stream header");
+        }
+        if (getInt(header, 0) != CompressingOutputStream.MAGIC) {
+            throw new IOException("not a compressed frame stream");
+        }
+        int codecId = getInt(header, Integer.BYTES);
+        if (codecId != codec.id()) {
+            throw new IOException("stream compressed with codec " + codecId + ", not " + codec.id());
+        }
+        int frameSize = getInt(header, 2 * Integer.BYTES);
+        if (frameSize <= 0) {
+            throw new IOException("invalid frame size " + frameSize);
+        }
+        this.frame = new byte[frameSize];
+        this.compressed = new byte[frameSize];
+    }
+
+    private static int getInt(byte[] src, int off) {
+        return (src[off] & 0xFF) << 24 | (src[off + 1] & 0xFF) << 16 | (src[off + 2] & 0xFF) << 8
+                | (src[off + 3] & 0xFF);
+    }
+
+    /**
+     * Reads exactly {@code len} bytes, or none if the end of stream is reached
+     * first.
+     *
+     * @return {@code false} if the end of stream was reached before any byte
+     */
+    private boolean readFully(byte[] dst, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int read = in.read(dst, n, len - n);
+            if (read < 0) {
+                if (n == 0) {
+                    return false;
+                }
+                throw new EOFException("truncated compressed frame");
+            }
+            n += read;
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decompresses the next frame.
+     *
+     * @return {@code false} if the end of stream is reached
+     */
+    private boolean loadFrame() throws IOException {
+        framePos = 0;
+        frameLength = 0;
+        if (!readFully(header, 2 * Integer.BYTES)) {
+            return false;
+        }
+        int length = getInt(header, 0);
+        int storedLength = getInt(header, Integer.BYTES);
+        if (length <= 0 || length > frame.length || storedLength <= 0 || storedLength > length) {
+            throw new IOException("invalid frame lengths " + length + " and " + storedLength);
+        }
+        if (storedLength == length) {
+            if (!readFully(frame, length)) {
+                throw new EOFException("truncated compressed frame");
+            }
+        } else {
+            if (!readFully(compressed, storedLength)) {
+                throw new EOFException("truncated compressed frame");
+            }
+            codec.decompress(compressed, 0, storedLength, frame, 0, length);
+        }
+        frameLength = length;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (framePos == frameLength && !loadFrame()) {
+            return -1;
+        }
+        return frame[framePos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (framePos == frameLength && !loadFrame()) {
+            return -1;
+        }
+        int n = Math.min(len, frameLength - framePos);
+        System.arraycopy(frame, framePos, b, off, n);
+        framePos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return frameLength - framePos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
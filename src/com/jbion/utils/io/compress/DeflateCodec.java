@@ -0,0 +1,111 @@
+package com.jbion.utils.io.compress;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link BlockCodec} using the DEFLATE algorithm of {@link Deflater} and
+ * {@link Inflater}, without any wrapper around the raw DEFLATE data.
+ * <p>
+ * Each thread reuses its own {@link Deflater} and {@link Inflater}, reset between
+ * blocks, rather than allocating their native state for every block.
+ * </p>
+ */
+public class DeflateCodec implements BlockCodec {
+
+    /**
+     * The identifier of this codec.
+     */
+    public static final int ID = 1;
+
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final int level;
+
+    /**
+     * The deflaters of this codec, for its compression level.
+     */
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(level, true);
+        }
+    };
+
+    /**
+     * Creates a new {@link DeflateCodec} with the default compression level.
+     */
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a new {@link DeflateCodec} with the specified compression level.
+     *
+     * @param level
+     *            the compression level, from {@link Deflater#BEST_SPEED} to
+     *            {@link Deflater#BEST_COMPRESSION}, or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public DeflateCodec(int level) {
+        if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+                && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level " + level);
+        }
+        this.level = level;
+    }
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstCapacity) {
+        Deflater deflater = deflaters.get();
+        try {
+            deflater.setInput(src, srcOff, srcLen);
+            deflater.finish();
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == dstCapacity) {
+                    return -1;
+                }
+                n += deflater.deflate(dst, dstOff + n, dstCapacity - n);
+            }
+            return n;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(src, srcOff, srcLen);
+            int n = 0;
+            while (n < dstLen && !inflater.finished()) {
+                int inflated = inflater.inflate(dst, dstOff + n, dstLen - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != dstLen) {
+                throw new IOException("corrupt deflate block: " + n + " bytes instead of " + dstLen);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt deflate block", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+}
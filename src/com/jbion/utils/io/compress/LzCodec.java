@@ -0,0 +1,196 @@
+package com.jbion.utils.io.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast pure-Java {@link BlockCodec} of the LZ77 family, using the sequence
+ * format of LZ4 blocks: each sequence is a token byte holding the number of
+ * literals and the match length in its 2 nibbles (extended with bytes of 255
+ * when they reach 15), the literals, and the match as a 2-byte little-endian
+ * offset. The last sequence only contains literals.
+ * <p>
+ * Matches are found greedily with a hash table of the 4-byte sequences, which
+ * trades compression ratio for speed: it is meant to compress bit-packed data on
+ * the fly, not to replace {@link DeflateCodec} for archives. Each thread reuses
+ * its own hash table.
+ * </p>
+ */
+public class LzCodec implements BlockCodec {
+
+    /**
+     * The identifier of this codec.
+     */
+    public static final int ID = 2;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 14;
+    /**
+     * The last bytes of a block are always literals.
+     */
+    private static final int LAST_LITERALS = 5;
+    /**
+     * No match starts in the last bytes of a block.
+     */
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int RUN_MASK = 15;
+
+    /**
+     * The hash tables of the compressing threads, cleared before each block.
+     */
+    private static final ThreadLocal<int[]> HASH_TABLES = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1 << HASH_BITS];
+        }
+    };
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (Integer.SIZE - HASH_BITS);
+    }
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstCapacity) {
+        final int end = srcOff + srcLen;
+        final int opLimit = dstOff + dstCapacity;
+        int op = dstOff;
+        int anchor = srcOff;
+        if (srcLen > MATCH_FIND_LIMIT) {
+            final int[] table = HASH_TABLES.get();
+            Arrays.fill(table, -1);
+            final int matchFindLimit = end - MATCH_FIND_LIMIT;
+            final int matchLimit = end - LAST_LITERALS;
+            int ip = srcOff;
+            while (ip < matchFindLimit) {
+                int sequence = readInt(src, ip);
+                int h = hash(sequence);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+                int literals = ip - anchor;
+                // token, literals with their length bytes, offset, match length bytes
+                int worstCase = 1 + literals + literals / 255 + 1 + 2 + (matchLength - MIN_MATCH) / 255 + 1;
+                if (op + worstCase > opLimit) {
+                    return -1;
+                }
+                op = writeSequence(src, anchor, literals, dst, op, ip - ref, matchLength - MIN_MATCH);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        int literals = end - anchor;
+        if (op + 1 + literals + literals / 255 + 1 > opLimit) {
+            return -1;
+        }
+        int token = Math.min(literals, RUN_MASK) << 4;
+        dst[op++] = (byte) token;
+        if (literals >= RUN_MASK) {
+            op = writeLength(literals - RUN_MASK, dst, op);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        op += literals;
+        return op - dstOff;
+    }
+
+    private static int writeSequence(byte[] src, int anchor, int literals, byte[] dst, int op, int offset,
+            int matchLength) {
+        int token = Math.min(literals, RUN_MASK) << 4 | Math.min(matchLength, RUN_MASK);
+        dst[op++] = (byte) token;
+        if (literals >= RUN_MASK) {
+            op = writeLength(literals - RUN_MASK, dst, op);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        op += literals;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (matchLength >= RUN_MASK) {
+            op = writeLength(matchLength - RUN_MASK, dst, op);
+        }
+        return op;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+        final int end = srcOff + srcLen;
+        final int opEnd = dstOff + dstLen;
+        int ip = srcOff;
+        int op = dstOff;
+        try {
+            while (ip < end) {
+                int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (ip + literals > end || op + literals > opEnd) {
+                    throw new IOException("corrupt LZ block: literals out of bounds");
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == end) {
+                    break;
+                }
+                int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < dstOff || op + matchLength > opEnd) {
+                    throw new IOException("corrupt LZ block: match out of bounds");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // overlapping match, repeating the last bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("corrupt LZ block: truncated", e);
+        }
+        if (op != opEnd) {
+            throw new IOException("corrupt LZ block: " + (op - dstOff) + " bytes instead of " + dstLen);
+        }
+    }
+}
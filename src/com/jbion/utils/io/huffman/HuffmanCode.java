@@ -0,0 +1,311 @@
+package com.jbion.utils.io.huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.jbion.utils.io.binary.BitInputStream;
+import com.jbion.utils.io.binary.BitOutputStream;
+
+/**
+ * A canonical Huffman code over the symbols {@code 0} to {@code n-1}. Only the
+ * length of the code of each symbol needs to be known to rebuild the codes: they
+ * are assigned in increasing order of length, then of symbol.
+ * <p>
+ * A {@link HuffmanCode} is immutable. It can be built from the frequencies of the
+ * symbols using {@link #fromFrequencies(long[])}, and transmitted along with the
+ * encoded data using {@link #writeTo(BitOutputStream)} and
+ * {@link #readFrom(BitInputStream)}. Symbols are then written with a
+ * {@link HuffmanEncoder} and read with a {@link HuffmanDecoder}.
+ * </p>
+ */
+public class HuffmanCode {
+
+    /**
+     * The maximum length of a code, so that codes fit in an {@code int}.
+     */
+    public static final int MAX_CODE_LENGTH = 32;
+
+    /**
+     * The number of bits used to serialize each code length.
+     */
+    private static final int LENGTH_BITS = 6;
+
+    private final int[] lengths;
+    private final int[] codes;
+    private final int maxLength;
+
+    /**
+     * Creates a new canonical {@link HuffmanCode} with the specified code lengths.
+     *
+     * @param codeLengths
+     *            the length of the code of each symbol, or 0 for symbols that
+     *            never appear
+     * @throws IllegalArgumentException
+     *             if the lengths do not describe a valid prefix code
+     */
+    public HuffmanCode(int[] codeLengths) {
+        this.lengths = codeLengths.clone();
+        this.codes = new int[lengths.length];
+        int max = 0;
+        long kraftSum = 0;
+        for (int len : lengths) {
+            if (len < 0 || len > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("invalid code length " + len);
+            }
+            if (len > 0) {
+                max = Math.max(max, len);
+                kraftSum += 1L << (MAX_CODE_LENGTH - len);
+            }
+        }
+        if (kraftSum > 1L << MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("the code lengths do not describe a prefix code");
+        }
+        this.maxLength = max;
+
+        // canonical assignment: by length, then by symbol
+        int[] countPerLength = new int[max + 1];
+        for (int len : lengths) {
+            countPerLength[len]++;
+        }
+        countPerLength[0] = 0;
+        long[] nextCode = new long[max + 1];
+        long code = 0;
+        for (int len = 1; len <= max; len++) {
+            code = (code + countPerLength[len - 1]) << 1;
+            nextCode[len] = code;
+        }
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            int len = lengths[symbol];
+            if (len > 0) {
+                codes[symbol] = (int) nextCode[len]++;
+            }
+        }
+    }
+
+    /**
+     * Builds an optimal {@link HuffmanCode} for the specified frequencies, with
+     * codes of at most {@link #MAX_CODE_LENGTH} bits.
+     *
+     * @param frequencies
+     *            the frequency of each symbol. Symbols with a frequency of 0 get
+     *            no code.
+     * @return the new {@link HuffmanCode}
+     */
+    public static HuffmanCode fromFrequencies(long[] frequencies) {
+        return fromFrequencies(frequencies, MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Builds a {@link HuffmanCode} for the specified frequencies, with codes of at
+     * most {@code maxCodeLength} bits. The code is optimal if no code needs to be
+     * longer than the limit.
+     *
+     * @param frequencies
+     *            the frequency of each symbol. Symbols with a frequency of 0 get
+     *            no code.
+     * @param maxCodeLength
+     *            the maximum length of a code, at most {@link #MAX_CODE_LENGTH}
+     * @return the new {@link HuffmanCode}
+     */
+    public static HuffmanCode fromFrequencies(final long[] frequencies, int maxCodeLength) {
+        if (maxCodeLength < 1 || maxCodeLength > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("max code length must be between 1 and " + MAX_CODE_LENGTH);
+        }
+        int nUsed = 0;
+        for (long f : frequencies) {
+            if (f < 0) {
+                throw new IllegalArgumentException("negative frequency " + f);
+            }
+            if (f > 0) {
+                nUsed++;
+            }
+        }
+        if (nUsed > 1L << maxCodeLength) {
+            throw new IllegalArgumentException("too many symbols for codes of " + maxCodeLength + " bits");
+        }
+        Integer[] used = new Integer[nUsed];
+        for (int symbol = 0, i = 0; symbol < frequencies.length; symbol++) {
+            if (frequencies[symbol] > 0) {
+                used[i++] = symbol;
+            }
+        }
+        Arrays.sort(used, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer s1, Integer s2) {
+                return Long.compare(frequencies[s1], frequencies[s2]);
+            }
+        });
+        int[] lengths = new int[frequencies.length];
+        if (nUsed == 1) {
+            lengths[used[0]] = 1;
+        } else if (nUsed > 1) {
+            int[] depths = computeDepths(frequencies, used);
+            for (int i = 0; i < nUsed; i++) {
+                lengths[used[i]] = depths[i];
+            }
+            limitLengths(lengths, used, maxCodeLength);
+        }
+        return new HuffmanCode(lengths);
+    }
+
+    /**
+     * Computes the depth of each leaf of the Huffman tree, using the two-queue
+     * method on the leaves sorted by increasing frequency.
+     */
+    private static int[] computeDepths(long[] frequencies, Integer[] sortedSymbols) {
+        final int nLeaves = sortedSymbols.length;
+        final int nNodes = 2 * nLeaves - 1;
+        long[] weights = new long[nNodes];
+        int[] parents = new int[nNodes];
+        for (int i = 0; i < nLeaves; i++) {
+            weights[i] = frequencies[sortedSymbols[i]];
+        }
+        int nextLeaf = 0;
+        int nextInternal = nLeaves;
+        for (int node = nLeaves; node < nNodes; node++) {
+            for (int child = 0; child < 2; child++) {
+                int smallest;
+                if (nextLeaf < nLeaves && (nextInternal >= node || weights[nextLeaf] <= weights[nextInternal])) {
+                    smallest = nextLeaf++;
+                } else {
+                    smallest = nextInternal++;
+                }
+                weights[node] += weights[smallest];
+                parents[smallest] = node;
+            }
+        }
+        int[] depths = new int[nNodes];
+        for (int node = nNodes - 2; node >= 0; node--) {
+            depths[node] = depths[parents[node]] + 1;
+        }
+        return Arrays.copyOf(depths, nLeaves);
+    }
+
+    /**
+     * Shortens the codes that are too long, and lengthens the least frequent
+     * shorter ones until the lengths describe a prefix code again.
+     */
+    private static void limitLengths(int[] lengths, Integer[] sortedSymbols, int maxCodeLength) {
+        long kraftSum = 0;
+        for (Integer symbol : sortedSymbols) {
+            lengths[symbol] = Math.min(lengths[symbol], maxCodeLength);
+            kraftSum += 1L << (maxCodeLength - lengths[symbol]);
+        }
+        final long kraftMax = 1L << maxCodeLength;
+        while (kraftSum > kraftMax) {
+            // lengthen the least frequent symbol among the longest codes that can be
+            boolean found = false;
+            for (int len = maxCodeLength - 1; len > 0 && !found; len--) {
+                for (Integer symbol : sortedSymbols) {
+                    if (lengths[symbol] == len) {
+                        lengths[symbol]++;
+                        kraftSum -= 1L << (maxCodeLength - len - 1);
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            assert found : "no code can be lengthened";
+        }
+    }
+
+    /**
+     * Reads a {@link HuffmanCode} written by {@link #writeTo(BitOutputStream)}.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the read {@link HuffmanCode}
+     * @throws IllegalStateException
+     *             if the end of stream is reached before the whole code could be
+     *             read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static HuffmanCode readFrom(BitInputStream in) throws IOException {
+        int nSymbols = in.readInt();
+        if (nSymbols < 0) {
+            throw new IllegalStateException("invalid number of symbols " + nSymbols);
+        }
+        int[] lengths = new int[nSymbols];
+        for (int i = 0; i < nSymbols; i++) {
+            lengths[i] = (int) in.readBits(LENGTH_BITS);
+        }
+        return new HuffmanCode(lengths);
+    }
+
+    /**
+     * Writes this code to the specified stream, so that it can be read back with
+     * {@link #readFrom(BitInputStream)}. Only the code lengths are written.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeTo(BitOutputStream out) throws IOException {
+        out.writeInt(lengths.length);
+        for (int len : lengths) {
+            out.writeBits(len, LENGTH_BITS);
+        }
+    }
+
+    /**
+     * Returns the number of symbols of this code, including the ones that have no
+     * code.
+     *
+     * @return the size of the alphabet of this code
+     */
+    public int getNbSymbols() {
+        return lengths.length;
+    }
+
+    /**
+     * Returns the length of the code of the specified symbol.
+     *
+     * @param symbol
+     *            the symbol
+     * @return the length of the code of {@code symbol}, or 0 if it has no code
+     */
+    public int getLength(int symbol) {
+        return lengths[symbol];
+    }
+
+    /**
+     * Returns the code of the specified symbol. Only the {@link #getLength(int)}
+     * least significant bits are relevant.
+     *
+     * @param symbol
+     *            the symbol
+     * @return the code of {@code symbol}
+     */
+    public int getCode(int symbol) {
+        return codes[symbol];
+    }
+
+    /**
+     * Returns the length of the longest code.
+     *
+     * @return the length of the longest code, or 0 if no symbol has a code
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns a copy of the code lengths of all symbols.
+     *
+     * @return the length of the code of each symbol
+     */
+    public int[] getLengths() {
+        return lengths.clone();
+    }
+
+    int[] lengths() {
+        return lengths;
+    }
+
+    int[] codes() {
+        return codes;
+    }
+}
@@ -0,0 +1,178 @@
+package com.jbion.utils.io.huffman;
+
+import java.io.IOException;
+
+import com.jbion.utils.io.binary.BitInputStream;
+
+/**
+ * Reads symbols encoded with a {@link HuffmanCode} from a {@link BitInputStream}.
+ * <p>
+ * The codes that are not longer than the lookup table are decoded with a single
+ * {@link BitInputStream#peekBits(int, boolean)} and a table lookup. Longer codes,
+ * and the last codes of the stream, are decoded bit by bit using the canonical
+ * code structure.
+ * </p>
+ */
+public class HuffmanDecoder {
+
+    /**
+     * The default number of bits looked up at once.
+     */
+    public static final int DEFAULT_TABLE_BITS = 10;
+
+    /**
+     * The number of bits used to store the code length in a table entry.
+     */
+    private static final int ENTRY_LENGTH_BITS = 8;
+    private static final int ENTRY_LENGTH_MASK = (1 << ENTRY_LENGTH_BITS) - 1;
+
+    private final int tableBits;
+    /**
+     * For each value of the next {@link #tableBits} bits, the decoded symbol
+     * shifted left by {@link #ENTRY_LENGTH_BITS} plus the length of its code, or 0
+     * if the code is longer than {@link #tableBits}.
+     */
+    private final int[] table;
+
+    private final int maxLength;
+    /** The symbols sorted by code length, then by value. */
+    private final int[] sortedSymbols;
+    /** The first code of each length. */
+    private final int[] firstCode;
+    /** The index in {@link #sortedSymbols} of the first symbol of each length. */
+    private final int[] firstIndex;
+    /** The number of codes of each length. */
+    private final int[] countPerLength;
+
+    /**
+     * Creates a new {@link HuffmanDecoder} for the specified code, with a lookup
+     * table of {@link #DEFAULT_TABLE_BITS} bits.
+     *
+     * @param code
+     *            the code to decode
+     */
+    public HuffmanDecoder(HuffmanCode code) {
+        this(code, DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * Creates a new {@link HuffmanDecoder} for the specified code.
+     *
+     * @param code
+     *            the code to decode
+     * @param tableBits
+     *            the number of bits looked up at once. The table takes
+     *            {@code 2^tableBits} ints.
+     */
+    public HuffmanDecoder(HuffmanCode code, int tableBits) {
+        if (tableBits < 1 || tableBits > BitInputStream.MAX_PEEK_BITS || tableBits > 24) {
+            throw new IllegalArgumentException("invalid number of table bits " + tableBits);
+        }
+        final int[] lengths = code.lengths();
+        final int[] codes = code.codes();
+        this.maxLength = code.getMaxLength();
+        this.tableBits = Math.max(1, Math.min(tableBits, maxLength));
+
+        this.countPerLength = new int[maxLength + 1];
+        for (int len : lengths) {
+            countPerLength[len]++;
+        }
+        countPerLength[0] = 0;
+        this.firstCode = new int[maxLength + 1];
+        this.firstIndex = new int[maxLength + 1];
+        long nextCode = 0;
+        int index = 0;
+        for (int len = 1; len <= maxLength; len++) {
+            nextCode = (nextCode + countPerLength[len - 1]) << 1;
+            firstCode[len] = (int) nextCode;
+            firstIndex[len] = index;
+            index += countPerLength[len];
+        }
+        this.sortedSymbols = new int[index];
+        int[] nextIndex = firstIndex.clone();
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            if (lengths[symbol] > 0) {
+                sortedSymbols[nextIndex[lengths[symbol]]++] = symbol;
+            }
+        }
+
+        this.table = new int[1 << this.tableBits];
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            int len = lengths[symbol];
+            if (len > 0 && len <= this.tableBits) {
+                int shift = this.tableBits - len;
+                int start = codes[symbol] << shift;
+                int entry = (symbol << ENTRY_LENGTH_BITS) | len;
+                for (int i = 0; i < 1 << shift; i++) {
+                    table[start + i] = entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the next symbol from the specified stream.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the decoded symbol
+     * @throws IllegalStateException
+     *             if the end of stream is reached before a complete code could be
+     *             read, or if the read bits are not a code
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int read(BitInputStream in) throws IOException {
+        long bits = in.peekBits(tableBits, false);
+        if (bits >= 0) {
+            int entry = table[(int) bits];
+            if (entry != 0) {
+                in.skipBits(entry & ENTRY_LENGTH_MASK);
+                return entry >>> ENTRY_LENGTH_BITS;
+            }
+        }
+        return readSlowly(in);
+    }
+
+    /**
+     * Reads the next symbols from the specified stream.
+     *
+     * @param in
+     *            the stream to read from
+     * @param symbols
+     *            the array to store the decoded symbols into
+     * @param off
+     *            the index of the first symbol to store
+     * @param len
+     *            the number of symbols to read
+     * @throws IllegalStateException
+     *             if the end of stream is reached before all the symbols could be
+     *             read, or if the read bits are not a code
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void read(BitInputStream in, int[] symbols, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            symbols[i] = read(in);
+        }
+    }
+
+    /**
+     * Decodes the next symbol bit by bit, using the canonical code structure.
+     */
+    private int readSlowly(BitInputStream in) throws IOException {
+        int code = 0;
+        for (int len = 1; len <= maxLength; len++) {
+            int bit = in.readBit();
+            if (bit == -1) {
+                throw new IllegalStateException("premature end of input, cannot read a complete code");
+            }
+            code = (code << 1) | bit;
+            int offset = code - firstCode[len];
+            if (offset >= 0 && offset < countPerLength[len]) {
+                return sortedSymbols[firstIndex[len] + offset];
+            }
+        }
+        throw new IllegalStateException("invalid code in input");
+    }
+}
@@ -0,0 +1,69 @@
+package com.jbion.utils.io.huffman;
+
+import java.io.IOException;
+
+import com.jbion.utils.io.binary.BitOutputStream;
+
+/**
+ * Writes symbols to a {@link BitOutputStream} using a {@link HuffmanCode}. Each
+ * symbol is written with a single {@link BitOutputStream#writeBits(long, int)}
+ * call.
+ */
+public class HuffmanEncoder {
+
+    private final int[] codes;
+    private final int[] lengths;
+
+    /**
+     * Creates a new {@link HuffmanEncoder} for the specified code.
+     *
+     * @param code
+     *            the code to use
+     */
+    public HuffmanEncoder(HuffmanCode code) {
+        this.codes = code.codes();
+        this.lengths = code.lengths();
+    }
+
+    /**
+     * Writes the code of the specified symbol.
+     *
+     * @param out
+     *            the stream to write to
+     * @param symbol
+     *            the symbol to write
+     * @throws IllegalArgumentException
+     *             if the symbol has no code
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void write(BitOutputStream out, int symbol) throws IOException {
+        int length = lengths[symbol];
+        if (length == 0) {
+            throw new IllegalArgumentException("symbol " + symbol + " has no code");
+        }
+        out.writeBits(codes[symbol], length);
+    }
+
+    /**
+     * Writes the codes of the specified symbols.
+     *
+     * @param out
+     *            the stream to write to
+     * @param symbols
+     *            the array containing the symbols to write
+     * @param off
+     *            the index of the first symbol to write
+     * @param len
+     *            the number of symbols to write
+     * @throws IllegalArgumentException
+     *             if one of the symbols has no code
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void write(BitOutputStream out, int[] symbols, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(out, symbols[i]);
+        }
+    }
+}
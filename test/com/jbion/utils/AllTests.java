@@ -4,11 +4,38 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.jbion.utils.io.TestCharsetDetector;
+import com.jbion.utils.io.TestLines;
+import com.jbion.utils.io.TestReusableDecoder;
+import com.jbion.utils.io.TestSplittableLineReader;
+import com.jbion.utils.io.TestStreams;
+import com.jbion.utils.io.TestUnicodeReader;
+import com.jbion.utils.io.binary.TestAsyncBitOutputStream;
 import com.jbion.utils.io.binary.TestBitInputStream;
 import com.jbion.utils.io.binary.TestBitOutputStream;
+import com.jbion.utils.io.binary.TestByteBufferBitIO;
+import com.jbion.utils.io.binary.TestChecksummedBlockStreams;
+import com.jbion.utils.io.binary.TestCompressedBitmap;
+import com.jbion.utils.io.binary.TestLsbBitStreams;
+import com.jbion.utils.io.binary.TestMappedBitReader;
+import com.jbion.utils.io.binary.TestPackedArrays;
+import com.jbion.utils.io.binary.TestParallelBitCodec;
+import com.jbion.utils.io.binary.TestPrefetchingBitInputStream;
+import com.jbion.utils.io.binary.TestRankSelectBitVector;
+import com.jbion.utils.io.binary.TestUnsynchronizedBitInputStream;
+import com.jbion.utils.io.binary.TestVarLengthCodec;
+import com.jbion.utils.io.compress.TestCompression;
+import com.jbion.utils.io.huffman.TestHuffman;
 
 @RunWith(Suite.class)
-@SuiteClasses({ TestBitInputStream.class, TestBitOutputStream.class })
+@SuiteClasses({ TestBitInputStream.class, TestBitOutputStream.class, TestUnsynchronizedBitInputStream.class,
+        TestMappedBitReader.class, TestVarLengthCodec.class, TestPackedArrays.class,
+        TestByteBufferBitIO.class, TestLsbBitStreams.class, TestHuffman.class, TestParallelBitCodec.class,
+        TestRankSelectBitVector.class, TestCompressedBitmap.class,
+        TestChecksummedBlockStreams.class, TestCompression.class,
+        TestAsyncBitOutputStream.class, TestPrefetchingBitInputStream.class,
+        TestStreams.class, TestLines.class, TestSplittableLineReader.class,
+        TestUnicodeReader.class, TestCharsetDetector.class, TestReusableDecoder.class })
 public class AllTests {
 
 }
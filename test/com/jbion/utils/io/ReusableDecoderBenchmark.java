@@ -0,0 +1,79 @@
+package com.jbion.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+/**
+ * Measures the time and the heap allocation per decoded payload of 2 KB of
+ * windows-1252 text, with a new {@link InputStreamReader} per payload and with a
+ * {@link ReusableDecoder}. The allocated bytes per payload of the
+ * {@link ReusableDecoder} should be 0 once the JIT has warmed up.
+ */
+public class ReusableDecoderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 200_000;
+
+    private static final Charset CHARSET = Charset.forName("windows-1252");
+
+    private interface Decoder {
+        void decode(byte[] payload, StringBuilder dst) throws IOException;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, byte[] payload, Decoder decoder) throws IOException {
+        StringBuilder sb = new StringBuilder(payload.length);
+        for (int w = 0; w < WARMUP_ITERATIONS; w++) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                sb.setLength(0);
+                decoder.decode(payload, sb);
+            }
+        }
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sb.setLength(0);
+            decoder.decode(payload, sb);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocBefore;
+        System.out.printf("%-18s %8.1f ns/payload %10.1f bytes allocated/payload%n", name,
+                (double) elapsed / ITERATIONS, (double) allocated / ITERATIONS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2048) {
+            text.append("caf\u00e9 cr\u00e8me \u20ac ").append(text.length()).append(' ');
+        }
+        final byte[] payload = text.toString().getBytes(CHARSET);
+
+        run("InputStreamReader", payload, new Decoder() {
+            private final char[] buffer = new char[8192];
+
+            @Override
+            public void decode(byte[] payload, StringBuilder dst) throws IOException {
+                try (Reader reader = new InputStreamReader(new ByteArrayInputStream(payload), CHARSET)) {
+                    int n;
+                    while ((n = reader.read(buffer, 0, buffer.length)) != -1) {
+                        dst.append(buffer, 0, n);
+                    }
+                }
+            }
+        });
+        run("ReusableDecoder", payload, new Decoder() {
+            @Override
+            public void decode(byte[] payload, StringBuilder dst) {
+                ReusableDecoder.forCurrentThread(CHARSET).decode(payload, dst);
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.jbion.utils.io;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestCharsetDetector {
+
+    private static final String ASCII = "The quick brown fox jumps over the lazy dog, 0123456789.";
+    private static final String ACCENTED = "Le c\u0153ur d\u00e9\u00e7u mais l'\u00e2me plut\u00f4t na\u00efve, "
+            + "Lou\u00ffs r\u00eava d'\u00eatre \u00e0 No\u00ebl \u20ac \ud83d\ude00";
+
+    private static Charset detect(byte[] bytes, boolean complete) {
+        return CharsetDetector.detect(bytes, 0, bytes.length, complete);
+    }
+
+    @Test
+    public void testAscii() {
+        assertEquals(StandardCharsets.US_ASCII, detect(ASCII.getBytes(StandardCharsets.US_ASCII), true));
+        assertEquals(StandardCharsets.US_ASCII, detect(new byte[0], true));
+    }
+
+    @Test
+    public void testUtf8() {
+        byte[] bytes = (ASCII + ACCENTED).getBytes(StandardCharsets.UTF_8);
+        assertEquals(StandardCharsets.UTF_8, detect(bytes, true));
+        // the emoji cut in the middle
+        byte[] truncated = new byte[bytes.length - 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertEquals(StandardCharsets.UTF_8, detect(truncated, false));
+        assertNull(detect(truncated, true));
+    }
+
+    @Test
+    public void testInvalidUtf8() {
+        assertNull(detect(ACCENTED.getBytes(StandardCharsets.ISO_8859_1), true));
+        // overlong encoding of '/'
+        assertNull(detect(new byte[] { 'a', (byte) 0xC0, (byte) 0xAF }, true));
+        // encoded surrogate
+        assertNull(detect(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }, true));
+        // above U+10FFFF
+        assertNull(detect(new byte[] { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }, true));
+        // missing continuation byte
+        assertNull(detect(new byte[] { (byte) 0xE2, (byte) 0x82, 'a' }, false));
+    }
+
+    @Test
+    public void testUtf16() {
+        String text = ASCII + ACCENTED;
+        assertEquals(StandardCharsets.UTF_16LE, detect(text.getBytes(StandardCharsets.UTF_16LE), true));
+        assertEquals(StandardCharsets.UTF_16BE, detect(text.getBytes(StandardCharsets.UTF_16BE), true));
+    }
+
+    @Test
+    public void testSkipAscii() {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        assertEquals(100, CharsetDetector.skipAscii(bytes, 0, 100));
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) 0x80;
+            assertEquals(i, CharsetDetector.skipAscii(bytes, 0, 100));
+            assertEquals(i < 50 ? 100 : i, CharsetDetector.skipAscii(bytes, 50, 100));
+            bytes[i] = 'a';
+        }
+    }
+}
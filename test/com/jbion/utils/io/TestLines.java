@@ -0,0 +1,124 @@
+package com.jbion.utils.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLines {
+
+    private static final String TEXT = "first\r\n\n\u00e9t\u00e9 \u20ac \ud83d\ude00\n"
+            + "a much longer line than the tiny windows of the tests\r\nlast, without line feed";
+
+    private static final List<String> EXPECTED = Arrays.asList("first", "", "\u00e9t\u00e9 \u20ac \ud83d\ude00",
+            "a much longer line than the tiny windows of the tests", "last, without line feed");
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("lines", ".txt");
+        Files.write(file, TEXT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    private static Consumer<CharSequence> collector(final List<String> lines) {
+        return new Consumer<CharSequence>() {
+            @Override
+            public void accept(CharSequence line) {
+                lines.add(line.toString());
+            }
+        };
+    }
+
+    @Test
+    public void testInputStream() throws IOException {
+        List<String> lines = new ArrayList<>();
+        Lines.forEach(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                collector(lines));
+        assertEquals(EXPECTED, lines);
+        try (Stream<String> stream = Lines.stream(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8)) {
+            assertEquals(EXPECTED, stream.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        List<String> lines = new ArrayList<>();
+        Lines.forEach(file, StandardCharsets.UTF_8, collector(lines));
+        assertEquals(EXPECTED, lines);
+        try (Stream<CharSequence> stream = Lines.mapped(file, StandardCharsets.UTF_8)) {
+            assertEquals(EXPECTED.get(3), stream.skip(3).findFirst().get().toString());
+        }
+    }
+
+    @Test
+    public void testSmallWindows() throws IOException {
+        for (int windowSize = 8; windowSize < 20; windowSize++) {
+            List<String> lines = new ArrayList<>();
+            try (MappedLineReader reader = new MappedLineReader(file, StandardCharsets.UTF_8, windowSize)) {
+                CharSequence line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line.toString());
+                }
+                assertEquals(Files.size(file), reader.getPosition());
+            }
+            assertEquals(EXPECTED, lines);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Files.write(file, new byte[0]);
+        try (MappedLineReader reader = new MappedLineReader(file, StandardCharsets.UTF_8)) {
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedCharset() throws IOException {
+        new MappedLineReader(file, StandardCharsets.UTF_16).close();
+    }
+
+    @Test
+    public void testIndexOfLineFeed() {
+        Random random = new Random(21);
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            // mostly bytes close to '\n', to exercise the borrows of the search
+            bytes[i] = random.nextInt(4) == 0 ? (byte) random.nextInt(256) : (byte) (9 + random.nextInt(3));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int from = 0; from < bytes.length; from++) {
+            int expected = -1;
+            for (int i = from; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals(expected, MappedLineReader.indexOfLineFeed(buffer, from, bytes.length));
+        }
+    }
+}
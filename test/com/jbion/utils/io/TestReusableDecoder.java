@@ -0,0 +1,99 @@
+package com.jbion.utils.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestReusableDecoder {
+
+    private static final String SHORT = "h\u00e9llo \u20ac \ud83d\ude00 w\u00f6rld";
+    private static final String LONG;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        // the multibyte characters cross the boundaries of the buffers
+        for (int i = 0; i < 3000; i++) {
+            sb.append(i).append(" \ud83d\ude00\u20ac\u00e9 ");
+        }
+        LONG = sb.toString();
+    }
+
+    /**
+     * Returns at most 3 bytes per read.
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+
+    @Test
+    public void testBytes() {
+        Charset[] charsets = { StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, Charset.forName("UTF-32") };
+        for (Charset charset : charsets) {
+            ReusableDecoder decoder = new ReusableDecoder(charset);
+            for (String text : new String[] { SHORT, LONG, "", SHORT }) {
+                StringBuilder sb = new StringBuilder("prefix:");
+                int n = decoder.decode(text.getBytes(charset), sb);
+                assertEquals(text.length(), n);
+                assertEquals("prefix:" + text, sb.toString());
+            }
+            byte[] bytes = ("xx" + SHORT + "yy").getBytes(StandardCharsets.UTF_8);
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                StringBuilder sb = new StringBuilder();
+                decoder.decode(bytes, 2, bytes.length - 4, sb);
+                assertEquals(SHORT, sb.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testInputStream() throws IOException {
+        ReusableDecoder decoder = ReusableDecoder.forCurrentThread(StandardCharsets.UTF_8);
+        for (String text : new String[] { SHORT, LONG, SHORT }) {
+            StringBuilder sb = new StringBuilder();
+            decoder.decode(trickle(text.getBytes(StandardCharsets.UTF_8)), sb);
+            assertEquals(text, sb.toString());
+            sb.setLength(0);
+            decoder.decode(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), sb);
+            assertEquals(text, sb.toString());
+        }
+    }
+
+    @Test
+    public void testMalformedReplaced() {
+        // truncated euro sign
+        byte[] bytes = { 'a', (byte) 0xE2, (byte) 0x82 };
+        StringBuilder sb = new StringBuilder();
+        new ReusableDecoder(StandardCharsets.UTF_8).decode(bytes, sb);
+        assertEquals("a\ufffd", sb.toString());
+    }
+
+    @Test
+    public void testPerThread() throws InterruptedException {
+        final ReusableDecoder decoder = ReusableDecoder.forCurrentThread(StandardCharsets.UTF_16BE);
+        assertSame(decoder, ReusableDecoder.forCurrentThread(StandardCharsets.UTF_16BE));
+        assertNotSame(decoder, ReusableDecoder.forCurrentThread(StandardCharsets.UTF_16LE));
+        final ReusableDecoder[] other = new ReusableDecoder[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other[0] = ReusableDecoder.forCurrentThread(StandardCharsets.UTF_16BE);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(other[0]);
+        assertNotSame(decoder, other[0]);
+    }
+}
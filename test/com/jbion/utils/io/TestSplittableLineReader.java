@@ -0,0 +1,108 @@
+package com.jbion.utils.io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSplittableLineReader {
+
+    private static final int N_LINES = 20000;
+
+    private Path file;
+    private List<String> expected;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(22);
+        expected = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < N_LINES; i++) {
+            StringBuilder line = new StringBuilder().append(i);
+            int length = random.nextInt(80);
+            for (int j = 0; j < length; j++) {
+                line.append(random.nextBoolean() ? 'x' : '\u00e9');
+            }
+            expected.add(line.toString());
+            text.append(line).append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        file = Files.createTempFile("lines", ".txt");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    private static Function<CharSequence, String> toStringFunction() {
+        return new Function<CharSequence, String>() {
+            @Override
+            public String apply(CharSequence line) {
+                return line.toString();
+            }
+        };
+    }
+
+    @Test
+    public void testParallelStream() throws IOException {
+        try (Stream<CharSequence> lines = new SplittableLineReader(file, StandardCharsets.UTF_8, 64, 256).lines()) {
+            assertTrue(lines.isParallel());
+            assertEquals(expected, lines.map(toStringFunction()).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSplitsAtLineBoundaries() throws IOException {
+        try (SplittableLineReader reader = new SplittableLineReader(file, StandardCharsets.UTF_8, 1000, 4096)) {
+            List<Spliterator<CharSequence>> ranges = new ArrayList<>();
+            split(reader.spliterator(), ranges);
+            assertTrue(ranges.size() > 100);
+            final List<String> lines = new ArrayList<>();
+            for (Spliterator<CharSequence> range : ranges) {
+                range.forEachRemaining(new Consumer<CharSequence>() {
+                    @Override
+                    public void accept(CharSequence line) {
+                        lines.add(line.toString());
+                    }
+                });
+            }
+            assertEquals(expected, lines);
+        }
+    }
+
+    private static void split(Spliterator<CharSequence> spliterator, List<Spliterator<CharSequence>> ranges) {
+        Spliterator<CharSequence> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            ranges.add(spliterator);
+            return;
+        }
+        split(prefix, ranges);
+        split(spliterator, ranges);
+    }
+
+    @Test
+    public void testSingleLine() throws IOException {
+        Files.write(file, "no line feed".getBytes(StandardCharsets.UTF_8));
+        try (SplittableLineReader reader = new SplittableLineReader(file, StandardCharsets.UTF_8, 2, 8)) {
+            Spliterator<CharSequence> spliterator = reader.spliterator();
+            assertNull(spliterator.trySplit());
+            assertEquals(12, spliterator.estimateSize());
+            assertEquals("no line feed", reader.lines().findFirst().get().toString());
+        }
+    }
+}
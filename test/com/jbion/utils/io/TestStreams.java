@@ -0,0 +1,164 @@
+package com.jbion.utils.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestStreams {
+
+    private static final String TEXT;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("ligne ").append(i).append(" : \u00e9t\u00e9, \u00e7a, \u20ac, \ud83d\ude00\n");
+        }
+        TEXT = sb.toString();
+    }
+
+    private static InputStream stream(String text, Charset charset) {
+        return new ByteArrayInputStream(text.getBytes(charset));
+    }
+
+    @Test
+    public void testCharsets() throws IOException {
+        Charset[] charsets = { StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.UTF_16LE };
+        for (Charset charset : charsets) {
+            int length = TEXT.getBytes(charset).length;
+            assertEquals(TEXT, Streams.toString(stream(TEXT, charset), charset));
+            // exact, too small and too large hints
+            assertEquals(TEXT, Streams.toString(stream(TEXT, charset), charset, length));
+            assertEquals(TEXT, Streams.toString(stream(TEXT, charset), charset, 10));
+            assertEquals(TEXT, Streams.toString(stream(TEXT, charset), charset, 2 * length));
+            assertEquals(TEXT, Streams.toString(stream(TEXT, charset), charset.name()));
+        }
+        String latin = "d\u00e9j\u00e0 vu";
+        assertEquals(latin, Streams.toString(stream(latin, StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testBogusExpectedLength() throws IOException {
+        // must not try to allocate 2GB up front
+        assertEquals(TEXT, Streams.toString(stream(TEXT, StandardCharsets.UTF_8), StandardCharsets.UTF_8,
+                Integer.MAX_VALUE));
+        assertEquals(TEXT, Streams.toString(stream(TEXT, StandardCharsets.UTF_16), StandardCharsets.UTF_16,
+                Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testLargeExpectedLengthGrowsOnce() throws IOException {
+        final byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(4).nextBytes(data);
+        // like a network stream, it does not tell how many bytes are available
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+        ByteBuffer bytes = Streams.readAllBytes(in, data.length);
+        // grown straight from the 1 MiB cap to the hint, not doubled twice
+        assertEquals(data.length, bytes.capacity());
+        assertArrayEquals(data, Arrays.copyOf(bytes.array(), bytes.limit()));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertEquals("", Streams.toString(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8));
+        assertEquals("", Streams.toString(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8, 0));
+        assertEquals("", Streams.toString(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_16, 100));
+    }
+
+    @Test
+    public void testCopyStreams() throws IOException {
+        byte[] data = TEXT.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransferStats stats = Streams.copy(new ByteArrayInputStream(data), out);
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(data.length, stats.getBytes());
+        assertFalse(stats.isZeroCopy());
+        assertTrue(stats.getBytesPerSecond() > 0);
+    }
+
+    @Test
+    public void testCopyFiles() throws IOException {
+        byte[] data = TEXT.getBytes(StandardCharsets.UTF_8);
+        Path source = Files.createTempFile("streams", ".src");
+        Path target = Files.createTempFile("streams", ".dst");
+        try {
+            Files.write(source, data);
+            TransferStats stats = Streams.copy(source, target);
+            assertArrayEquals(data, Files.readAllBytes(target));
+            assertEquals(data.length, stats.getBytes());
+            assertTrue(stats.isZeroCopy());
+
+            // file streams, after part of the source has been read
+            try (FileInputStream in = new FileInputStream(source.toFile());
+                    FileOutputStream out = new FileOutputStream(target.toFile())) {
+                assertEquals(100, in.skip(100));
+                stats = Streams.copy(in, out);
+                assertEquals(-1, in.read());
+            }
+            assertEquals(data.length - 100, stats.getBytes());
+            assertTrue(stats.isZeroCopy());
+            assertArrayEquals(Arrays.copyOfRange(data, 100, data.length), Files.readAllBytes(target));
+        } finally {
+            Files.delete(source);
+            Files.delete(target);
+        }
+    }
+
+    @Test
+    public void testTransferChannels() throws IOException {
+        byte[] data = TEXT.getBytes(StandardCharsets.UTF_8);
+        Path file = Files.createTempFile("streams", ".dst");
+        try {
+            // stream to file
+            try (FileChannel dst = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                TransferStats stats = Streams.transfer(Channels.newChannel(new ByteArrayInputStream(data)), dst);
+                assertEquals(data.length, stats.getBytes());
+                assertEquals(data.length, dst.position());
+                assertFalse(stats.isZeroCopy());
+            }
+            assertArrayEquals(data, Files.readAllBytes(file));
+
+            // file to stream
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (FileChannel src = FileChannel.open(file, StandardOpenOption.READ)) {
+                TransferStats stats = Streams.transfer(src, Channels.newChannel(out));
+                assertEquals(data.length, stats.getBytes());
+                // the JDK copies through a buffer towards other channels than files and sockets
+                assertFalse(stats.isZeroCopy());
+            }
+            assertArrayEquals(data, out.toByteArray());
+
+            // stream to stream
+            out = new ByteArrayOutputStream();
+            TransferStats stats = Streams.transfer(Channels.newChannel(new ByteArrayInputStream(data)),
+                    Channels.newChannel(out));
+            assertEquals(data.length, stats.getBytes());
+            assertFalse(stats.isZeroCopy());
+            assertArrayEquals(data, out.toByteArray());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.jbion.utils.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+public class TestUnicodeReader {
+
+    private static final String TEXT = "h\u00e9llo \u20ac \ud83d\ude00 w\u00f6rld\n";
+
+    private static byte[] withBom(String bom, Charset charset, String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < bom.length(); i += 2) {
+            bytes.write(Integer.parseInt(bom.substring(i, i + 2), 16));
+        }
+        bytes.write(text.getBytes(charset));
+        return bytes.toByteArray();
+    }
+
+    private static String readAll(Reader reader, int bufferSize) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[bufferSize];
+        int n;
+        while ((n = reader.read(buffer, 0, buffer.length)) != -1) {
+            sb.append(buffer, 0, n);
+        }
+        reader.close();
+        return sb.toString();
+    }
+
+    @Test
+    public void testBoms() throws IOException {
+        String[] boms = { "EFBBBF", "FEFF", "FFFE", "0000FEFF", "FFFE0000" };
+        Charset[] charsets = { StandardCharsets.UTF_8, StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE,
+                Charset.forName("UTF-32BE"), Charset.forName("UTF-32LE") };
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            longText.append(TEXT);
+        }
+        for (int i = 0; i < boms.length; i++) {
+            for (String text : new String[] { TEXT, longText.toString() }) {
+                byte[] bytes = withBom(boms[i], charsets[i], text);
+                UnicodeReader reader = new UnicodeReader(new ByteArrayInputStream(bytes), StandardCharsets.ISO_8859_1);
+                assertEquals(charsets[i], reader.getCharset());
+                assertEquals(text, readAll(reader, 1000));
+                reader = new UnicodeReader(Channels.newChannel(new ByteArrayInputStream(bytes)));
+                assertEquals(text, readAll(reader, 1));
+            }
+        }
+    }
+
+    @Test
+    public void testNoBom() throws IOException {
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_16BE);
+        UnicodeReader reader = new UnicodeReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_16BE);
+        assertEquals(StandardCharsets.UTF_16BE.name(), reader.getEncoding());
+        assertEquals(TEXT, readAll(reader, 3));
+        // shorter than a BOM
+        reader = new UnicodeReader(new ByteArrayInputStream(new byte[] { 'a' }), StandardCharsets.UTF_8);
+        assertEquals("a", readAll(reader, 10));
+        reader = new UnicodeReader(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8);
+        assertEquals(-1, reader.read());
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        Path file = Files.createTempFile("unicode", ".txt");
+        try {
+            Files.write(file, withBom("EFBBBF", StandardCharsets.UTF_8, TEXT));
+            assertEquals(TEXT, readAll(new UnicodeReader(file), 100));
+            assertEquals(TEXT, readAll(new UnicodeReader(file.toString(), "ISO-8859-1"), 100));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownEncoding() throws IOException {
+        Path file = Files.createTempFile("unicode", ".txt");
+        try {
+            new UnicodeReader(file.toString(), "no-such-encoding").close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDetection() throws IOException {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            longText.append(TEXT);
+        }
+        Charset[] charsets = { StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE };
+        for (Charset charset : charsets) {
+            for (String text : new String[] { TEXT, longText.toString() }) {
+                byte[] bytes = text.getBytes(charset);
+                UnicodeReader reader = new UnicodeReader(new ByteArrayInputStream(bytes), StandardCharsets.ISO_8859_1,
+                        true);
+                assertEquals(charset, reader.getCharset());
+                assertEquals(text, readAll(reader, 1000));
+            }
+        }
+        // without detection
+        UnicodeReader reader = new UnicodeReader(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_16LE)),
+                StandardCharsets.ISO_8859_1);
+        assertEquals(StandardCharsets.ISO_8859_1, reader.getCharset());
+        reader.close();
+    }
+
+    @Test
+    public void testAsciiPrefix() throws IOException {
+        // an ASCII prefix longer than the buffer, then UTF-8
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("ascii ").append(i).append('\n');
+        }
+        text.append(TEXT);
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        UnicodeReader reader = new UnicodeReader(new ByteArrayInputStream(bytes), null, true);
+        assertEquals(StandardCharsets.UTF_8, reader.getCharset());
+        assertEquals(text.toString(), readAll(reader, 777));
+    }
+
+    @Test
+    public void testLatin1() throws IOException {
+        String text = "d\u00e9j\u00e0 vu, \u00ff\u00a0\u0080";
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        UnicodeReader reader = new UnicodeReader(new ByteArrayInputStream(bytes), StandardCharsets.ISO_8859_1, true);
+        assertEquals(StandardCharsets.ISO_8859_1, reader.getCharset());
+        assertEquals(text, readAll(reader, 5));
+    }
+}
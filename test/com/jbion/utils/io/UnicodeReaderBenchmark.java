@@ -0,0 +1,83 @@
+package com.jbion.utils.io;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures the character throughput of {@link UnicodeReader} on a UTF-8 file with
+ * a BOM, compared to the stack of readers it used to build: a
+ * {@link PushbackInputStream} in an {@link InputStreamReader} in a
+ * {@link BufferedReader}.
+ */
+public class UnicodeReaderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int N_LINES = 1_000_000;
+
+    private interface ReaderFactory {
+        Reader open(Path file) throws IOException;
+    }
+
+    private static long readAll(Reader reader) throws IOException {
+        char[] buffer = new char[8192];
+        long total = 0;
+        try (Reader r = reader) {
+            int n;
+            while ((n = r.read(buffer, 0, buffer.length)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    private static void run(String name, Path file, ReaderFactory factory) throws IOException {
+        for (int w = 0; w < WARMUP_ITERATIONS; w++) {
+            readAll(factory.open(file));
+        }
+        long chars = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            chars += readAll(factory.open(file));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-14s %8.1f Mchars/s%n", name, chars * 1e3 / elapsed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("unicode-benchmark", ".txt");
+        try {
+            StringBuilder text = new StringBuilder("\ufeff");
+            for (int i = 0; i < N_LINES; i++) {
+                text.append("line ").append(i).append(": caf\u00e9, na\u00efve, \u20ac\n");
+            }
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+            run("legacy stack", file, new ReaderFactory() {
+                @Override
+                public Reader open(Path file) throws IOException {
+                    PushbackInputStream pbis = new PushbackInputStream(new FileInputStream(file.toFile()), 4);
+                    byte[] bom = new byte[4];
+                    int n = pbis.read(bom, 0, bom.length);
+                    pbis.unread(bom, 3, n - 3);
+                    return new BufferedReader(new InputStreamReader(pbis, StandardCharsets.UTF_8));
+                }
+            });
+            run("UnicodeReader", file, new ReaderFactory() {
+                @Override
+                public Reader open(Path file) throws IOException {
+                    return new UnicodeReader(file);
+                }
+            });
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
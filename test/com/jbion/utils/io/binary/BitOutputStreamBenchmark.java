@@ -0,0 +1,79 @@
+package com.jbion.utils.io.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the time and the heap allocation per call of
+ * {@link BitOutputStream#writeInt(int)} and {@link BitOutputStream#writeLong(long)}
+ * . The allocated bytes per call should be 0 once the JIT has warmed up.
+ */
+public class BitOutputStreamBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10_000_000;
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+            // discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // discard
+        }
+    };
+
+    private interface Writer {
+        void write(BitOutputStream out, int i) throws IOException;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, Writer writer) throws IOException {
+        try (BitOutputStream out = new BitOutputStream(NULL_OUTPUT)) {
+            // an odd bit offset, so that every value is unaligned
+            out.writeBits(0b101, 3);
+            for (int w = 0; w < WARMUP_ITERATIONS; w++) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    writer.write(out, i);
+                }
+            }
+            long allocBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                writer.write(out, i);
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocBefore;
+            System.out.printf("%-10s %6.2f ns/op %8.3f bytes allocated/op%n", name, (double) elapsed / ITERATIONS,
+                    (double) allocated / ITERATIONS);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        run("writeInt", new Writer() {
+            @Override
+            public void write(BitOutputStream out, int i) throws IOException {
+                out.writeInt(i * 0x9E3779B9);
+            }
+        });
+        run("writeLong", new Writer() {
+            @Override
+            public void write(BitOutputStream out, int i) throws IOException {
+                out.writeLong(i * 0x9E3779B97F4A7C15L);
+            }
+        });
+        run("writeBits", new Writer() {
+            @Override
+            public void write(BitOutputStream out, int i) throws IOException {
+                out.writeBits(i, 13);
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAsyncBitOutputStream {
+
+    private static final int N_VALUES = 20000;
+
+    private long[] values;
+    private int[] widths;
+    private byte[] expected;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(8);
+        values = new long[N_VALUES];
+        widths = new int[N_VALUES];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            for (int i = 0; i < N_VALUES; i++) {
+                widths[i] = 1 + random.nextInt(Long.SIZE);
+                values[i] = random.nextLong();
+                out.writeBits(values[i], widths[i]);
+                if (i % 5000 == 0) {
+                    out.flush();
+                    out.write(0xA5);
+                }
+            }
+        }
+        expected = bytes.toByteArray();
+    }
+
+    private void writeAll(BitOutputStream out) throws IOException {
+        for (int i = 0; i < N_VALUES; i++) {
+            out.writeBits(values[i], widths[i]);
+            if (i % 5000 == 0) {
+                out.flush();
+                out.write(0xA5);
+            }
+        }
+    }
+
+    @Test
+    public void testSameBytesAsSynchronous() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream slowSink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                bytes.write(b, off, len);
+            }
+        };
+        try (AsyncBitOutputStream out = new AsyncBitOutputStream(slowSink, 100, 3)) {
+            writeAll(out);
+        }
+        assertArrayEquals(expected, bytes.toByteArray());
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        OutputStream failingSink = new OutputStream() {
+            private int count = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++count > 1000) {
+                    throw new IOException("disk full");
+                }
+            }
+        };
+        AsyncBitOutputStream out = new AsyncBitOutputStream(failingSink, 256, 2);
+        try {
+            writeAll(out);
+            out.close();
+            fail("the write failure was not reported");
+        } catch (IOException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertEquals("disk full", cause.getMessage());
+        }
+    }
+
+    @Test
+    public void testWriteAfterClose() throws IOException {
+        AsyncBitOutputStream out = new AsyncBitOutputStream(new ByteArrayOutputStream(), 16, 2);
+        out.writeBits(5, 3);
+        out.close();
+        out.close();
+        try {
+            out.write(new byte[64]);
+            fail("a write after close was accepted");
+        } catch (IOException e) {
+            assertEquals("stream closed", e.getMessage());
+        }
+        try {
+            out.write(1);
+            fail("a write after close was accepted");
+        } catch (IOException e) {
+            assertEquals("stream closed", e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCloseFailureNotSwallowed() throws IOException {
+        OutputStream failingSink = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        BitOutputStream out = new BitOutputStream(failingSink);
+        out.writeBits(5, 3);
+        out.close();
+    }
+}
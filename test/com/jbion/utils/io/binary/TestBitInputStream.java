@@ -177,4 +177,45 @@ public class TestBitInputStream {
         assertEquals(null, bisLong.readInteger());
         assertEquals(null, bisLong.readLongOrNull());
     }
+
+    @Test
+    public void testPeekSkipMark() throws IOException {
+        // 0x3A EF FF 01 23 45 67 89 AB
+        assertEquals(0x3, bisShort.peekBits(4));
+        assertEquals(0x3A, bisShort.peekBits(8));
+        assertEquals(0x1, bisShort.readBits(3));
+        assertEquals(0x6BBF, bisShort.peekBits(15));
+        assertEquals(5, bisShort.skipBits(5));
+        bisShort.markBits(16);
+        assertEquals(0xEF, bisShort.readBits(8));
+        assertEquals(0x7, bisShort.readBits(3));
+        bisShort.resetBits();
+        assertEquals(0xEFF, bisShort.readBits(12));
+        bisShort.mark(16);
+        assertEquals(0xF01, bisShort.readBits(12));
+        bisShort.reset();
+        assertEquals(0xF, bisShort.readBits(4));
+        assertEquals(0x0123456789L, bisShort.peekBits(40));
+        assertEquals(36, bisShort.skipBits(36));
+        assertEquals(0x9AB, bisShort.peekBits(12));
+        assertEquals(-1, bisShort.peekBits(13, false));
+        try {
+            bisShort.peekBits(13);
+            fail();
+        } catch (IllegalStateException e) {
+            // OK
+        }
+        assertEquals(0x9AB, bisShort.readBits(12));
+        assertEquals(0, bisShort.skipBits(1));
+    }
+
+    @Test
+    public void testSkipWholeBytes() throws IOException {
+        assertEquals(0x0, bisLong.readBits(1));
+        assertEquals(8 * 9 + 2, bisLong.skipBits(8 * 9 + 2));
+        assertEquals(0x1, bisLong.readBits(5)); // end of 0x01
+        assertEquals(0x23, bisLong.readBits(8));
+        assertEquals(8 * 10, bisLong.skipBits(1000));
+        assertEquals(-1, bisLong.readBit());
+    }
 }
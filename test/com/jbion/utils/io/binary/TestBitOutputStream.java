@@ -1,13 +1,19 @@
 package com.jbion.utils.io.binary;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -82,4 +88,99 @@ public class TestBitOutputStream {
         }
         new File(TEMP_FILE_OUT).delete();
     }
+
+    @Test
+    public void testUnalignedWritesSmallBuffer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes, 3)) {
+            out.writeBits(0x7, 3);
+            out.writeLong(0xF8091A2B3C4D5E6FL);
+            out.writeBits(0x1, 5);
+            out.writeBits(0x1, 2); // padded to 0x40 on close
+        }
+        assertArrayEquals(new byte[] { (byte) 0xFF, 0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD,
+                (byte) 0xE1, 0x40 }, bytes.toByteArray());
+    }
+
+    @Test
+    public void testBulkRoundTrip() throws IOException {
+        Random random = new Random(8);
+        long[] longs = new long[1000];
+        int[] ints = new int[1000];
+        int[] fullInts = new int[1000];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = random.nextLong();
+            ints[i] = random.nextInt(1 << 13);
+            fullInts[i] = random.nextInt();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes, 7)) {
+            out.writeBits(longs, 0, longs.length, Long.SIZE);
+            out.writeBits(ints, 0, ints.length, 13);
+            out.writeBits(longs, 10, 100, 16);
+            out.writeBits(fullInts, 0, 100, Integer.SIZE);
+            out.writeBits(fullInts, 5, 200, 24);
+        }
+        for (int size : new int[] { 5, 8192 }) {
+            BitInputStream[] streams = { new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()), size),
+                    new UnsynchronizedBitInputStream(new ByteArrayInputStream(bytes.toByteArray()), size) };
+            for (BitInputStream in : streams) {
+                long[] readLongs = new long[longs.length];
+                in.readBits(Long.SIZE, readLongs, 0, readLongs.length);
+                assertArrayEquals(longs, readLongs);
+                int[] readInts = new int[ints.length];
+                in.readBits(13, readInts, 0, readInts.length);
+                assertArrayEquals(ints, readInts);
+                long[] readShorts = new long[102];
+                in.readBits(16, readShorts, 1, 100);
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(longs[10 + i] & 0xFFFF, readShorts[1 + i]);
+                }
+                in.readBits(Integer.SIZE, readInts, 0, 100);
+                assertArrayEquals(Arrays.copyOf(fullInts, 100), Arrays.copyOf(readInts, 100));
+                in.readBits(24, readInts, 1, 200);
+                for (int i = 0; i < 200; i++) {
+                    assertEquals(fullInts[5 + i] & 0xFFFFFF, readInts[1 + i]);
+                }
+                in.close();
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryStrings() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(10);
+        for (int i = 0; i < 150; i++) {
+            sb.append(random.nextBoolean() ? '1' : '0');
+        }
+        String bits = sb.toString();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            out.writeString("");
+            out.writeString(bits);
+            try {
+                out.writeString("0120");
+                fail();
+            } catch (IllegalArgumentException e) {
+                // OK
+            }
+            try {
+                // nothing is written, not even the valid chunks before the error
+                out.writeString(bits.substring(0, 100) + "2" + bits);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // OK
+            }
+        }
+        assertEquals((bits.length() + 7) / 8, bytes.size());
+        try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            char[] chars = new char[80];
+            assertEquals(80, in.readBitsAsChars(80, chars, 0));
+            assertEquals(bits.substring(0, 80), new String(chars));
+            StringBuilder dst = new StringBuilder("x");
+            in.readBitsAsString(70, dst);
+            assertEquals("x" + bits.substring(80), dst.toString());
+        }
+    }
 }
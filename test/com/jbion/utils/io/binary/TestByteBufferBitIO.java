@@ -0,0 +1,118 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestByteBufferBitIO {
+
+    private static final int N_VALUES = 3000;
+
+    private final long[] values = new long[N_VALUES];
+    private final int[] widths = new int[N_VALUES];
+
+    public TestByteBufferBitIO() {
+        Random random = new Random(9);
+        for (int i = 0; i < N_VALUES; i++) {
+            widths[i] = random.nextInt(Long.SIZE + 1);
+            values[i] = widths[i] == 0 ? 0 : random.nextLong() >>> (Long.SIZE - widths[i]);
+        }
+    }
+
+    private byte[] writeWithStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            for (int i = 0; i < N_VALUES; i++) {
+                out.writeBits(values[i], widths[i]);
+            }
+            out.writeString("101");
+        }
+        return bytes.toByteArray();
+    }
+
+    private void checkRead(ByteBufferBitReader reader) throws IOException {
+        for (int i = 0; i < N_VALUES; i++) {
+            if (widths[i] <= BitInputStream.MAX_PEEK_BITS) {
+                assertEquals(values[i], reader.peekBits(widths[i]));
+            }
+            assertEquals(values[i], reader.readBits(widths[i]));
+        }
+        assertEquals("101", reader.readBitsAsString(3));
+        int padding = (int) reader.skipBits(100);
+        assertTrue(padding < 8);
+        assertEquals(-1, reader.readBit());
+        assertNull(reader.readByteOrNull());
+    }
+
+    @Test
+    public void testWriterMatchesStream() throws IOException {
+        byte[] expected = writeWithStream();
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length).order(ByteOrder.LITTLE_ENDIAN);
+        try (ByteBufferBitWriter writer = new ByteBufferBitWriter(buffer)) {
+            for (int i = 0; i < N_VALUES; i++) {
+                writer.writeBits(values[i], widths[i]);
+            }
+            writer.writeString("101");
+        }
+        assertArrayEquals(expected, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ByteBufferBitWriter writer = new ByteBufferBitWriter(Channels.newChannel(bytes), 8)) {
+            for (int i = 0; i < N_VALUES; i++) {
+                writer.writeBits(values[i], widths[i]);
+            }
+            writer.writeString("101");
+        }
+        assertArrayEquals(expected, bytes.toByteArray());
+    }
+
+    @Test
+    public void testInvalidStringNotWritten() throws IOException {
+        StringBuilder bits = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            bits.append('1');
+        }
+        bits.append('x');
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        try (ByteBufferBitWriter writer = new ByteBufferBitWriter(buffer)) {
+            writer.writeString("101");
+            try {
+                writer.writeString(bits.toString());
+                fail();
+            } catch (IllegalArgumentException e) {
+                // OK
+            }
+        }
+        assertEquals(1, buffer.position());
+        assertEquals((byte) 0xA0, buffer.get(0));
+    }
+
+    @Test
+    public void testReadHeapAndDirectBuffers() throws IOException {
+        byte[] bytes = writeWithStream();
+        checkRead(new ByteBufferBitReader(ByteBuffer.wrap(bytes)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(bytes).flip();
+        checkRead(new ByteBufferBitReader(direct));
+    }
+
+    @Test
+    public void testReadChannel() throws IOException {
+        byte[] bytes = writeWithStream();
+        for (int size : new int[] { 8, 13, 4096 }) {
+            try (ByteBufferBitReader reader = new ByteBufferBitReader(Channels.newChannel(new ByteArrayInputStream(
+                    bytes)), size)) {
+                checkRead(reader);
+            }
+        }
+    }
+}
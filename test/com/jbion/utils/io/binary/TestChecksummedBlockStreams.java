@@ -0,0 +1,132 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestChecksummedBlockStreams {
+
+    private static final int N_RECORDS = 10;
+    private static final int VALUES_PER_RECORD = 30;
+    private static final int WIDTH = 11;
+    /**
+     * Bytes per record: 30 values of 11 bits, padded to a byte boundary.
+     */
+    private static final int RECORD_BYTES = (VALUES_PER_RECORD * WIDTH + 7) / 8;
+
+    private static final int STREAM_HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 8;
+
+    private byte[] data;
+
+    private static long value(int record, int i) {
+        return (record * 31 + i * 7) & ((1 << WIDTH) - 1);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(new ChecksummedBlockOutputStream(bytes, 1024))) {
+            for (int r = 0; r < N_RECORDS; r++) {
+                for (int i = 0; i < VALUES_PER_RECORD; i++) {
+                    out.writeBits(value(r, i), WIDTH);
+                }
+                // one block per record
+                out.flush();
+            }
+        }
+        data = bytes.toByteArray();
+        assertEquals(STREAM_HEADER_SIZE + N_RECORDS * (BLOCK_HEADER_SIZE + RECORD_BYTES), data.length);
+    }
+
+    private static int blockOffset(int block) {
+        return STREAM_HEADER_SIZE + block * (BLOCK_HEADER_SIZE + RECORD_BYTES);
+    }
+
+    private static void assertRecord(int record, BitInputStream in) throws IOException {
+        for (int i = 0; i < VALUES_PER_RECORD; i++) {
+            assertEquals(value(record, i), in.readBits(WIDTH));
+        }
+        // padding
+        in.readBits(RECORD_BYTES * 8 - VALUES_PER_RECORD * WIDTH);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ChecksummedBlockInputStream blocks = new ChecksummedBlockInputStream(new ByteArrayInputStream(data));
+        try (BitInputStream in = new BitInputStream(blocks)) {
+            for (int r = 0; r < N_RECORDS; r++) {
+                assertRecord(r, in);
+            }
+            assertEquals(-1, in.readBit());
+        }
+        assertEquals(0, blocks.getCorruptBlockCount());
+    }
+
+    @Test
+    public void testCorruptBlockThrows() throws IOException {
+        data[blockOffset(3) + BLOCK_HEADER_SIZE + 5] ^= 0x10;
+        try (InputStream in = new ChecksummedBlockInputStream(new ByteArrayInputStream(data))) {
+            byte[] record = new byte[RECORD_BYTES];
+            for (int r = 0; r < 3; r++) {
+                assertEquals(RECORD_BYTES, in.read(record));
+            }
+            try {
+                in.read();
+                fail("corrupt block not detected");
+            } catch (CorruptBlockException e) {
+                assertEquals(3, e.getBlockIndex());
+                assertEquals(blockOffset(3), e.getStreamOffset());
+            }
+            // reading resumes with the next block
+            BitInputStream bits = new BitInputStream(in);
+            for (int r = 4; r < N_RECORDS; r++) {
+                assertRecord(r, bits);
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptBlockSkipped() throws IOException {
+        data[blockOffset(0) + BLOCK_HEADER_SIZE] ^= 1;
+        data[blockOffset(7) + BLOCK_HEADER_SIZE + RECORD_BYTES - 1] ^= 1;
+        ChecksummedBlockInputStream blocks = new ChecksummedBlockInputStream(new ByteArrayInputStream(data), true);
+        try (BitInputStream in = new BitInputStream(blocks)) {
+            for (int r = 1; r < N_RECORDS; r++) {
+                if (r != 7) {
+                    assertRecord(r, in);
+                }
+            }
+            assertEquals(-1, in.readBit());
+        }
+        assertEquals(2, blocks.getCorruptBlockCount());
+    }
+
+    @Test
+    public void testSkipIsLazy() throws IOException {
+        // corrupt block 1, which is entirely skipped and thus never validated
+        data[blockOffset(1) + BLOCK_HEADER_SIZE + 2] ^= 0x40;
+        try (ChecksummedBlockInputStream in = new ChecksummedBlockInputStream(new ByteArrayInputStream(data))) {
+            assertEquals(3 * RECORD_BYTES + 1, in.skip(3 * RECORD_BYTES + 1));
+            assertEquals(3, in.getBlockIndex());
+            assertEquals(3 * RECORD_BYTES + 1, in.getPosition());
+            assertEquals(0, in.getCorruptBlockCount());
+            BitInputStream bits = new BitInputStream(in);
+            bits.skipBits(RECORD_BYTES * 8 - 8);
+            assertRecord(4, bits);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotFramed() throws IOException {
+        try (InputStream in = new ChecksummedBlockInputStream(new ByteArrayInputStream(new byte[16]))) {
+            in.read();
+        }
+    }
+}
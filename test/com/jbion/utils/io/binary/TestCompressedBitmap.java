@@ -0,0 +1,140 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCompressedBitmap {
+
+    private static final int RANGE = 1 << 20;
+
+    private BitSet expectedA;
+    private BitSet expectedB;
+    private CompressedBitmap a;
+    private CompressedBitmap b;
+
+    /**
+     * Fills sparse, dense and run-like regions, to get all kinds of containers.
+     */
+    private static void fill(Random random, BitSet expected, CompressedBitmap bitmap) {
+        for (int i = 0; i < RANGE; i++) {
+            int region = (i >>> 16) % 4;
+            boolean set;
+            if (region == 0) {
+                set = random.nextInt(100) == 0;
+            } else if (region == 1) {
+                set = random.nextBoolean();
+            } else if (region == 2) {
+                set = (i >>> 9) % 3 == 0;
+            } else {
+                set = false;
+            }
+            if (set) {
+                expected.set(i);
+                bitmap.add(i);
+            }
+        }
+    }
+
+    private static void assertSameValues(BitSet expected, CompressedBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+    }
+
+    @Before
+    public void setUp() {
+        Random random = new Random(11);
+        expectedA = new BitSet();
+        expectedB = new BitSet();
+        a = new CompressedBitmap();
+        b = new CompressedBitmap();
+        fill(random, expectedA, a);
+        fill(random, expectedB, b);
+        b.runOptimize();
+    }
+
+    @Test
+    public void testAddContains() {
+        assertSameValues(expectedA, a);
+        assertSameValues(expectedB, b);
+        for (int i = 0; i < RANGE; i += 7) {
+            assertEquals(expectedA.get(i), a.contains(i));
+            assertEquals(expectedB.get(i), b.contains(i));
+        }
+        assertFalse(a.contains(-1));
+    }
+
+    @Test
+    public void testUnsignedOrder() {
+        CompressedBitmap bitmap = CompressedBitmap.of(-1, 5, Integer.MIN_VALUE, 0, 5);
+        assertArrayEquals(new int[] { 0, 5, Integer.MIN_VALUE, -1 }, bitmap.toArray());
+    }
+
+    @Test
+    public void testSetOperations() {
+        for (int pass = 0; pass < 2; pass++) {
+            BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            assertSameValues(and, CompressedBitmap.and(a, b));
+            assertSameValues(and, CompressedBitmap.and(b, a));
+
+            BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+            assertSameValues(or, CompressedBitmap.or(a, b));
+            assertSameValues(or, CompressedBitmap.or(b, a));
+
+            BitSet andNot = (BitSet) expectedA.clone();
+            andNot.andNot(expectedB);
+            assertSameValues(andNot, CompressedBitmap.andNot(a, b));
+            BitSet notAnd = (BitSet) expectedB.clone();
+            notAnd.andNot(expectedA);
+            assertSameValues(notAnd, CompressedBitmap.andNot(b, a));
+
+            // same results with run containers on both sides
+            a.runOptimize();
+        }
+        // operands are untouched
+        assertSameValues(expectedA, a);
+        assertSameValues(expectedB, b);
+    }
+
+    @Test
+    public void testStreamSerialization() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            a.writeTo(out);
+            b.writeTo(out);
+        }
+        assertEquals(a.serializedSizeInBytes() + b.serializedSizeInBytes(), bytes.size());
+        try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(a, CompressedBitmap.readFrom(in));
+            assertEquals(b, CompressedBitmap.readFrom(in));
+        }
+    }
+
+    @Test
+    public void testByteBufferSerialization() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(b.serializedSizeInBytes());
+        b.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            b.writeTo(out);
+        }
+        assertArrayEquals(bytes.toByteArray(), buffer.array());
+
+        buffer.flip();
+        CompressedBitmap copy = CompressedBitmap.readFrom(buffer);
+        assertEquals(b, copy);
+        assertEquals(b.hashCode(), copy.hashCode());
+    }
+}
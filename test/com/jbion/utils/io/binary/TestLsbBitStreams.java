@@ -0,0 +1,116 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class TestLsbBitStreams {
+
+    @Test
+    public void testKnownLayout() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (LsbBitOutputStream out = new LsbBitOutputStream(bytes)) {
+            out.writeBit(1);
+            out.writeBits(0b10, 2);
+            out.writeBits(0b11001, 5);
+            out.writeChar((char) 0x1234);
+            out.writeBits(0b101, 3);
+        }
+        assertArrayEquals(new byte[] { (byte) 0xCD, 0x34, 0x12, 0x05 }, bytes.toByteArray());
+    }
+
+    @Test
+    public void testDeflateStoredBlockHeader() throws IOException {
+        byte[] data = "LSB-first bit order".getBytes("US-ASCII");
+        Deflater deflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] compressed = new byte[100];
+        int length = deflater.deflate(compressed);
+        deflater.end();
+        try (LsbBitInputStream in = new LsbBitInputStream(new ByteArrayInputStream(compressed, 0, length))) {
+            // the last block may be preceded by empty stored blocks
+            while (true) {
+                int bfinal = in.readBit();
+                assertEquals(0b00, in.readBits(2)); // stored
+                in.alignToByte();
+                int len = (int) in.readBits(16);
+                assertEquals(~len & 0xFFFF, in.readBits(16));
+                if (bfinal == 1) {
+                    assertEquals(data.length, len);
+                    for (byte b : data) {
+                        assertEquals(b, in.readByte());
+                    }
+                    break;
+                }
+                in.skipBits(8L * len);
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(11);
+        long[] values = new long[3000];
+        int[] widths = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = random.nextInt(Long.SIZE + 1);
+            values[i] = widths[i] == 0 ? 0 : random.nextLong() >>> (Long.SIZE - widths[i]);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (LsbBitOutputStream out = new LsbBitOutputStream(bytes, 5)) {
+            for (int i = 0; i < values.length; i++) {
+                out.writeBits(values[i], widths[i]);
+            }
+        }
+        try (LsbBitInputStream in = new LsbBitInputStream(new ByteArrayInputStream(bytes.toByteArray()), 3)) {
+            for (int i = 0; i < values.length; i++) {
+                if (widths[i] <= LsbBitInputStream.MAX_PEEK_BITS) {
+                    assertEquals(values[i], in.peekBits(widths[i]));
+                }
+                assertEquals(values[i], in.readBits(widths[i]));
+            }
+            assertTrue(in.skipBits(8) < 8);
+            assertEquals(-1, in.readBit());
+        }
+    }
+
+    @Test
+    public void testMarkResetMidByte() throws IOException {
+        byte[] data = { (byte) 0xCD, 0x34, 0x12, 0x05 };
+        try (LsbBitInputStream in = new LsbBitInputStream(new ByteArrayInputStream(data))) {
+            assertEquals(1, in.readBits(1));
+            assertEquals(0b10, in.readBits(2));
+            in.mark(16);
+            assertEquals(0b11001, in.readBits(5));
+            assertEquals(0x1234, in.readBits(16));
+            in.reset();
+            assertEquals(0b11001, in.readBits(5));
+            in.markBits(16);
+            assertEquals(0x1234, in.readChar());
+            in.resetBits();
+            assertEquals(0x1234, in.readChar());
+            assertEquals(0b101, in.readBits(3));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCloseFailureNotSwallowed() throws IOException {
+        OutputStream failingSink = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        LsbBitOutputStream out = new LsbBitOutputStream(failingSink);
+        out.writeBits(5, 3);
+        out.close();
+    }
+}
@@ -0,0 +1,87 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestMappedBitReader {
+
+    private static final int N_VALUES = 5000;
+
+    private static File file;
+    private static long[] values = new long[N_VALUES];
+    private static int[] widths = new int[N_VALUES];
+    private static long[] positions = new long[N_VALUES];
+    private static long totalBits;
+
+    @BeforeClass
+    public static void initTestFile() throws IOException {
+        file = File.createTempFile("temp_test_mapped", null);
+        Random random = new Random(42);
+        try (BitOutputStream out = new BitOutputStream(new FileOutputStream(file))) {
+            long pos = 0;
+            for (int i = 0; i < N_VALUES; i++) {
+                widths[i] = 1 + random.nextInt(Long.SIZE);
+                values[i] = random.nextLong() >>> (Long.SIZE - widths[i]);
+                positions[i] = pos;
+                out.writeBits(values[i], widths[i]);
+                pos += widths[i];
+            }
+            totalBits = pos;
+        }
+    }
+
+    @AfterClass
+    public static void deleteTestFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testSequentialRead() throws IOException {
+        // tiny segments, so that many values span two of them
+        try (MappedBitReader reader = new MappedBitReader(file.toPath(), 4)) {
+            assertEquals((totalBits + 7) / 8 * 8, reader.bitLength());
+            for (int i = 0; i < N_VALUES; i++) {
+                assertEquals(values[i], reader.peekBits(widths[i]));
+                assertEquals(values[i], reader.readBits(widths[i]));
+            }
+            assertEquals(totalBits, reader.getBitPosition());
+        }
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        Random random = new Random(7);
+        try (MappedBitReader reader = new MappedBitReader(file.toPath(), 5)) {
+            for (int n = 0; n < N_VALUES; n++) {
+                int i = random.nextInt(N_VALUES);
+                reader.seekBit(positions[i]);
+                assertEquals(values[i], reader.readBits(widths[i]));
+                assertEquals(values[i], reader.getBits(positions[i], widths[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testEndOfFile() throws IOException {
+        try (MappedBitReader reader = new MappedBitReader(file)) {
+            reader.seekBit(reader.bitLength() - 3);
+            assertEquals(3, reader.remainingBits());
+            try {
+                reader.readBits(4);
+                fail();
+            } catch (IllegalStateException e) {
+                // OK
+            }
+            reader.skipBits(3);
+            assertEquals(-1, reader.readBit());
+        }
+    }
+}
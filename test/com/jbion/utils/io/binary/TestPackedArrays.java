@@ -0,0 +1,63 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestPackedArrays {
+
+    @Test
+    public void testGetSet() {
+        Random random = new Random(5);
+        for (int bits = 1; bits <= Long.SIZE; bits++) {
+            PackedLongArray array = new PackedLongArray(300, bits);
+            long[] expected = new long[array.size()];
+            for (int n = 0; n < 2000; n++) {
+                int i = random.nextInt(array.size());
+                long value = random.nextLong();
+                array.set(i, value);
+                expected[i] = bits == Long.SIZE ? value : value & ((1L << bits) - 1);
+            }
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals("bits=" + bits + " i=" + i, expected[i], array.get(i));
+            }
+        }
+        PackedIntArray ints = new PackedIntArray(10, 32);
+        ints.set(3, -5);
+        assertEquals(-5, ints.get(3));
+        assertEquals(7, PackedIntArray.bitsRequired(100));
+        assertEquals(32, PackedIntArray.bitsRequired(-1));
+    }
+
+    @Test
+    public void testSameLayoutAsStreams() throws IOException {
+        Random random = new Random(6);
+        int bits = 13;
+        PackedIntArray array = new PackedIntArray(1001, bits);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(expected)) {
+            for (int i = 0; i < array.size(); i++) {
+                int value = random.nextInt(1 << bits);
+                array.set(i, value);
+                out.writeBits(value, bits);
+            }
+        }
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(actual)) {
+            array.writeTo(out);
+        }
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(actual.toByteArray()))) {
+            PackedIntArray read = PackedIntArray.readFrom(in, array.size(), bits);
+            for (int i = 0; i < array.size(); i++) {
+                assertEquals(array.get(i), read.get(i));
+            }
+        }
+    }
+}
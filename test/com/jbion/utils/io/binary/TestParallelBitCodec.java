@@ -0,0 +1,96 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelBitCodec {
+
+    private static final int N_BLOCKS = 50;
+    private static final int WIDTH = 13;
+
+    private static final ParallelBitEncoder.BlockEncoder<long[]> ENCODER = new ParallelBitEncoder.BlockEncoder<long[]>() {
+        @Override
+        public void encode(long[] block, BitOutputStream out) throws IOException {
+            out.writeInt(block.length);
+            out.writeBits(block, 0, block.length, WIDTH);
+        }
+    };
+
+    private static final ParallelBitDecoder.BlockDecoder<long[]> DECODER = new ParallelBitDecoder.BlockDecoder<long[]>() {
+        @Override
+        public long[] decode(int blockIndex, BitInputStream in) throws IOException {
+            long[] block = new long[in.readInt()];
+            in.readBits(WIDTH, block, 0, block.length);
+            return block;
+        }
+    };
+
+    private File file;
+    private long[][] blocks;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("temp_test_parallel", null);
+        Random random = new Random(7);
+        blocks = new long[N_BLOCKS][];
+        for (int i = 0; i < N_BLOCKS; i++) {
+            // includes empty blocks
+            blocks[i] = new long[random.nextInt(2000)];
+            for (int j = 0; j < blocks[i].length; j++) {
+                blocks[i][j] = random.nextInt(1 << WIDTH);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testParallelRoundTrip() throws IOException {
+        try (ParallelBitEncoder<long[]> encoder = new ParallelBitEncoder<>(new FileOutputStream(file), ENCODER, 4)) {
+            for (long[] block : blocks) {
+                encoder.submit(block);
+            }
+        }
+        try (ParallelBitDecoder decoder = new ParallelBitDecoder(file.toPath())) {
+            assertEquals(N_BLOCKS, decoder.getBlockCount());
+            List<long[]> decoded = decoder.decodeAll(DECODER);
+            assertEquals(N_BLOCKS, decoded.size());
+            for (int i = 0; i < N_BLOCKS; i++) {
+                assertArrayEquals(blocks[i], decoded.get(i));
+            }
+            // random access to a single block
+            try (BitInputStream in = decoder.openBlock(N_BLOCKS / 2)) {
+                assertArrayEquals(blocks[N_BLOCKS / 2], DECODER.decode(N_BLOCKS / 2, in));
+            }
+        }
+    }
+
+    @Test
+    public void testNoBlocks() throws IOException {
+        new ParallelBitEncoder<>(new FileOutputStream(file), ENCODER, 1).close();
+        try (ParallelBitDecoder decoder = new ParallelBitDecoder(file.toPath())) {
+            assertEquals(0, decoder.getBlockCount());
+            assertTrue(decoder.decodeAll(DECODER).isEmpty());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongFormat() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        }
+        new ParallelBitDecoder(file.toPath()).close();
+    }
+}
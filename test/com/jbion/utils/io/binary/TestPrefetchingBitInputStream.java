@@ -0,0 +1,134 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPrefetchingBitInputStream {
+
+    private static final int N_VALUES = 20000;
+
+    private long[] values;
+    private int[] widths;
+    private byte[] data;
+
+    /**
+     * Returns at most 100 bytes per read, slowly.
+     */
+    private static InputStream slowSource(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(0, 100000);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.read(b, off, Math.min(len, 100));
+            }
+        };
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(4);
+        values = new long[N_VALUES];
+        widths = new int[N_VALUES];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            for (int i = 0; i < N_VALUES; i++) {
+                widths[i] = 1 + random.nextInt(Long.SIZE);
+                values[i] = random.nextLong() >>> (Long.SIZE - widths[i]);
+                out.writeBits(values[i], widths[i]);
+            }
+        }
+        data = bytes.toByteArray();
+    }
+
+    @Test
+    public void testReadAll() throws IOException {
+        try (BitInputStream in = new PrefetchingBitInputStream(slowSource(data), 256, 3)) {
+            for (int i = 0; i < N_VALUES; i++) {
+                assertEquals(values[i], in.readBits(widths[i]));
+            }
+            // only the padding of the last byte is left
+            int paddingBits = 0;
+            int bit;
+            while ((bit = in.readBit()) != -1) {
+                assertEquals(0, bit);
+                paddingBits++;
+            }
+            assertTrue(paddingBits < 8);
+        }
+    }
+
+    @Test
+    public void testMixedReads() throws IOException {
+        try (BitInputStream in = new PrefetchingBitInputStream(new ByteArrayInputStream(data))) {
+            assertEquals(values[0], in.readBits(widths[0]));
+            in.skipBits(widths[1]);
+            assertEquals(values[2], in.peekBits(widths[2]));
+            assertEquals(values[2], in.readBits(widths[2]));
+        }
+    }
+
+    @Test
+    public void testErrorPropagated() {
+        InputStream failing = new InputStream() {
+            private int count = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (++count > 500) {
+                    throw new IOException("device error");
+                }
+                return 0;
+            }
+        };
+        try (BitInputStream in = new PrefetchingBitInputStream(failing, 64, 2)) {
+            // the 500 bytes read before the error are readable
+            for (int i = 0; i < 500; i++) {
+                assertEquals(0, in.readBits(8));
+            }
+            in.readBits(8);
+            fail("the read error was not reported");
+        } catch (IOException e) {
+            assertEquals("device error", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testErrorNotTurnedIntoEOF() throws IOException {
+        InputStream failing = new InputStream() {
+            private boolean failed = false;
+
+            @Override
+            public int read() throws IOException {
+                if (failed) {
+                    return -1;
+                }
+                failed = true;
+                throw new IOException("disk");
+            }
+        };
+        try (BitInputStream in = new PrefetchingBitInputStream(failing, 64, 2)) {
+            // a caller retrying after the error must not see a clean end of stream
+            for (int i = 0; i < 3; i++) {
+                try {
+                    in.read();
+                    fail("the read error was not reported");
+                } catch (IOException e) {
+                    assertEquals("disk", e.getMessage());
+                }
+            }
+        }
+    }
+}
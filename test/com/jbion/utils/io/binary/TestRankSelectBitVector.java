@@ -0,0 +1,89 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRankSelectBitVector {
+
+    private static final int SIZE = 10007;
+
+    private boolean[] bits;
+    private RankSelectBitVector vector;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(3);
+        bits = new boolean[SIZE];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            for (int i = 0; i < SIZE; i++) {
+                // sparse region followed by a dense region
+                bits[i] = random.nextInt(i < SIZE / 2 ? 50 : 2) == 0;
+                out.writeBit(bits[i]);
+            }
+        }
+        vector = RankSelectBitVector.readFrom(new BitInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                SIZE);
+    }
+
+    @Test
+    public void testRankSelect() {
+        assertEquals(SIZE, vector.size());
+        long rank = 0;
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(rank, vector.rank1(i));
+            assertEquals(i - rank, vector.rank0(i));
+            assertEquals(bits[i], vector.get(i));
+            if (bits[i]) {
+                assertEquals(i, vector.select1(rank));
+                rank++;
+            }
+        }
+        assertEquals(rank, vector.rank1(SIZE));
+        assertEquals(rank, vector.cardinality());
+    }
+
+    @Test
+    public void testTrailingBitsIgnored() {
+        RankSelectBitVector v = new RankSelectBitVector(new long[] { -1L, -1L }, 70);
+        assertEquals(70, v.cardinality());
+        assertEquals(69, v.select1(69));
+        assertEquals(70, v.rank1(70));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() {
+        vector.select1(vector.cardinality());
+    }
+
+    @Test
+    public void testWriteAndMappedRead() throws IOException {
+        File file = File.createTempFile("temp_test_rank_select", null);
+        try {
+            try (BitOutputStream out = new BitOutputStream(new FileOutputStream(file))) {
+                out.writeBits(5, 3);
+                vector.writeTo(out);
+            }
+            RankSelectBitVector copy;
+            try (MappedBitReader in = new MappedBitReader(file)) {
+                in.skipBits(3);
+                copy = RankSelectBitVector.readFrom(in, SIZE);
+            }
+            assertEquals(vector.cardinality(), copy.cardinality());
+            for (int i = 0; i < SIZE; i += 97) {
+                assertEquals(vector.rank1(i), copy.rank1(i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
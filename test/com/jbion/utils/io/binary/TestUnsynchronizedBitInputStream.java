@@ -0,0 +1,81 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class TestUnsynchronizedBitInputStream {
+
+    private static final byte[] DATA = { (byte) 0x00, (byte) 0xFF, (byte) 0x05, (byte) 0x0A, (byte) 0xF0,
+            (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, (byte) 0xFF, (byte) 0x01, (byte) 0x23, (byte) 0x45, (byte) 0x67,
+            (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, (byte) 0x11, (byte) 0x21, (byte) 0x03, (byte) 0x3A };
+
+    private static void checkPrimitiveRead(BitInputStream bis) throws IOException {
+        assertEquals((byte) 0x00, bis.readByte());
+        assertEquals((byte) 0xFF, bis.readByte());
+        assertEquals(0x0, bis.readBits(4));
+        assertEquals(0x5, bis.readBits(4));
+        assertEquals((char) 0x0AF0, bis.readChar());
+        assertEquals(0xABCDEFFF, bis.readInt());
+        assertEquals(0x0123456789ABCDEFL, bis.readLong());
+        assertEquals(0x0, bis.readBits(3));
+        assertEquals(0x11, bis.readBits(5));
+        assertEquals(0x0, bis.readBits(2));
+        assertEquals(0x21, bis.readBits(6));
+        assertEquals(0x0, bis.readBits(3));
+        assertEquals(0, bis.readBit());
+        assertEquals(0, bis.readBit());
+        assertEquals(0, bis.readBit());
+        assertEquals(1, bis.readBit());
+        assertEquals(1, bis.readBit());
+        assertEquals("00111010", bis.readBitsAsString(8));
+        assertEquals(-1, bis.readBit());
+        assertEquals(-1, bis.readBits(1, false));
+        try {
+            bis.readInt();
+            fail();
+        } catch (IllegalStateException e) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testPrimitiveRead() throws IOException {
+        try (BitInputStream bis = new UnsynchronizedBitInputStream(new ByteArrayInputStream(DATA))) {
+            checkPrimitiveRead(bis);
+        }
+        // tiny buffer to go through the refill path
+        try (BitInputStream bis = new UnsynchronizedBitInputStream(new ByteArrayInputStream(DATA), 3)) {
+            checkPrimitiveRead(bis);
+        }
+    }
+
+    @Test
+    public void testUnalignedLong() throws IOException {
+        try (BitInputStream bis = new UnsynchronizedBitInputStream(new ByteArrayInputStream(DATA, 8, 13))) {
+            assertEquals(0xF, bis.readBits(4));
+            assertEquals(0xF0123456789ABCDEL, bis.readLong());
+            assertEquals(0xF, bis.readBits(4));
+            assertEquals(0x11, bis.read());
+        }
+        try (BitInputStream bis = new BitInputStream(new ByteArrayInputStream(DATA, 8, 13), 2)) {
+            assertEquals(0x7, bis.readBits(3));
+            assertEquals(0xF8091A2B3C4D5E6FL, bis.readLong());
+            assertEquals(0xF, bis.readBits(5));
+            assertEquals(0x11, bis.read());
+        }
+    }
+
+    @Test
+    public void testByteLevelReads() throws IOException {
+        try (BitInputStream bis = new UnsynchronizedBitInputStream(new ByteArrayInputStream(DATA))) {
+            assertEquals(0x00, bis.read());
+            assertEquals(0xFF, bis.read());
+            assertEquals(0x050A, bis.readBits(16));
+            assertEquals(DATA.length - 4, bis.available());
+        }
+    }
+}
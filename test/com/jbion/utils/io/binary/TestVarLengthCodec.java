@@ -0,0 +1,132 @@
+package com.jbion.utils.io.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestVarLengthCodec {
+
+    private static long[] randomValues(int n) {
+        Random random = new Random(3);
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++) {
+            // all magnitudes, mostly small ones
+            values[i] = 1 + (random.nextLong() >>> random.nextInt(Long.SIZE));
+            if (values[i] <= 0) {
+                values[i] = Long.MAX_VALUE;
+            }
+        }
+        return values;
+    }
+
+    private static String encodeToString(long value, int codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int nBits;
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            switch (codec) {
+            case 0:
+                VarLengthCodec.writeGamma(out, value);
+                break;
+            case 1:
+                VarLengthCodec.writeDelta(out, value);
+                break;
+            default:
+                VarLengthCodec.writeRice(out, value, 2);
+                break;
+            }
+            out.writeBit(1); // end marker
+        }
+        String s = "";
+        for (byte b : bytes.toByteArray()) {
+            s += BinHelper.addLeadingZeros(Integer.toBinaryString(b & 0xFF), 8);
+        }
+        nBits = s.lastIndexOf('1');
+        return s.substring(0, nBits);
+    }
+
+    @Test
+    public void testKnownCodes() throws IOException {
+        assertEquals("1", encodeToString(1, 0));
+        assertEquals("00101", encodeToString(5, 0));
+        assertEquals("1", encodeToString(1, 1));
+        assertEquals("00100010", encodeToString(10, 1));
+        assertEquals("00101", encodeToString(9, 2));
+        assertEquals("100", encodeToString(0, 2));
+        assertEquals(0, VarLengthCodec.zigzagEncode(0));
+        assertEquals(1, VarLengthCodec.zigzagEncode(-1));
+        assertEquals(4, VarLengthCodec.zigzagEncode(2));
+        assertEquals(Long.MIN_VALUE, VarLengthCodec.zigzagDecode(-1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            VarLengthCodec.writeVarLong(out, 300);
+        }
+        assertArrayEquals(new byte[] { (byte) 0xAC, 0x02 }, bytes.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        long[] values = randomValues(5000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            for (long v : values) {
+                VarLengthCodec.writeGamma(out, v);
+                VarLengthCodec.writeDelta(out, v);
+                VarLengthCodec.writeRice(out, v >>> 50, 5);
+                VarLengthCodec.writeVarLong(out, v);
+                VarLengthCodec.writeSignedVarLong(out, -v);
+                out.writeBits(v, 3);
+            }
+            VarLengthCodec.writeVarLong(out, -1L);
+            VarLengthCodec.writeGamma(out, Long.MAX_VALUE);
+            VarLengthCodec.writeRice(out, 1000, 0);
+        }
+        try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (long v : values) {
+                assertEquals(v, VarLengthCodec.readGamma(in));
+                assertEquals(v, VarLengthCodec.readDelta(in));
+                assertEquals(v >>> 50, VarLengthCodec.readRice(in, 5));
+                assertEquals(v, VarLengthCodec.readVarLong(in));
+                assertEquals(-v, VarLengthCodec.readSignedVarLong(in));
+                assertEquals(v & 7, in.readBits(3));
+            }
+            assertEquals(-1L, VarLengthCodec.readVarLong(in));
+            assertEquals(Long.MAX_VALUE, VarLengthCodec.readGamma(in));
+            assertEquals(1000, VarLengthCodec.readRice(in, 0));
+        }
+    }
+
+    @Test
+    public void testHugeRiceQuotient() {
+        // the code of Long.MAX_VALUE is 2^63 bits long: it must be written as such
+        // rather than wrap around to an empty code
+        OutputStream limitedSink = new OutputStream() {
+            private int count = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++count > 1024) {
+                    throw new IOException("sink full");
+                }
+            }
+        };
+        try (BitOutputStream out = new BitOutputStream(limitedSink, 64)) {
+            VarLengthCodec.writeRice(out, Long.MAX_VALUE, 0);
+            fail("the huge rice code was not written");
+        } catch (IOException e) {
+            assertEquals("sink full", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testOptimalRiceParameter() {
+        assertEquals(0, VarLengthCodec.optimalRiceParameter(0.5));
+        assertEquals(4, VarLengthCodec.optimalRiceParameter(20));
+    }
+}
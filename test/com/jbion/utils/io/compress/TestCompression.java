@@ -0,0 +1,159 @@
+package com.jbion.utils.io.compress;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jbion.utils.io.binary.BitInputStream;
+import com.jbion.utils.io.binary.BitOutputStream;
+
+public class TestCompression {
+
+    private static final int N_VALUES = 100000;
+    private static final int WIDTH = 10;
+
+    private static byte[] compressibleBytes(int length) {
+        Random random = new Random(5);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            // small alphabet with repetitions
+            bytes[i] = (byte) (i % 1000 < 500 ? 'a' + random.nextInt(4) : bytes[i - 300]);
+        }
+        return bytes;
+    }
+
+    private static void assertCodecRoundTrip(BlockCodec codec, byte[] original) throws IOException {
+        byte[] compressed = new byte[original.length + 16];
+        int n = codec.compress(original, 0, original.length, compressed, 3, compressed.length - 3);
+        assertTrue(n > 0);
+        byte[] decompressed = new byte[original.length + 2];
+        codec.decompress(compressed, 3, n, decompressed, 2, original.length);
+        assertArrayEquals(original, Arrays.copyOfRange(decompressed, 2, decompressed.length));
+    }
+
+    @Test
+    public void testCodecs() throws IOException {
+        BlockCodec[] codecs = { new LzCodec(), new DeflateCodec() };
+        byte[] runs = new byte[5000];
+        Arrays.fill(runs, (byte) 7);
+        byte[] random = new byte[3000];
+        new Random(9).nextBytes(random);
+        for (BlockCodec codec : codecs) {
+            assertCodecRoundTrip(codec, compressibleBytes(70000));
+            assertCodecRoundTrip(codec, runs);
+            assertCodecRoundTrip(codec, random);
+            assertCodecRoundTrip(codec, new byte[] { 1, 2, 3 });
+            assertCodecRoundTrip(codec, new byte[0]);
+        }
+    }
+
+    @Test
+    public void testLzCompresses() {
+        byte[] original = compressibleBytes(65536);
+        byte[] compressed = new byte[original.length];
+        int n = new LzCodec().compress(original, 0, original.length, compressed, 0, compressed.length);
+        assertTrue(n > 0 && n < original.length / 2);
+        // does not fit
+        assertEquals(-1, new LzCodec().compress(original, 0, original.length, compressed, 0, n - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLzCorrupt() throws IOException {
+        byte[] original = compressibleBytes(10000);
+        byte[] compressed = new byte[original.length];
+        int n = new LzCodec().compress(original, 0, original.length, compressed, 0, compressed.length);
+        new LzCodec().decompress(compressed, 0, n - 3, new byte[original.length], 0, original.length);
+    }
+
+    private static void assertBitStreamRoundTrip(BlockCodec codec, int frameSize, int bufferCount)
+            throws IOException {
+        Random random = new Random(1);
+        long[] values = new long[N_VALUES];
+        for (int i = 0; i < N_VALUES; i++) {
+            // periodic values with some noise
+            values[i] = (i % 64) + (random.nextInt(50) == 0 ? 512 : 0);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(
+                new CompressingOutputStream(bytes, codec, frameSize, bufferCount))) {
+            out.writeBits(values, 0, N_VALUES, WIDTH);
+        }
+        assertTrue(bytes.size() < N_VALUES * WIDTH / 8);
+        long[] read = new long[N_VALUES];
+        try (BitInputStream in = new BitInputStream(
+                new DecompressingInputStream(new ByteArrayInputStream(bytes.toByteArray()), codec))) {
+            in.readBits(WIDTH, read, 0, N_VALUES);
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(values, read);
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        assertBitStreamRoundTrip(new LzCodec(), CompressingOutputStream.DEFAULT_FRAME_SIZE,
+                CompressingOutputStream.DEFAULT_BUFFER_COUNT);
+        assertBitStreamRoundTrip(new DeflateCodec(), 1000, 2);
+        assertBitStreamRoundTrip(new LzCodec(), 333, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongCodec() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new CompressingOutputStream(bytes, new LzCodec()).close();
+        new DecompressingInputStream(new ByteArrayInputStream(bytes.toByteArray()), new DeflateCodec()).close();
+    }
+
+    @Test
+    public void testWriteAfterClose() throws IOException {
+        CompressingOutputStream out = new CompressingOutputStream(new ByteArrayOutputStream(), new LzCodec());
+        out.write(1);
+        out.close();
+        out.close();
+        try {
+            out.write(1);
+            fail("a write after close was accepted");
+        } catch (IOException e) {
+            assertEquals("stream closed", e.getMessage());
+        }
+        try {
+            out.write(new byte[100]);
+            fail("a write after close was accepted");
+        } catch (IOException e) {
+            assertEquals("stream closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFailurePropagated() throws IOException {
+        OutputStream failing = new OutputStream() {
+            private int count = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++count > 100) {
+                    throw new IOException("disk full");
+                }
+            }
+        };
+        CompressingOutputStream out = new CompressingOutputStream(failing, new DeflateCodec(), 64, 2);
+        byte[] random = new byte[64];
+        Random r = new Random(2);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                r.nextBytes(random);
+                out.write(random);
+            }
+            out.close();
+            fail("the write failure was not reported");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
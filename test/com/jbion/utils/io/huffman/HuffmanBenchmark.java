@@ -0,0 +1,130 @@
+package com.jbion.utils.io.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import com.jbion.utils.io.binary.BinHelper;
+import com.jbion.utils.io.binary.BitInputStream;
+import com.jbion.utils.io.binary.BitOutputStream;
+import com.jbion.utils.io.binary.UnsynchronizedBitInputStream;
+
+/**
+ * Compares the table-driven {@link HuffmanEncoder}/{@link HuffmanDecoder} with the
+ * string-based approach: {@link BitOutputStream#writeString(String)} for each
+ * symbol, and a tree walk with {@link BitInputStream#readBit()}.
+ */
+public class HuffmanBenchmark {
+
+    private static final int N_SYMBOLS = 256;
+    private static final int N_VALUES = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    private static String[] stringCodes(HuffmanCode code) {
+        String[] strings = new String[code.getNbSymbols()];
+        for (int s = 0; s < strings.length; s++) {
+            if (code.getLength(s) > 0) {
+                strings[s] = BinHelper.addLeadingZeros(Integer.toBinaryString(code.getCode(s)), code.getLength(s));
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Builds a decoding tree: node {@code n} has children {@code tree[2n]} and
+     * {@code tree[2n+1]}, leaves are stored as {@code -1 - symbol}.
+     */
+    private static int[] tree(String[] codes) {
+        int[] tree = new int[4 * codes.length];
+        int nNodes = 1;
+        for (int s = 0; s < codes.length; s++) {
+            if (codes[s] == null) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < codes[s].length(); i++) {
+                int child = 2 * node + codes[s].charAt(i) - '0';
+                if (i == codes[s].length() - 1) {
+                    tree[child] = -1 - s;
+                } else {
+                    if (tree[child] == 0) {
+                        tree[child] = nNodes++;
+                    }
+                    node = tree[child];
+                }
+            }
+        }
+        return tree;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(1);
+        long[] frequencies = new long[N_SYMBOLS];
+        for (int i = 0; i < N_SYMBOLS; i++) {
+            frequencies[i] = 1 + (long) (1_000_000 * Math.exp(-i / 16.0));
+        }
+        int[] symbols = new int[N_VALUES];
+        for (int i = 0; i < N_VALUES; i++) {
+            symbols[i] = (int) Math.min(N_SYMBOLS - 1, -16 * Math.log(1 - random.nextDouble()));
+        }
+        HuffmanCode code = HuffmanCode.fromFrequencies(frequencies);
+        HuffmanEncoder encoder = new HuffmanEncoder(code);
+        HuffmanDecoder decoder = new HuffmanDecoder(code);
+        String[] strings = stringCodes(code);
+        int[] tree = tree(strings);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (BitOutputStream out = new BitOutputStream(bytes)) {
+                for (int s : symbols) {
+                    out.writeString(strings[s]);
+                }
+            }
+            long stringEncode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long checksum = 0;
+            try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                for (int i = 0; i < N_VALUES; i++) {
+                    int node = 0;
+                    do {
+                        node = tree[2 * node + in.readBit()];
+                    } while (node >= 0);
+                    checksum += -1 - node;
+                }
+            }
+            long treeDecode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            bytes = new ByteArrayOutputStream();
+            try (BitOutputStream out = new BitOutputStream(bytes)) {
+                encoder.write(out, symbols, 0, N_VALUES);
+            }
+            long tableEncode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                for (int i = 0; i < N_VALUES; i++) {
+                    checksum -= decoder.read(in);
+                }
+            }
+            long tableDecode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (BitInputStream in = new UnsynchronizedBitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                for (int i = 0; i < N_VALUES; i++) {
+                    decoder.read(in);
+                }
+            }
+            long unsyncDecode = System.nanoTime() - start;
+
+            System.out.printf("round %d (checksum %d), ns/symbol:%n", round, checksum);
+            System.out.printf("  encode: string %6.2f  table %6.2f%n", (double) stringEncode / N_VALUES,
+                    (double) tableEncode / N_VALUES);
+            System.out.printf("  decode: tree   %6.2f  table %6.2f  table (unsynchronized) %6.2f%n",
+                    (double) treeDecode / N_VALUES, (double) tableDecode / N_VALUES, (double) unsyncDecode / N_VALUES);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.jbion.utils.io.huffman;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jbion.utils.io.binary.BitInputStream;
+import com.jbion.utils.io.binary.BitOutputStream;
+
+public class TestHuffman {
+
+    @Test
+    public void testCanonicalCodes() {
+        // the example of RFC 1951, section 3.2.2
+        HuffmanCode code = new HuffmanCode(new int[] { 3, 3, 3, 3, 3, 2, 4, 4 });
+        int[] expected = { 0b010, 0b011, 0b100, 0b101, 0b110, 0b00, 0b1110, 0b1111 };
+        for (int symbol = 0; symbol < expected.length; symbol++) {
+            assertEquals(expected[symbol], code.getCode(symbol));
+        }
+    }
+
+    @Test
+    public void testOptimalLengths() {
+        HuffmanCode code = HuffmanCode.fromFrequencies(new long[] { 45, 13, 12, 16, 9, 5, 0 });
+        assertArrayEquals(new int[] { 1, 3, 3, 3, 4, 4, 0 }, code.getLengths());
+        code = HuffmanCode.fromFrequencies(new long[] { 0, 7, 0 });
+        assertArrayEquals(new int[] { 0, 1, 0 }, code.getLengths());
+    }
+
+    @Test
+    public void testLengthLimit() {
+        long[] frequencies = new long[20];
+        frequencies[0] = 1;
+        frequencies[1] = 1;
+        for (int i = 2; i < frequencies.length; i++) {
+            frequencies[i] = frequencies[i - 1] + frequencies[i - 2];
+        }
+        assertEquals(19, HuffmanCode.fromFrequencies(frequencies).getMaxLength());
+        HuffmanCode code = HuffmanCode.fromFrequencies(frequencies, 8);
+        assertEquals(8, code.getMaxLength());
+        long kraftSum = 0;
+        for (int len : code.getLengths()) {
+            kraftSum += 1L << (8 - len);
+        }
+        assertTrue(kraftSum <= 1L << 8);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(12);
+        long[] frequencies = new long[300];
+        for (int i = 0; i < frequencies.length; i++) {
+            // skewed, some codes longer than the lookup table
+            frequencies[i] = i % 7 == 0 ? 0 : 1 + (long) Math.pow(random.nextInt(40), 5);
+        }
+        HuffmanCode code = HuffmanCode.fromFrequencies(frequencies);
+        assertTrue(code.getMaxLength() > HuffmanDecoder.DEFAULT_TABLE_BITS);
+
+        int[] symbols = new int[20000];
+        for (int i = 0; i < symbols.length; i++) {
+            do {
+                symbols[i] = random.nextInt(frequencies.length);
+            } while (frequencies[symbols[i]] == 0);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BitOutputStream out = new BitOutputStream(bytes)) {
+            code.writeTo(out);
+            new HuffmanEncoder(code).write(out, symbols, 0, symbols.length);
+        }
+        try (BitInputStream in = new BitInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            HuffmanCode readCode = HuffmanCode.readFrom(in);
+            assertArrayEquals(code.getLengths(), readCode.getLengths());
+            int[] decoded = new int[symbols.length];
+            new HuffmanDecoder(readCode).read(in, decoded, 0, decoded.length);
+            assertArrayEquals(symbols, decoded);
+        }
+    }
+}